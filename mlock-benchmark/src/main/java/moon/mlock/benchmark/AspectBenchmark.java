@@ -0,0 +1,120 @@
+package moon.mlock.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 切面端到端基准测试：Spring AOP代理 -> 切面 -> key生成 -> 内存锁存储后端 -> 目标方法
+ * <p>
+ * 每个线程使用独立的key，不产生锁竞争，测量的是单次调用的固定开销；plain为不经过切面的基线
+ *
+ * @author moon
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class AspectBenchmark {
+
+    private BenchmarkContext context;
+
+    private BenchmarkService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new BenchmarkContext();
+        service = context.getBean(BenchmarkService.class);
+    }
+
+    /**
+     * 幂等key只增不减，每轮迭代前清空，避免内存增长影响测量
+     */
+    @Setup(Level.Iteration)
+    public void flush() {
+        context.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private BenchmarkRequest request;
+
+        private String tokenPrefix;
+
+        private List<Long> skuIds;
+
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            int index = threadParams.getThreadIndex();
+            request = new BenchmarkRequest((long) index, "user" + index);
+            tokenPrefix = "token" + index + "_";
+            skuIds = new ArrayList<>();
+            for (long sku = 8; sku > 0; sku--) {
+                skuIds.add(sku);
+            }
+        }
+
+        private String nextToken() {
+            return tokenPrefix + sequence++;
+        }
+    }
+
+    @Benchmark
+    public Object plain(ThreadState state) {
+        return service.plain(state.request);
+    }
+
+    @Benchmark
+    public Object lock(ThreadState state) {
+        return service.lock(state.request);
+    }
+
+    /**
+     * 集合key展开为8个锁key，一次批量加锁
+     */
+    @Benchmark
+    public Object multiLock(ThreadState state) {
+        return service.multiLock(state.request, state.skuIds);
+    }
+
+    @Benchmark
+    public Object noLock(ThreadState state) {
+        return service.noLock(state.request);
+    }
+
+    @Benchmark
+    public Object checkLock(ThreadState state) {
+        return service.checkLock(state.request);
+    }
+
+    @Benchmark
+    public Object idempotent(ThreadState state) {
+        return service.idempotent(state.nextToken());
+    }
+}
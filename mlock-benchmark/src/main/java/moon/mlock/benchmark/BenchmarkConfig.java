@@ -0,0 +1,64 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.aspect.CheckLockAspect;
+import moon.mlock.aspect.IdempotentAspect;
+import moon.mlock.aspect.LockAspect;
+import moon.mlock.benchmark.load.LoadService;
+import moon.mlock.config.LockProperties;
+import moon.mlock.proxy.RedisLockProxy;
+import moon.mlock.utils.SpringUtils;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * 基准测试Spring配置，切面通过Spring AOP织入，与业务应用的调用路径一致
+ *
+ * @author moon
+ */
+@Configuration
+@EnableAspectJAutoProxy(proxyTargetClass = true)
+public class BenchmarkConfig {
+
+    @Bean
+    public SpringUtils springUtils() {
+        return new SpringUtils();
+    }
+
+    @Bean
+    @DependsOn("springUtils")
+    public RedisLockProxy redisLockProxy(LockProperties lockProperties) {
+        return new RedisLockProxy(lockProperties);
+    }
+
+    @Bean
+    public LockAspect lockAspect() {
+        return new LockAspect();
+    }
+
+    @Bean
+    public CheckLockAspect checkLockAspect() {
+        return new CheckLockAspect();
+    }
+
+    @Bean
+    public IdempotentAspect idempotentAspect() {
+        return new IdempotentAspect();
+    }
+
+    @Bean
+    public JoinPointCapture joinPointCapture() {
+        return new JoinPointCapture();
+    }
+
+    @Bean
+    public BenchmarkService benchmarkService() {
+        return new BenchmarkService();
+    }
+
+    @Bean
+    public LoadService loadService() {
+        return new LoadService();
+    }
+}
@@ -0,0 +1,74 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.backend.InMemoryLockBackend;
+import moon.mlock.backend.LockBackend;
+import moon.mlock.benchmark.support.LatencyLockBackend;
+import moon.mlock.config.LockProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * 基准测试上下文，默认使用内存锁存储后端启动Spring容器
+ *
+ * @author moon
+ */
+public class BenchmarkContext implements AutoCloseable {
+
+    private static final String APPLICATION_NAME = "benchmark";
+
+    private final AnnotationConfigApplicationContext context;
+
+    private final LockBackend delegate;
+
+    private final LatencyLockBackend backend;
+
+    public BenchmarkContext() {
+        this(new InMemoryLockBackend());
+    }
+
+    public BenchmarkContext(LockBackend delegate) {
+        LockProperties lockProperties = new LockProperties();
+        lockProperties.setApplicationName(APPLICATION_NAME);
+        lockProperties.setRedisGroupName(APPLICATION_NAME);
+        // 锁事件日志不计入注解路径开销
+        lockProperties.setEventLevel("off");
+        lockProperties.setEventDomainLevels("");
+        lockProperties.setEventSampleRate(0D);
+        this.delegate = delegate;
+        this.backend = new LatencyLockBackend(delegate);
+        this.context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("lockProperties", lockProperties);
+        context.getBeanFactory().registerSingleton("lockBackend", backend);
+        context.register(BenchmarkConfig.class);
+        context.refresh();
+    }
+
+    public <T> T getBean(Class<T> clazz) {
+        return context.getBean(clazz);
+    }
+
+    /**
+     * 锁存储后端，可设置模拟的往返耗时
+     *
+     * @return 锁存储后端
+     */
+    public LatencyLockBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * 清空内存后端中所有锁和幂等标记
+     */
+    public void clear() {
+        if (delegate instanceof InMemoryLockBackend) {
+            ((InMemoryLockBackend) delegate).clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (delegate instanceof InMemoryLockBackend) {
+            ((InMemoryLockBackend) delegate).close();
+        }
+    }
+}
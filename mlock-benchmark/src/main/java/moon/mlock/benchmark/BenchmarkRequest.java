@@ -0,0 +1,26 @@
+package moon.mlock.benchmark;
+
+/**
+ * 基准测试入参
+ *
+ * @author moon
+ */
+public class BenchmarkRequest {
+
+    private final Long id;
+
+    private final String userId;
+
+    public BenchmarkRequest(Long id, String userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,52 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.annotation.CheckLock;
+import moon.mlock.annotation.Idempotent;
+import moon.mlock.annotation.Lock;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.List;
+
+/**
+ * 基准测试目标方法，方法体为空，测量结果即注解路径本身的开销
+ *
+ * @author moon
+ */
+public class BenchmarkService {
+
+    public Object plain(BenchmarkRequest request) {
+        return request;
+    }
+
+    @Lock(domain = "benchLock", keys = {"#request.id", "#request.userId"}, lockType = LockTypeEnum.LOCK_REDIS)
+    public Object lock(BenchmarkRequest request) {
+        return request;
+    }
+
+    @Lock(domain = "benchMultiLock", keys = {"#request.userId", "#skuIds"}, lockType = LockTypeEnum.LOCK_REDIS)
+    public Object multiLock(BenchmarkRequest request, List<Long> skuIds) {
+        return request;
+    }
+
+    @Lock(domain = "benchNoLock", keys = {"#request.id", "#request.userId"}, lockType = LockTypeEnum.LOCK_NOTHING)
+    public Object noLock(BenchmarkRequest request) {
+        return request;
+    }
+
+    @CheckLock(domain = "benchCheckLock", keys = {"#request.id", "#request.userId"})
+    public Object checkLock(BenchmarkRequest request) {
+        return request;
+    }
+
+    @Idempotent(domain = "benchIdempotent", keys = {"#token"})
+    public Object idempotent(String token) {
+        return token;
+    }
+
+    /**
+     * 由 {@link JoinPointCapture} 拦截，用于获取真实的切入点
+     */
+    public Object capture(BenchmarkRequest request) {
+        return request;
+    }
+}
@@ -0,0 +1,58 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.utils.LocalUtils;
+import moon.mlock.utils.OwnerIdUtils;
+import moon.mlock.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成基准测试：{@link LocalUtils#getNextBatchId()}（全局锁 + SimpleDateFormat + String.format）与
+ * {@link SnowflakeIdGenerator} 的long、定长字符串形式，以及锁持有者id {@link OwnerIdUtils#nextId()} 对比
+ * <p>
+ * 使用 -t 指定线程数观察多核下的扩展性，如 {@code java -jar target/benchmarks.jar IdGeneratorBenchmark -t 8}
+ * <p>
+ * gc profiler下 snowflakeId 不分配对象，snowflakeIdString 每次分配一个char[]和一个String
+ *
+ * @author moon
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGeneratorBenchmark {
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public String localUtilsBatchId() {
+        return LocalUtils.getNextBatchId();
+    }
+
+    @Benchmark
+    public long snowflakeId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String snowflakeIdString() {
+        return generator.nextIdString();
+    }
+
+    @Benchmark
+    public String ownerId() {
+        return OwnerIdUtils.nextId();
+    }
+}
@@ -0,0 +1,26 @@
+package moon.mlock.benchmark;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * 捕获 {@link BenchmarkService#capture(BenchmarkRequest)} 的切入点，供key生成基准测试直接调用切面的表达式模板
+ *
+ * @author moon
+ */
+@Aspect
+public class JoinPointCapture {
+
+    private volatile ProceedingJoinPoint joinPoint;
+
+    @Around("execution(* moon.mlock.benchmark.BenchmarkService.capture(..))")
+    public Object doAround(ProceedingJoinPoint joinPoint) throws Throwable {
+        this.joinPoint = joinPoint;
+        return joinPoint.proceed();
+    }
+
+    public ProceedingJoinPoint getJoinPoint() {
+        return joinPoint;
+    }
+}
@@ -0,0 +1,95 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.aspect.CheckLockAspect;
+import moon.mlock.aspect.IdempotentAspect;
+import moon.mlock.aspect.LockAspect;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * key生成基准测试：单独测量各切面 executeTemplate 对SpEL表达式的解析和求值
+ * <p>
+ * executeTemplate 是切面的私有方法，通过MethodHandle调用，切入点取自一次真实的Spring AOP调用
+ *
+ * @author moon
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyTemplateBenchmark {
+
+    private static final String[] KEYS = {"#request.id", "#request.userId"};
+
+    private BenchmarkContext context;
+
+    private ProceedingJoinPoint joinPoint;
+
+    private MethodHandle lockTemplate;
+
+    private MethodHandle checkLockTemplate;
+
+    private MethodHandle idempotentTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new BenchmarkContext();
+        context.getBean(BenchmarkService.class).capture(new BenchmarkRequest(1L, "user1"));
+        joinPoint = context.getBean(JoinPointCapture.class).getJoinPoint();
+        lockTemplate = executeTemplate(context.getBean(LockAspect.class));
+        checkLockTemplate = executeTemplate(context.getBean(CheckLockAspect.class));
+        idempotentTemplate = executeTemplate(context.getBean(IdempotentAspect.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object[] lockAspect() throws Throwable {
+        return (Object[]) lockTemplate.invokeExact(KEYS, joinPoint);
+    }
+
+    @Benchmark
+    public Object[] checkLockAspect() throws Throwable {
+        return (Object[]) checkLockTemplate.invokeExact(KEYS, joinPoint);
+    }
+
+    @Benchmark
+    public Object[] idempotentAspect() throws Throwable {
+        return (Object[]) idempotentTemplate.invokeExact(KEYS, joinPoint);
+    }
+
+    /**
+     * 绑定切面实例的 executeTemplate(String[], ProceedingJoinPoint)
+     *
+     * @param aspect 切面实例
+     * @return 方法句柄，类型统一为 (String[], ProceedingJoinPoint)Object[]
+     */
+    private static MethodHandle executeTemplate(Object aspect) throws Exception {
+        Method method = aspect.getClass().getDeclaredMethod("executeTemplate", String[].class, ProceedingJoinPoint.class);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method).bindTo(aspect)
+                .asType(MethodType.methodType(Object[].class, String[].class, ProceedingJoinPoint.class));
+    }
+}
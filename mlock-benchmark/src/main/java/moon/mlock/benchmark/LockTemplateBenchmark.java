@@ -0,0 +1,105 @@
+package moon.mlock.benchmark;
+
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.template.ILockCallback;
+import moon.mlock.template.LockResult;
+import moon.mlock.template.impl.LockTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * LockTemplate 直接调用基准测试，不经过切面和key生成，与 {@link AspectBenchmark#lock} 对比可得出注解路径的额外开销；
+ * redisLockSupplier、redisLockRunnable 为函数式重载
+ *
+ * @author moon
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockTemplateBenchmark {
+
+    private static final ILockCallback<Boolean> CALLBACK = new ILockCallback<Boolean>() {
+        @Override
+        public Boolean success() {
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public Boolean fail() {
+            return Boolean.FALSE;
+        }
+
+        @Override
+        public Boolean ex(Exception e) {
+            return null;
+        }
+    };
+
+    private static final Supplier<Boolean> SUPPLIER = () -> Boolean.TRUE;
+
+    private static final Runnable RUNNABLE = () -> {
+    };
+
+    private BenchmarkContext context;
+
+    private final LockTemplate<Boolean> lockTemplate = new LockTemplate<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new BenchmarkContext();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String key;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            key = "benchLockTemplate_" + threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public Boolean redisLock(ThreadState state) {
+        return lockTemplate.execute(LockTypeEnum.LOCK_REDIS, "benchLockTemplate", state.key, 1000, TimeUnit.MILLISECONDS, CALLBACK);
+    }
+
+    @Benchmark
+    public Boolean redisLockSupplier(ThreadState state) {
+        return lockTemplate.execute(LockTypeEnum.LOCK_REDIS, "benchLockTemplate", state.key, 1000, TimeUnit.MILLISECONDS, SUPPLIER)
+                .orElse(Boolean.FALSE);
+    }
+
+    @Benchmark
+    public LockResult<Void> redisLockRunnable(ThreadState state) {
+        return lockTemplate.run(LockTypeEnum.LOCK_REDIS, "benchLockTemplate", state.key, 1000, TimeUnit.MILLISECONDS, RUNNABLE);
+    }
+
+    @Benchmark
+    public Boolean noLock(ThreadState state) {
+        return lockTemplate.execute(LockTypeEnum.LOCK_NOTHING, "benchLockTemplate", state.key, 1000, TimeUnit.MILLISECONDS, CALLBACK);
+    }
+}
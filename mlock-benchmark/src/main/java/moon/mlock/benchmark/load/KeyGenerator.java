@@ -0,0 +1,112 @@
+package moon.mlock.benchmark.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测key生成器
+ *
+ * @author moon
+ */
+public abstract class KeyGenerator {
+
+    /**
+     * key前缀
+     */
+    private static final String KEY_PREFIX = "load_";
+
+    /**
+     * 预先生成的key，避免压测过程中拼接字符串
+     */
+    private final String[] keys;
+
+    protected KeyGenerator(int keyCount) {
+        this.keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = KEY_PREFIX + i;
+        }
+    }
+
+    /**
+     * 根据分布名称创建key生成器
+     *
+     * @param distribution 分布：uniform、zipf
+     * @param keyCount     key数量
+     * @param exponent     zipf分布指数，越大热点越集中
+     * @return key生成器
+     */
+    public static KeyGenerator of(String distribution, int keyCount, double exponent) {
+        switch (distribution) {
+            case "uniform":
+                return new Uniform(keyCount);
+            case "zipf":
+                return new Zipf(keyCount, exponent);
+            default:
+                throw new IllegalArgumentException("不支持的key分布：" + distribution);
+        }
+    }
+
+    /**
+     * 下一个key
+     *
+     * @return 锁key
+     */
+    public String next() {
+        return keys[nextIndex(ThreadLocalRandom.current())];
+    }
+
+    /**
+     * 下一个key的下标
+     *
+     * @param random 随机数
+     * @return key下标
+     */
+    protected abstract int nextIndex(ThreadLocalRandom random);
+
+    protected int keyCount() {
+        return keys.length;
+    }
+
+    /**
+     * 均匀分布
+     */
+    private static class Uniform extends KeyGenerator {
+
+        private Uniform(int keyCount) {
+            super(keyCount);
+        }
+
+        @Override
+        protected int nextIndex(ThreadLocalRandom random) {
+            return random.nextInt(keyCount());
+        }
+    }
+
+    /**
+     * zipf分布，第i个key（从1开始）的概率与 1/i^exponent 成正比，使用累积分布表二分查找
+     */
+    private static class Zipf extends KeyGenerator {
+
+        private final double[] cdf;
+
+        private Zipf(int keyCount, double exponent) {
+            super(keyCount);
+            cdf = new double[keyCount];
+            double sum = 0D;
+            for (int i = 0; i < keyCount; i++) {
+                sum += 1D / Math.pow(i + 1, exponent);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < keyCount; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        @Override
+        protected int nextIndex(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            index = index >= 0 ? index : -index - 1;
+            return Math.min(index, cdf.length - 1);
+        }
+    }
+}
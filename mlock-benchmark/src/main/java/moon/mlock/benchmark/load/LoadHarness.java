@@ -0,0 +1,267 @@
+package moon.mlock.benchmark.load;
+
+import io.lettuce.core.RedisClient;
+import moon.mlock.backend.LettuceLockBackend;
+import moon.mlock.benchmark.BenchmarkContext;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.limit.GradientConcurrencyLimiter;
+import moon.mlock.limit.LockWaitLimiters;
+import moon.mlock.template.ILockCallback;
+import moon.mlock.template.impl.LockTemplate;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程锁竞争压测
+ * <p>
+ * 按指定的线程数、key分布、持有时间和等待时间，通过 LockTemplate 或 @Lock 方法反复加锁，输出：
+ * <ul>
+ *     <li>吞吐：每秒成功次数、每秒尝试次数</li>
+ *     <li>加锁耗时：从调用开始到进入临界区的 p50/p99/p999/max</li>
+ *     <li>超时率：未拿到锁的调用占比</li>
+ *     <li>公平性：各线程成功次数的Jain公平指数，1表示完全公平，1/线程数表示完全不公平</li>
+ * </ul>
+ * 默认使用内存锁存储后端，可模拟往返耗时，用于在本机对比不同等待策略和单飞合并的效果；
+ * 指定 --redis-uri 时使用 {@link LettuceLockBackend} 压测真实redis；指定 --limiter=true 时开启锁等待并发限制，
+ * 被拒绝的调用计入超时
+ * <p>
+ * 示例：java -cp target/benchmarks.jar moon.mlock.benchmark.load.LoadHarness --mode=template --threads=32
+ * --keys=100 --distribution=zipf --hold-micros=500 --rtt-micros=200
+ *
+ * @author moon
+ */
+public class LoadHarness {
+
+    /**
+     * 可记录的最大耗时，单位μs
+     */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LoadOptions options;
+
+    private final LoadService service;
+
+    private final KeyGenerator keyGenerator;
+
+    private final LockTemplate<Boolean> lockTemplate = new LockTemplate<>();
+
+    /**
+     * 是否处于测量阶段，预热阶段的结果不计入统计
+     */
+    private volatile boolean measuring;
+
+    /**
+     * 是否停止压测
+     */
+    private volatile boolean stopped;
+
+    public LoadHarness(LoadOptions options, LoadService service) {
+        this.options = options;
+        this.service = service;
+        this.keyGenerator = KeyGenerator.of(options.getDistribution(), options.getKeys(), options.getZipfExponent());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        if (options.getRedisUri().isEmpty()) {
+            run(options, new BenchmarkContext());
+            return;
+        }
+        RedisClient client = RedisClient.create(options.getRedisUri());
+        try (LettuceLockBackend backend = new LettuceLockBackend(client)) {
+            run(options, new BenchmarkContext(backend));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private static void run(LoadOptions options, BenchmarkContext benchmarkContext) throws InterruptedException {
+        try (BenchmarkContext context = benchmarkContext) {
+            context.getBackend().setLatency(options.getRttMicros(), TimeUnit.MICROSECONDS);
+            LockWaitLimiters.configure(options.isLimiter(), LockWaitLimiters.DEFAULT_INITIAL_LIMIT, LockWaitLimiters.DEFAULT_MIN_LIMIT,
+                    LockWaitLimiters.DEFAULT_MAX_LIMIT, LockWaitLimiters.DEFAULT_SMOOTHING, LockWaitLimiters.DEFAULT_TOLERANCE);
+            LoadService service = context.getBean(LoadService.class);
+            LoadHarness harness = new LoadHarness(options, service);
+            System.out.println(options);
+            System.out.println(harness.run());
+            for (Map.Entry<String, GradientConcurrencyLimiter> entry : LockWaitLimiters.getLimiters().entrySet()) {
+                GradientConcurrencyLimiter limiter = entry.getValue();
+                System.out.printf("limiter %s limit=%d shed=%d shortRtt(us)=%d longRtt(us)=%d%n", entry.getKey(), limiter.getLimit(),
+                        limiter.getShedCount(), limiter.getShortRttMicros(), limiter.getLongRttMicros());
+            }
+        }
+    }
+
+    /**
+     * 执行压测
+     *
+     * @return 压测结果
+     * @throws InterruptedException 中断异常
+     */
+    public String run() throws InterruptedException {
+        List<Worker> workers = new ArrayList<>(options.getThreads());
+        CountDownLatch done = new CountDownLatch(options.getThreads());
+        for (int i = 0; i < options.getThreads(); i++) {
+            Worker worker = new Worker(done);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "mlock-load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+        measuring = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+        measuring = false;
+        long elapsedNanos = System.nanoTime() - start;
+        stopped = true;
+        done.await();
+        return report(workers, elapsedNanos);
+    }
+
+    /**
+     * 执行一次加锁调用
+     *
+     * @param request 压测请求
+     * @return true：拿到锁
+     */
+    private boolean call(LoadRequest request) {
+        Boolean result;
+        switch (options.getMode()) {
+            case "template":
+                result = lockTemplate.execute(LockTypeEnum.LOCK_REDIS, "loadTemplate", request.getKey(),
+                        options.getWaitMillis(), TimeUnit.MILLISECONDS, new ILockCallback<Boolean>() {
+                            @Override
+                            public Boolean success() {
+                                return LoadService.hold(request);
+                            }
+
+                            @Override
+                            public Boolean fail() {
+                                return Boolean.FALSE;
+                            }
+
+                            @Override
+                            public Boolean ex(Exception e) {
+                                return null;
+                            }
+                        });
+                break;
+            case "lock":
+                result = service.lock(request);
+                break;
+            case "singleflight":
+                result = service.singleFlight(request);
+                break;
+            case "nolock":
+                result = service.noLock(request);
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的调用方式：" + options.getMode());
+        }
+        return Boolean.TRUE.equals(result);
+    }
+
+    private String report(List<Worker> workers, long elapsedNanos) {
+        Histogram acquire = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long success = 0L;
+        long timeout = 0L;
+        long error = 0L;
+        long coalesced = 0L;
+        double sum = 0D;
+        double squareSum = 0D;
+        long minPerThread = Long.MAX_VALUE;
+        long maxPerThread = 0L;
+        for (Worker worker : workers) {
+            acquire.add(worker.acquire);
+            success += worker.success;
+            timeout += worker.timeout;
+            error += worker.error;
+            coalesced += worker.coalesced;
+            sum += worker.success;
+            squareSum += (double) worker.success * worker.success;
+            minPerThread = Math.min(minPerThread, worker.success);
+            maxPerThread = Math.max(maxPerThread, worker.success);
+        }
+        double seconds = elapsedNanos / 1e9D;
+        long attempts = success + timeout + error;
+        double fairness = squareSum == 0D ? 0D : sum * sum / (workers.size() * squareSum);
+        return String.format("ops/s=%.1f attempts/s=%.1f success=%d timeout=%d(%.2f%%) error=%d coalesced=%d%n"
+                        + "acquire(us) p50=%d p99=%d p999=%d max=%d mean=%.1f%n"
+                        + "fairness(jain)=%.4f perThread(min/max)=%d/%d",
+                success / seconds, attempts / seconds, success, timeout, attempts == 0 ? 0D : timeout * 100D / attempts,
+                error, coalesced, acquire.getValueAtPercentile(50), acquire.getValueAtPercentile(99),
+                acquire.getValueAtPercentile(99.9), acquire.getMaxValue(), acquire.getMean(),
+                fairness, minPerThread, maxPerThread);
+    }
+
+    /**
+     * 压测线程，统计只由本线程写入，压测结束后汇总
+     */
+    private class Worker implements Runnable {
+
+        private final CountDownLatch done;
+
+        private final LoadRequest request = new LoadRequest();
+
+        private final Histogram acquire = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        private long success;
+
+        private long timeout;
+
+        private long error;
+
+        /**
+         * 单飞模式下共享他人结果、没有进入临界区的次数
+         */
+        private long coalesced;
+
+        private Worker(CountDownLatch done) {
+            this.done = done;
+            this.request.setHoldNanos(TimeUnit.MICROSECONDS.toNanos(options.getHoldMicros()));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    request.setKey(keyGenerator.next());
+                    request.setEnteredNanos(0L);
+                    long start = System.nanoTime();
+                    boolean result;
+                    try {
+                        result = call(request);
+                    } catch (Exception e) {
+                        if (measuring) {
+                            error++;
+                        }
+                        continue;
+                    }
+                    if (!measuring) {
+                        continue;
+                    }
+                    if (!result) {
+                        timeout++;
+                        continue;
+                    }
+                    success++;
+                    long entered = request.getEnteredNanos();
+                    if (entered >= start) {
+                        acquire.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(entered - start), HIGHEST_TRACKABLE_MICROS));
+                    } else if (Objects.equals(options.getMode(), "singleflight")) {
+                        coalesced++;
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package moon.mlock.benchmark.load;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，格式：--name=value
+ *
+ * @author moon
+ */
+public class LoadOptions {
+
+    /**
+     * 调用方式：template、lock、singleflight、nolock
+     */
+    private String mode = "template";
+
+    /**
+     * 压测线程数
+     */
+    private int threads = 16;
+
+    /**
+     * key数量
+     */
+    private int keys = 1000;
+
+    /**
+     * key分布：uniform、zipf
+     */
+    private String distribution = "uniform";
+
+    /**
+     * zipf分布指数
+     */
+    private double zipfExponent = 1.1D;
+
+    /**
+     * 持有锁的时长，单位μs
+     */
+    private long holdMicros = 1000L;
+
+    /**
+     * 等待锁的最长时间，单位ms，只对template模式生效
+     */
+    private long waitMillis = 1000L;
+
+    /**
+     * 模拟的锁存储后端往返耗时，单位μs
+     */
+    private long rttMicros = 0L;
+
+    /**
+     * redis地址，如 redis://localhost:6379，为空时使用内存后端，否则使用Lettuce后端
+     */
+    private String redisUri = "";
+
+    /**
+     * 是否开启锁等待并发限制
+     */
+    private boolean limiter = false;
+
+    /**
+     * 预热时长，单位s
+     */
+    private int warmupSeconds = 5;
+
+    /**
+     * 压测时长，单位s
+     */
+    private int durationSeconds = 30;
+
+    /**
+     * 解析命令行参数
+     *
+     * @param args 命令行参数
+     * @return 压测参数
+     */
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(16);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式为 --name=value：" + arg);
+            }
+            int index = arg.indexOf('=');
+            values.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+        LoadOptions options = new LoadOptions();
+        options.mode = values.getOrDefault("mode", options.mode);
+        options.threads = Integer.parseInt(values.getOrDefault("threads", String.valueOf(options.threads)));
+        options.keys = Integer.parseInt(values.getOrDefault("keys", String.valueOf(options.keys)));
+        options.distribution = values.getOrDefault("distribution", options.distribution);
+        options.zipfExponent = Double.parseDouble(values.getOrDefault("zipf-exponent", String.valueOf(options.zipfExponent)));
+        options.holdMicros = Long.parseLong(values.getOrDefault("hold-micros", String.valueOf(options.holdMicros)));
+        options.waitMillis = Long.parseLong(values.getOrDefault("wait-millis", String.valueOf(options.waitMillis)));
+        options.rttMicros = Long.parseLong(values.getOrDefault("rtt-micros", String.valueOf(options.rttMicros)));
+        options.redisUri = values.getOrDefault("redis-uri", options.redisUri);
+        options.limiter = Boolean.parseBoolean(values.getOrDefault("limiter", String.valueOf(options.limiter)));
+        options.warmupSeconds = Integer.parseInt(values.getOrDefault("warmup-seconds", String.valueOf(options.warmupSeconds)));
+        options.durationSeconds = Integer.parseInt(values.getOrDefault("duration-seconds", String.valueOf(options.durationSeconds)));
+        return options;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getKeys() {
+        return keys;
+    }
+
+    public String getDistribution() {
+        return distribution;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public long getHoldMicros() {
+        return holdMicros;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public long getRttMicros() {
+        return rttMicros;
+    }
+
+    public String getRedisUri() {
+        return redisUri;
+    }
+
+    public boolean isLimiter() {
+        return limiter;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode + ", threads=" + threads + ", keys=" + keys + ", distribution=" + distribution
+                + ("zipf".equals(distribution) ? "(" + zipfExponent + ")" : "") + ", holdMicros=" + holdMicros
+                + ", waitMillis=" + ("template".equals(mode) ? waitMillis : LoadService.ANNOTATION_WAIT_MILLIS)
+                + ", rttMicros=" + rttMicros + ", backend=" + (redisUri.isEmpty() ? "memory" : redisUri) + ", limiter=" + limiter + ", warmupSeconds=" + warmupSeconds + ", durationSeconds=" + durationSeconds;
+    }
+}
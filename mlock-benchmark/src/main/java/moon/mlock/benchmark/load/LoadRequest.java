@@ -0,0 +1,48 @@
+package moon.mlock.benchmark.load;
+
+/**
+ * 压测请求，每个线程复用一个实例
+ *
+ * @author moon
+ */
+public class LoadRequest {
+
+    /**
+     * 锁key
+     */
+    private String key;
+
+    /**
+     * 持有锁的时长，单位ns
+     */
+    private long holdNanos;
+
+    /**
+     * 进入临界区的时间点（System.nanoTime），由目标方法写入
+     */
+    private long enteredNanos;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getHoldNanos() {
+        return holdNanos;
+    }
+
+    public void setHoldNanos(long holdNanos) {
+        this.holdNanos = holdNanos;
+    }
+
+    public long getEnteredNanos() {
+        return enteredNanos;
+    }
+
+    public void setEnteredNanos(long enteredNanos) {
+        this.enteredNanos = enteredNanos;
+    }
+}
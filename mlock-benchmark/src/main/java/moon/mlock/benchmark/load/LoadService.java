@@ -0,0 +1,50 @@
+package moon.mlock.benchmark.load;
+
+import moon.mlock.annotation.Lock;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测目标方法：记录进入临界区的时间并持有锁指定时长
+ * <p>
+ * 注解的等待时间是常量，注解模式固定等待 {@link #ANNOTATION_WAIT_MILLIS} 毫秒
+ *
+ * @author moon
+ */
+public class LoadService {
+
+    /**
+     * 注解模式的等待时间，单位ms
+     */
+    public static final long ANNOTATION_WAIT_MILLIS = 1000L;
+
+    @Lock(domain = "loadLock", keys = {"#request.key"}, waitTime = ANNOTATION_WAIT_MILLIS)
+    public Boolean lock(LoadRequest request) {
+        return hold(request);
+    }
+
+    @Lock(domain = "loadSingleFlight", keys = {"#request.key"}, waitTime = ANNOTATION_WAIT_MILLIS, singleFlight = true)
+    public Boolean singleFlight(LoadRequest request) {
+        return hold(request);
+    }
+
+    @Lock(domain = "loadNoLock", keys = {"#request.key"}, lockType = LockTypeEnum.LOCK_NOTHING)
+    public Boolean noLock(LoadRequest request) {
+        return hold(request);
+    }
+
+    /**
+     * 持有锁
+     *
+     * @param request 压测请求
+     * @return true
+     */
+    public static Boolean hold(LoadRequest request) {
+        request.setEnteredNanos(System.nanoTime());
+        if (request.getHoldNanos() > 0) {
+            LockSupport.parkNanos(request.getHoldNanos());
+        }
+        return Boolean.TRUE;
+    }
+}
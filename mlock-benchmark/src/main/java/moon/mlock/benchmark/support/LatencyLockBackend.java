@@ -0,0 +1,125 @@
+package moon.mlock.benchmark.support;
+
+import moon.mlock.backend.LockBackend;
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 模拟网络往返耗时的锁存储后端，每次调用前休眠指定时长，再委托给实际的后端
+ * <p>
+ * 批量操作只休眠一次，与redis pipeline一次往返的行为一致
+ *
+ * @author moon
+ */
+public class LatencyLockBackend implements LockBackend {
+
+    private final LockBackend delegate;
+
+    /**
+     * 每次调用模拟的往返耗时，单位ns，0表示不模拟
+     */
+    private volatile long latencyNanos;
+
+    public LatencyLockBackend(LockBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 设置每次调用模拟的往返耗时
+     *
+     * @param latency 往返耗时，0表示不模拟
+     * @param unit    时间单位
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        simulateLatency();
+        return delegate.acquire(key, value, timeout, unit);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        simulateLatency();
+        return delegate.release(key, value);
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        simulateLatency();
+        delegate.releaseAll(keys);
+    }
+
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        simulateLatency();
+        return delegate.renew(key, value, timeout, unit);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        simulateLatency();
+        return delegate.exists(key);
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        simulateLatency();
+        return delegate.mark(key, value, timeout, unit);
+    }
+
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        simulateLatency();
+        return delegate.markBatch(keys, value, timeout, unit);
+    }
+
+    @Override
+    public String get(String key) {
+        simulateLatency();
+        return delegate.get(key);
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        simulateLatency();
+        return delegate.update(key, value, timeout, unit);
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        simulateLatency();
+        return delegate.markCompact(key);
+    }
+
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        simulateLatency();
+        return delegate.markCompactBatch(keys);
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        simulateLatency();
+        delegate.releaseCompact(key);
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        simulateLatency();
+        return delegate.existsCompact(key);
+    }
+
+    private void simulateLatency() {
+        long nanos = latencyNanos;
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
@@ -77,4 +77,86 @@ public @interface Idempotent {
      * @return 异常提示信息
      */
     String exMsg() default "已处理，请不要重复处理！";
+
+    /**
+     * 是否开启本地预过滤
+     * <p>
+     * 开启后，本节点已成功标记且仍在有效期内的key会在访问redis之前被直接判定为重复，适用于客户端重试集中打到同一节点的场景；
+     * 首次出现的key仍由redis确认
+     * <p>
+     * 非必须，默认 false
+     *
+     * @return 是否开启本地预过滤
+     */
+    boolean localFilter() default false;
+
+    /**
+     * 是否回放首次调用的结果
+     * <p>
+     * 开启后，首次调用完成时会把返回值序列化后保存在幂等key中，重复请求直接返回该结果；
+     * 首次调用仍在执行时，重复请求最多等待 {@link #replayWaitTime()} 毫秒，等待超时后按普通幂等处理。
+     * 返回值需要实现 {@link java.io.Serializable}，JDK常用包之外的类需要通过 {@code mlock.idempotent.replay-allowed-packages}
+     * 加入反序列化白名单，否则按普通幂等处理
+     * <p>
+     * 非必须，默认 false
+     *
+     * @return 是否回放首次调用的结果
+     */
+    boolean replayResult() default false;
+
+    /**
+     * 结果回放模式下，重复请求等待首次调用完成的最长时间，单位ms
+     * <p>
+     * 非必须，默认 3000ms
+     *
+     * @return 等待首次调用完成的最长时间
+     */
+    long replayWaitTime() default 3000;
+
+    /**
+     * 是否开启单飞合并
+     * <p>
+     * 开启后，同一JVM内相同key的并发调用只有一个真正执行（幂等检查并执行方法），其余调用等待并共享其返回值或异常，
+     * 适用于缓存击穿、重复提交等并发突发场景，每个JVM只产生一次redis调用
+     * <p>
+     * 非必须，默认 false
+     *
+     * @return 是否开启单飞合并
+     */
+    boolean singleFlight() default false;
+
+    /**
+     * 批量幂等的集合参数表达式
+     * <p>
+     * 非空时开启批量模式：表达式需指向方法的集合参数，如 #messages；{@link #keys()} 对集合中每个元素分别求值，
+     * 当前元素可通过 #item 引用，如 keys = {"#item.msgId"}。所有元素的幂等key通过一次pipeline标记，
+     * 目标方法收到的集合只包含首次出现的元素；全部重复时按 {@link #throwEx()} 处理。批量模式下不支持结果回放和单飞合并
+     * <p>
+     * 非必须，默认 空，即非批量模式
+     *
+     * @return 集合参数表达式
+     */
+    String batch() default "";
+
+    /**
+     * 是否使用紧凑存储
+     * <p>
+     * 开启后，幂等key散列成 {@link #compactBits()} 位摘要，写入按ttl分桶、整桶过期的redis hash，
+     * 大幅减少顶层key数量和内存占用；实际保留时长在 [ttl, 2*ttl) 之间，摘要碰撞概率见
+     * {@link moon.mlock.idempotent.CompactIdempotentKey}。紧凑存储模式下不支持结果回放
+     * <p>
+     * 非必须，默认 false
+     *
+     * @return 是否使用紧凑存储
+     */
+    boolean compact() default false;
+
+    /**
+     * 紧凑存储的摘要位数，只支持64或128
+     * <p>
+     * 非必须，默认 128
+     *
+     * @return 摘要位数
+     */
+    int compactBits() default 128;
 }
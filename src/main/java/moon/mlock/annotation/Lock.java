@@ -41,7 +41,8 @@ public @interface Lock {
     /**
      * key组成
      * <p>
-     * 拼接在domain后面，即 domain_key1_key2..._keyn，共同组成redis key
+     * 拼接在domain后面，即 domain_key1_key2..._keyn，共同组成redis key。
+     * 求值结果为集合或数组时展开为多个key，集合不能为空，否则抛出 {@link IllegalArgumentException}
      * <p>
      * 必须
      *
@@ -84,4 +85,16 @@ public @interface Lock {
      * @return 异常提示信息
      */
     String exMsg() default "其他操作正在处理中，请稍后再试！";
+
+    /**
+     * 是否开启单飞合并
+     * <p>
+     * 开启后，同一JVM内相同key的并发调用只有一个真正执行（加锁并执行方法），其余调用等待并共享其返回值或异常，
+     * 适用于缓存击穿、重复提交等并发突发场景，每个JVM只产生一次redis调用
+     * <p>
+     * 非必须，默认 false
+     *
+     * @return 是否开启单飞合并
+     */
+    boolean singleFlight() default false;
 }
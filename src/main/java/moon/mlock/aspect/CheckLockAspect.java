@@ -3,11 +3,18 @@ package moon.mlock.aspect;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import moon.mlock.annotation.CheckLock;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
 import moon.mlock.common.enums.LockTypeEnum;
 import moon.mlock.common.exception.GetLockException;
 import moon.mlock.common.exception.LockException;
+import moon.mlock.event.LockEventLogger;
 import moon.mlock.factory.LockFactory;
 import moon.mlock.lock.ILock;
+import moon.mlock.metrics.LockMetrics;
+import moon.mlock.policy.LockPolicies;
 import moon.mlock.proxy.RedisLockProxy;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -85,14 +92,15 @@ public class CheckLockAspect {
 
             lockKey = getLockKey(joinPoint, checkLock);
             String domain = checkLock.domain();
-            LockTypeEnum lockType = checkLock.lockType();
+            LockTypeEnum lockType = LockPolicies.get(domain).lockType(checkLock.lockType());
             ILock lock = LockFactory.getLock(lockType, domain, lockKey);
 
             //检查锁
             boolean check = lock.checkLock();
 
             String lockName = lock.getClass().getSimpleName();
-            log.info("checkLock domain={} lockKey={} lockName={} methodName={} check={}", domain, lockKey, lockName, method.getName(), check);
+            LockEventLogger.publish(LockEventTypeEnum.CHECK_LOCK_ASPECT, domain, lockKey, lockName, method.getName(), check);
+            LockMetrics.recordAspect(AspectTypeEnum.CHECK_LOCK, domain, check ? LockOutcomeEnum.SUCCESS : LockOutcomeEnum.FAIL);
             if (check) {
                 return joinPoint.proceed();
             } else if (checkLock.throwEx()) {
@@ -124,7 +132,7 @@ public class CheckLockAspect {
         String[] keys = checkLock.keys();
         String[] keyValues = executeTemplate(keys, joinPoint);
         String key = String.join("_", keyValues);
-        return checkLock.domain() + "_" + key;
+        return KeyLayout.lockKey(checkLock.domain(), key);
     }
     /**
      * 执行表达式模板
@@ -3,10 +3,23 @@ package moon.mlock.aspect;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import moon.mlock.annotation.Idempotent;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
 import moon.mlock.common.exception.IdempotentException;
+import moon.mlock.event.LockEventLogger;
+import moon.mlock.flight.SingleFlightGroup;
+import moon.mlock.idempotent.CompactIdempotentKey;
+import moon.mlock.idempotent.IdempotentResultCodec;
+import moon.mlock.idempotent.LocalIdempotentFilter;
+import moon.mlock.metrics.LockMetrics;
 import moon.mlock.proxy.RedisLockProxy;
 import moon.mlock.utils.AspectUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
@@ -19,10 +32,26 @@ import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.Assert;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 /**
@@ -64,6 +93,33 @@ public class IdempotentAspect {
      */
     private final Map<String, String> idempotentMethodParamsCache = Maps.newConcurrentMap();
 
+    /**
+     * 单飞调用组
+     * <p>
+     * key:切面方法，value:该方法的单飞调用组，不同方法即使key相同也不会合并
+     */
+    private final Map<Method, SingleFlightGroup> singleFlightGroups = Maps.newConcurrentMap();
+
+    /**
+     * 批量模式下，集合当前元素在SpEL中的变量名
+     */
+    private static final String BATCH_ITEM = "item";
+
+    /**
+     * 结果回放模式下，等待首次调用完成的最小轮询间隔，单位ms
+     */
+    private static final long REPLAY_MIN_SLEEP_MILLIS = 10L;
+
+    /**
+     * 结果回放模式下，等待首次调用完成的最大轮询间隔，单位ms
+     */
+    private static final long REPLAY_MAX_SLEEP_MILLIS = 200L;
+
+    /**
+     * 本地幂等预过滤器，仅在注解开启localFilter时使用
+     */
+    private final LocalIdempotentFilter localIdempotentFilter = new LocalIdempotentFilter();
+
     @Autowired
     private RedisLockProxy proxy;
 
@@ -82,6 +138,7 @@ public class IdempotentAspect {
      * @return 结果
      * @throws Throwable 异常
      */
+    @Around("idempotentAspect()")
     public Object doAround(ProceedingJoinPoint joinPoint) throws Throwable {
         String key = null;
         try {
@@ -91,33 +148,330 @@ public class IdempotentAspect {
             Idempotent idempotent = getIdempotent(method);
             Assert.notNull(idempotent, "获取@Idempotent注解失败！");
 
+            if (StringUtils.isNotEmpty(idempotent.batch())) {
+                return batchProceed(joinPoint, method, idempotent);
+            }
             key = getIdempotentKey(joinPoint, idempotent);
+            if (idempotent.singleFlight()) {
+                // 同一JVM内相同key的并发调用共享同一次幂等执行结果
+                String idempotentKey = key;
+                SingleFlightGroup group = singleFlightGroups.computeIfAbsent(method, m -> new SingleFlightGroup());
+                return group.execute(key, () -> idempotentProceed(joinPoint, method, idempotent, idempotentKey));
+            }
+            return idempotentProceed(joinPoint, method, idempotent, key);
+        } catch (IdempotentException e) {
+            log.error("idempotentAspect Business ex, key={}", key, e);
+            throw e;
+        } catch (Exception e) {
+            log.error("idempotentAspect ex, key={}", key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 幂等检查并执行目标方法
+     *
+     * @param joinPoint  切面的切入点信息
+     * @param method     切面方法
+     * @param idempotent Idempotent注解信息
+     * @param key        幂等key
+     * @return 目标方法返回值，或回放的首次调用结果
+     * @throws Throwable 异常
+     */
+    private Object idempotentProceed(ProceedingJoinPoint joinPoint, Method method, Idempotent idempotent, String key) throws Throwable {
+        // 本次调用是否成功标记了幂等key，只有标记成功的调用才能在异常时释放
+        boolean marked = false;
+        boolean localFilter = idempotent.localFilter();
+        CompactIdempotentKey compactKey = null;
+        try {
             String domain = idempotent.domain();
             long ttl = idempotent.ttl();
-            boolean re = proxy.tryRedisIdempotent(key, ttl);
-            log.info("tryRedisIdempotent domain={} key={} result={} methodName={}", domain, key, re, method.getName());
+            boolean replayResult = idempotent.replayResult();
+            if (idempotent.compact()) {
+                Assert.isTrue(!replayResult, "@Idempotent紧凑存储模式不支持结果回放！");
+                compactKey = CompactIdempotentKey.of(domain, key, ttl, idempotent.compactBits());
+            }
+            boolean re;
+            if (localFilter && localIdempotentFilter.isMarked(key)) {
+                // 本节点已标记过，无需访问redis
+                re = false;
+            } else {
+                re = tryMark(key, compactKey, ttl, replayResult, localFilter);
+            }
+            marked = re;
+            LockEventLogger.publish(LockEventTypeEnum.IDEMPOTENT_ASPECT, domain, key, null, method.getName(), re);
+            LockMetrics.recordAspect(AspectTypeEnum.IDEMPOTENT, domain, re ? LockOutcomeEnum.SUCCESS : LockOutcomeEnum.FAIL);
             if (re) {
-                return joinPoint.proceed();
-            } else if (idempotent.throwEx()) {
+                return proceed(joinPoint, key, ttl, replayResult);
+            }
+            if (replayResult) {
+                // 等待首次调用完成并回放其结果
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idempotent.replayWaitTime());
+                long sleepMillis = REPLAY_MIN_SLEEP_MILLIS;
+                while (true) {
+                    String value = proxy.getIdempotentValue(key);
+                    if (IdempotentResultCodec.isDone(value)) {
+                        Object replay;
+                        try {
+                            replay = IdempotentResultCodec.decode(value);
+                        } catch (IOException | ClassNotFoundException e) {
+                            // 结果含有白名单外的类或类已不存在，按普通幂等处理
+                            log.warn("IdempotentAspect decode replay result ex, key={}", key, e);
+                            break;
+                        }
+                        LockEventLogger.publish(LockEventTypeEnum.IDEMPOTENT_REPLAY, domain, key, null, method.getName(), true);
+                        LockMetrics.recordAspect(AspectTypeEnum.IDEMPOTENT, domain, LockOutcomeEnum.REPLAY);
+                        return replay;
+                    }
+                    if (Objects.isNull(value)) {
+                        // 首次调用异常已释放幂等锁，或幂等key已过期，由当前请求重新执行
+                        if (tryMark(key, null, ttl, true, localFilter)) {
+                            marked = true;
+                            return proceed(joinPoint, key, ttl, true);
+                        }
+                        // 其他请求抢先标记，与执行中一样等待
+                    } else if (!IdempotentResultCodec.isProcessing(value)) {
+                        // 结果不可回放，按普通幂等处理
+                        break;
+                    }
+                    long remainNanos = deadline - System.nanoTime();
+                    if (remainNanos <= 0) {
+                        // 等待超时，按普通幂等处理
+                        break;
+                    }
+                    LockSupport.parkNanos(Math.min(TimeUnit.MILLISECONDS.toNanos(sleepMillis), remainNanos));
+                    sleepMillis = Math.min(sleepMillis << 1, REPLAY_MAX_SLEEP_MILLIS);
+                }
+            }
+            if (idempotent.throwEx()) {
                 // 业务异常，抛出异常提示信息
                 Class<? extends RuntimeException> ex = idempotent.ex();
                 Constructor<? extends RuntimeException> constructor = ex.getConstructor(String.class);
                 throw constructor.newInstance(idempotent.exMsg());
             }
             return null;
-        } catch (IdempotentException e) {
-            // 业务异常，释放幂等锁
-            proxy.unlock(key);
-            log.error("idempotentAspect Business ex, key={}", key, e);
-            throw e;
         } catch (Exception e) {
             // 异常释放幂等锁
-            proxy.unlock(key);
-            log.error("idempotentAspect ex, key={}", key, e);
+            release(key, compactKey, marked, localFilter);
+            throw e;
+        }
+    }
+
+    /**
+     * 批量幂等检查并执行目标方法
+     * <p>
+     * 集合参数中的每个元素对应一个幂等key，所有key一次性标记，目标方法只处理首次出现的元素
+     *
+     * @param joinPoint  切面的切入点信息
+     * @param method     切面方法
+     * @param idempotent Idempotent注解信息
+     * @return 目标方法返回值
+     * @throws Throwable 异常
+     */
+    private Object batchProceed(ProceedingJoinPoint joinPoint, Method method, Idempotent idempotent) throws Throwable {
+        StandardEvaluationContext context = createEvaluationContext(joinPoint);
+        Object batchValue = parser.parseExpression(idempotent.batch()).getValue(context);
+        Assert.isInstanceOf(Collection.class, batchValue, "@Idempotent batch表达式的结果必须是集合！");
+        Collection<?> items = (Collection<?>) batchValue;
+        Object[] args = joinPoint.getArgs();
+        int batchIndex = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == items) {
+                batchIndex = i;
+                break;
+            }
+        }
+        Assert.isTrue(batchIndex >= 0, "@Idempotent batch表达式必须指向方法的集合参数！");
+        // 在标记幂等key之前确定替换参数的集合类型，不支持的参数类型直接失败，不留下标记
+        Supplier<Collection<Object>> newCollection = batchCollectionFactory(method.getParameterTypes()[batchIndex], items);
+
+        String domain = idempotent.domain();
+        long ttl = idempotent.ttl();
+        boolean localFilter = idempotent.localFilter();
+        String[] keys = idempotent.keys();
+        boolean compact = idempotent.compact();
+        List<Object> candidates = new ArrayList<>(items.size());
+        List<String> candidateKeys = new ArrayList<>(items.size());
+        List<CompactIdempotentKey> candidateCompactKeys = new ArrayList<>(compact ? items.size() : 0);
+        for (Object item : items) {
+            context.setVariable(BATCH_ITEM, item);
+            String key = KeyLayout.lockKey(domain, String.join(StringConst.UNDERLINE, evaluate(keys, context)));
+            if (localFilter && localIdempotentFilter.isMarked(key)) {
+                // 本节点已标记过，无需访问redis
+                continue;
+            }
+            candidates.add(item);
+            candidateKeys.add(key);
+            if (compact) {
+                candidateCompactKeys.add(CompactIdempotentKey.of(domain, key, ttl, idempotent.compactBits()));
+            }
+        }
+
+        List<Boolean> results = compact
+                ? proxy.tryCompactIdempotentBatch(candidateCompactKeys)
+                : proxy.tryRedisIdempotentBatch(candidateKeys, ttl);
+        Collection<Object> newItems = newCollection.get();
+        List<String> newKeys = new ArrayList<>();
+        List<CompactIdempotentKey> newCompactKeys = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (results.get(i)) {
+                newItems.add(candidates.get(i));
+                newKeys.add(candidateKeys.get(i));
+                if (compact) {
+                    newCompactKeys.add(candidateCompactKeys.get(i));
+                }
+            }
+        }
+        LockEventLogger.publish(LockEventTypeEnum.IDEMPOTENT_BATCH, domain, null, null, method.getName(), !newItems.isEmpty(), items.size(), newItems.size());
+        LockMetrics.recordAspect(AspectTypeEnum.IDEMPOTENT, domain, newItems.isEmpty() ? LockOutcomeEnum.FAIL : LockOutcomeEnum.SUCCESS);
+        if (newItems.isEmpty()) {
+            if (idempotent.throwEx()) {
+                Class<? extends RuntimeException> ex = idempotent.ex();
+                Constructor<? extends RuntimeException> constructor = ex.getConstructor(String.class);
+                throw constructor.newInstance(idempotent.exMsg());
+            }
+            return null;
+        }
+        if (localFilter) {
+            for (String newKey : newKeys) {
+                localIdempotentFilter.mark(newKey, ttl);
+            }
+        }
+        args[batchIndex] = newItems;
+        try {
+            return joinPoint.proceed(args);
+        } catch (Exception e) {
+            // 异常释放本次标记的幂等锁
+            if (localFilter) {
+                newKeys.forEach(localIdempotentFilter::remove);
+            }
+            if (compact) {
+                newCompactKeys.forEach(proxy::releaseCompactIdempotent);
+            } else {
+                proxy.unlock(newKeys);
+            }
             throw e;
         }
     }
 
+    /**
+     * 按集合参数的声明类型选择替换参数的集合实现
+     * <p>
+     * 声明类型可以接收 {@link ArrayList}、{@link LinkedHashSet}、{@link TreeSet}（保留原集合的comparator）、
+     * {@link ArrayDeque} 之一时使用对应实现，保持原集合是否去重、是否有序；否则要求原集合的类型有无参构造方法
+     *
+     * @param type  集合参数的声明类型
+     * @param items 原集合参数
+     * @return 创建空集合的方法
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Collection<Object>> batchCollectionFactory(Class<?> type, Collection<?> items) {
+        if (items instanceof SortedSet && type.isAssignableFrom(TreeSet.class)) {
+            Comparator<Object> comparator = (Comparator<Object>) ((SortedSet<?>) items).comparator();
+            return () -> new TreeSet<>(comparator);
+        }
+        if (items instanceof Set && type.isAssignableFrom(LinkedHashSet.class)) {
+            return LinkedHashSet::new;
+        }
+        if (!(items instanceof Set) && type.isAssignableFrom(ArrayList.class)) {
+            return ArrayList::new;
+        }
+        if (items instanceof Deque && type.isAssignableFrom(ArrayDeque.class)) {
+            return ArrayDeque::new;
+        }
+        Class<?> itemsType = items.getClass();
+        if (type.isAssignableFrom(itemsType) && !Modifier.isAbstract(itemsType.getModifiers())) {
+            try {
+                Constructor<?> constructor = itemsType.getConstructor();
+                return () -> {
+                    try {
+                        return (Collection<Object>) constructor.newInstance();
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException("@Idempotent batch集合参数创建失败：" + itemsType.getName(), e);
+                    }
+                };
+            } catch (NoSuchMethodException ignored) {
+                // 没有无参构造方法，不支持
+            }
+        }
+        throw new IllegalArgumentException("@Idempotent batch不支持的集合参数类型：" + type.getName()
+                + "，实际类型：" + itemsType.getName());
+    }
+
+    /**
+     * 在redis中标记幂等key
+     *
+     * @param key          幂等key
+     * @param compactKey   紧凑幂等key，非紧凑存储模式为null
+     * @param ttl          幂等保留时长，单位s
+     * @param replayResult 是否回放结果，回放模式下value记录为执行中状态
+     * @param localFilter  是否开启了本地预过滤
+     * @return 标记结果，true：首次调用
+     */
+    private boolean tryMark(String key, CompactIdempotentKey compactKey, long ttl, boolean replayResult, boolean localFilter) {
+        boolean re;
+        if (Objects.nonNull(compactKey)) {
+            re = proxy.tryCompactIdempotent(compactKey);
+        } else if (replayResult) {
+            re = proxy.tryRedisIdempotent(key, ttl, IdempotentResultCodec.PROCESSING);
+        } else {
+            re = proxy.tryRedisIdempotent(key, ttl);
+        }
+        if (re && localFilter) {
+            localIdempotentFilter.mark(key, ttl);
+        }
+        return re;
+    }
+
+    /**
+     * 首次调用执行目标方法，回放模式下保存执行结果
+     * <p>
+     * 目标方法已执行成功时，保存结果失败只记录日志，不释放幂等key：标记保持执行中，重复请求等待超时后按普通幂等处理，
+     * 避免调用方重试导致目标方法再次执行
+     *
+     * @param joinPoint    切面的切入点信息
+     * @param key          幂等key
+     * @param ttl          幂等保留时长，单位s
+     * @param replayResult 是否回放结果
+     * @return 目标方法返回值
+     * @throws Throwable 目标方法异常
+     */
+    private Object proceed(ProceedingJoinPoint joinPoint, String key, long ttl, boolean replayResult) throws Throwable {
+        Object result = joinPoint.proceed();
+        if (replayResult) {
+            try {
+                proxy.updateIdempotentValue(key, IdempotentResultCodec.encode(result), ttl);
+            } catch (Exception e) {
+                log.error("IdempotentAspect save replay result ex, key={}", key, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 释放幂等锁
+     * <p>
+     * 重复请求抛出的异常不能释放幂等锁，否则会删除首次请求的标记
+     *
+     * @param key         幂等key
+     * @param compactKey  紧凑幂等key，非紧凑存储模式为null
+     * @param marked      本次调用是否成功标记了幂等key
+     * @param localFilter 是否开启了本地预过滤
+     */
+    private void release(String key, CompactIdempotentKey compactKey, boolean marked, boolean localFilter) {
+        if (!marked) {
+            return;
+        }
+        if (localFilter) {
+            localIdempotentFilter.remove(key);
+        }
+        if (Objects.nonNull(compactKey)) {
+            proxy.releaseCompactIdempotent(compactKey);
+        } else {
+            proxy.unlock(key);
+        }
+    }
+
     /**
      * 拼接Key
      *
@@ -129,7 +483,7 @@ public class IdempotentAspect {
         String[] keys = idempotent.keys();
         String[] keyValues = executeTemplate(keys, joinPoint);
         String key = String.join("_", keyValues);
-        return idempotent.domain() + "_" + key;
+        return KeyLayout.lockKey(idempotent.domain(), key);
     }
 
     /**
@@ -140,6 +494,16 @@ public class IdempotentAspect {
      * @return 表达式执行结果集
      */
     private String[] executeTemplate(String[] template, ProceedingJoinPoint joinPoint) {
+        return evaluate(template, createEvaluationContext(joinPoint));
+    }
+
+    /**
+     * 创建以方法参数为变量的SpEL计算上下文
+     *
+     * @param joinPoint 切面的切入点信息
+     * @return SpEL计算上下文
+     */
+    private StandardEvaluationContext createEvaluationContext(ProceedingJoinPoint joinPoint) {
         String methodLongName = joinPoint.getSignature().toLongString();
         // 获取切入点处的方法
         MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
@@ -154,8 +518,19 @@ public class IdempotentAspect {
                 context.setVariable(paramNames[i], args[i]);
             }
         }
-        String[] result = new String[len];
-        for (int i = 0; i < len; i++) {
+        return context;
+    }
+
+    /**
+     * 在指定上下文中执行表达式模板
+     *
+     * @param template 需要执行的表达式模板
+     * @param context  SpEL计算上下文
+     * @return 表达式执行结果集
+     */
+    private String[] evaluate(String[] template, StandardEvaluationContext context) {
+        String[] result = new String[template.length];
+        for (int i = 0; i < template.length; i++) {
             Expression expression = parser.parseExpression(template[i]);
             String value = expression.getValue(context, String.class);
             result[i] = value;
@@ -3,11 +3,21 @@ package moon.mlock.aspect;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import moon.mlock.annotation.Lock;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
 import moon.mlock.common.enums.LockTypeEnum;
 import moon.mlock.common.exception.GetLockException;
 import moon.mlock.common.exception.LockException;
+import moon.mlock.event.LockEventLogger;
 import moon.mlock.factory.LockFactory;
+import moon.mlock.flight.SingleFlightGroup;
 import moon.mlock.lock.ILock;
+import moon.mlock.metrics.LockMetrics;
+import moon.mlock.policy.LockPolicies;
+import moon.mlock.policy.LockPolicy;
 import moon.mlock.utils.AspectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -17,16 +27,24 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.convert.TypeDescriptor;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -40,6 +58,16 @@ import java.util.function.Function;
 @Slf4j
 public class LockAspect {
 
+    /**
+     * 单次加锁展开的最大key数量，多个集合的笛卡尔积超过该值时拒绝执行
+     */
+    public static final int MAX_LOCK_KEYS = 1000;
+
+    /**
+     * 字符串类型描述
+     */
+    private static final TypeDescriptor STRING_TYPE = TypeDescriptor.valueOf(String.class);
+
     /**
      * Spring EL表达式解析器
      */
@@ -70,6 +98,13 @@ public class LockAspect {
      */
     private final Map<String, String> lockMethodParamsCache = Maps.newConcurrentMap();
 
+    /**
+     * 单飞调用组
+     * <p>
+     * key:切面方法，value:该方法的单飞调用组，不同方法即使key相同也不会合并
+     */
+    private final Map<Method, SingleFlightGroup> singleFlightGroups = Maps.newConcurrentMap();
+
     /**
      * 分布式锁切入点
      */
@@ -87,7 +122,6 @@ public class LockAspect {
     @Around("mLockAspect()")
     public Object doAround(ProceedingJoinPoint joinPoint) throws Throwable {
         String lockKey = null;
-        ILock lock = null;
         try {
             // 切入点处的签名
             MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
@@ -96,16 +130,55 @@ public class LockAspect {
             Lock mLock = getLock(method);
             Assert.notNull(mLock, "获取@Lock注解失败！");
 
-            lockKey = getLocalKey(joinPoint, mLock);
+            List<String> lockKeys = getLocalKeys(joinPoint, mLock);
+            lockKey = lockKeys.size() == 1 ? lockKeys.get(0) : String.join(StringConst.COMMA, lockKeys);
+            if (mLock.singleFlight()) {
+                // 同一JVM内相同key的并发调用共享同一次加锁执行结果
+                String key = lockKey;
+                SingleFlightGroup group = singleFlightGroups.computeIfAbsent(method, m -> new SingleFlightGroup());
+                return group.execute(lockKey, () -> lockAndProceed(joinPoint, method, mLock, key, lockKeys));
+            }
+            return lockAndProceed(joinPoint, method, mLock, lockKey, lockKeys);
+        } catch (GetLockException e) {
+            log.error("LockAspect GetLockException, lockKey={}", lockKey, e);
+            throw e;
+        } catch (LockException e) {
+            log.error("LockAspect Business Exception, lockKey={}", lockKey, e);
+            throw e;
+        } catch (Exception e) {
+            log.error("LockAspect Exception, lockKey={}", lockKey, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 加锁并执行目标方法
+     *
+     * @param joinPoint 切面的切入点信息
+     * @param method    切面方法
+     * @param mLock     Lock注解信息
+     * @param lockKey   local key，多个key时为逗号拼接的key
+     * @param lockKeys  local key列表，已排序去重
+     * @return 目标方法返回值
+     * @throws Throwable 异常
+     */
+    private Object lockAndProceed(ProceedingJoinPoint joinPoint, Method method, Lock mLock, String lockKey,
+                                  List<String> lockKeys) throws Throwable {
+        ILock lock = null;
+        try {
             String domain = mLock.domain();
-            LockTypeEnum lockTypeEnum = mLock.lockType();
-            long waitTime = mLock.waitTime();
-            lock = LockFactory.getLock(lockTypeEnum, domain, lockKey);
+            // 运行时策略优先于注解
+            LockPolicy policy = LockPolicies.get(domain);
+            LockTypeEnum lockTypeEnum = policy.lockType(mLock.lockType());
+            long waitTime = policy.waitMillis(mLock.waitTime());
+            lock = lockKeys.size() == 1
+                    ? LockFactory.getLock(lockTypeEnum, domain, lockKey) : LockFactory.getLock(lockTypeEnum, domain, lockKeys);
 
             //加锁
             boolean lockResult = lock.tryLock(waitTime, TimeUnit.MILLISECONDS);
             String lockName = lock.getClass().getSimpleName();
-            log.info("domain={} lockKey={} lockName={} lockResult={} methodName={}", domain, lockKey, lockName, lockResult, method.getName());
+            LockEventLogger.publish(LockEventTypeEnum.LOCK_ASPECT, domain, lockKey, lockName, method.getName(), lockResult);
+            LockMetrics.recordAspect(AspectTypeEnum.LOCK, domain, lockResult ? LockOutcomeEnum.SUCCESS : LockOutcomeEnum.FAIL);
 
             if (lockResult) {
                 // 继续下一个目标方法调用
@@ -118,15 +191,6 @@ public class LockAspect {
             } else {
                 return null;
             }
-        } catch (GetLockException e) {
-            log.error("LockAspect GetLockException, lockKey={}", lockKey, e);
-            throw e;
-        } catch (LockException e) {
-            log.error("LockAspect Business Exception, lockKey={}", lockKey, e);
-            throw e;
-        } catch (Exception e) {
-            log.error("LockAspect Exception, lockKey={}", lockKey, e);
-            throw e;
         } finally {
             //释放锁
             if (Objects.nonNull(lock)) {
@@ -137,16 +201,60 @@ public class LockAspect {
 
     /**
      * 获取 local key
+     * <p>
+     * 表达式结果为集合或数组时展开为多个key，多个集合之间取笛卡尔积，如 keys = {"#shopId", "#skuIds"} 生成
+     * domain_shopId_sku1、domain_shopId_sku2...；结果排序去重，保证所有调用方按相同顺序加锁。
+     * 展开前先计算组合数量，任一集合为空或数量超过 {@link #MAX_LOCK_KEYS} 时抛出 {@link IllegalArgumentException}，不生成任何key
      *
      * @param joinPoint 切面的切入点信息
      * @param lock     mLock注解信息
-     * @return local key
+     * @return local key列表，已排序去重，不为空
      */
-    private String getLocalKey(ProceedingJoinPoint joinPoint, Lock lock) {
-        String[] keys = lock.keys();
-        String[] keyValues = executeTemplate(keys, joinPoint);
-        String key = String.join("_", keyValues);
-        return lock.domain() + "_" + key;
+    private List<String> getLocalKeys(ProceedingJoinPoint joinPoint, Lock lock) {
+        Object[] keyValues = executeTemplate(lock.keys(), joinPoint);
+        boolean multi = false;
+        for (Object keyValue : keyValues) {
+            if (keyValue instanceof List) {
+                multi = true;
+                break;
+            }
+        }
+        if (!multi) {
+            String[] parts = new String[keyValues.length];
+            for (int i = 0; i < keyValues.length; i++) {
+                parts[i] = (String) keyValues[i];
+            }
+            return Collections.singletonList(KeyLayout.lockKey(lock.domain(), String.join(StringConst.UNDERLINE, parts)));
+        }
+        long count = 1L;
+        for (Object keyValue : keyValues) {
+            if (keyValue instanceof List) {
+                count *= ((List<?>) keyValue).size();
+                if (count == 0L) {
+                    // 空集合使笛卡尔积为空，方法会在不加任何锁的情况下执行，其他key的锁也会丢失
+                    throw new IllegalArgumentException("Lock keys中的集合为空，domain=" + lock.domain());
+                }
+                if (count > MAX_LOCK_KEYS) {
+                    throw new IllegalArgumentException("Lock keys展开后的key数量超过" + MAX_LOCK_KEYS + "，domain=" + lock.domain());
+                }
+            }
+        }
+        List<String> combinations = Collections.singletonList(null);
+        for (Object keyValue : keyValues) {
+            List<?> parts = keyValue instanceof List ? (List<?>) keyValue : Collections.singletonList(keyValue);
+            List<String> next = new ArrayList<>(combinations.size() * parts.size());
+            for (String prefix : combinations) {
+                for (Object part : parts) {
+                    next.add(Objects.isNull(prefix) ? String.valueOf(part) : prefix + StringConst.UNDERLINE + part);
+                }
+            }
+            combinations = next;
+        }
+        TreeSet<String> lockKeys = new TreeSet<>();
+        for (String key : combinations) {
+            lockKeys.add(KeyLayout.lockKey(lock.domain(), key));
+        }
+        return new ArrayList<>(lockKeys);
     }
 
     /**
@@ -154,9 +262,9 @@ public class LockAspect {
      *
      * @param template  需要执行的表达式模板
      * @param joinPoint 切面的切入点信息
-     * @return 表达式执行结果集
+     * @return 表达式执行结果集，结果为集合或数组时对应元素为字符串列表，否则为字符串
      */
-    private String[] executeTemplate(String[] template, ProceedingJoinPoint joinPoint) {
+    private Object[] executeTemplate(String[] template, ProceedingJoinPoint joinPoint) {
         // 获取方法全量签名
         String methodLongName = joinPoint.getSignature().toLongString();
         // 获取切入点处的方法
@@ -177,15 +285,39 @@ public class LockAspect {
             }
         }
 
-        String[] result = new String[template.length];
+        Object[] result = new Object[template.length];
         for (int i = 0; i < template.length; i++) {
             Expression expression = parser.parseExpression(template[i]);
-            String value = expression.getValue(context, String.class);
-            result[i] = value;
+            Object value = expression.getValue(context);
+            if (value instanceof Collection || (Objects.nonNull(value) && value.getClass().isArray())) {
+                Collection<?> elements = value instanceof Collection
+                        ? (Collection<?>) value : Arrays.asList(ObjectUtils.toObjectArray(value));
+                List<String> values = new ArrayList<>(elements.size());
+                for (Object element : elements) {
+                    values.add(toKeyString(context, element));
+                }
+                result[i] = values;
+            } else {
+                result[i] = toKeyString(context, value);
+            }
         }
         return result;
     }
 
+    /**
+     * 表达式结果转换为字符串，与 {@code expression.getValue(context, String.class)} 的转换规则一致
+     *
+     * @param context SpEL计算上下文
+     * @param value   表达式结果
+     * @return 字符串
+     */
+    private static String toKeyString(StandardEvaluationContext context, Object value) {
+        if (Objects.isNull(value) || value instanceof String) {
+            return (String) value;
+        }
+        return (String) context.getTypeConverter().convertValue(value, TypeDescriptor.forObject(value), STRING_TYPE);
+    }
+
     /**
      * 获取Lock注解
      *
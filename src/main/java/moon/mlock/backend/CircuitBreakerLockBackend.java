@@ -0,0 +1,153 @@
+package moon.mlock.backend;
+
+import moon.mlock.breaker.LockCircuitBreaker;
+import moon.mlock.common.enums.CircuitStateEnum;
+import moon.mlock.common.exception.LockBackendUnavailableException;
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 带熔断的锁存储后端
+ * <p>
+ * 记录每次调用的耗时和异常，由 {@link LockCircuitBreaker} 判断是否熔断；熔断打开时所有调用直接抛出
+ * {@link LockBackendUnavailableException}，不再等待后端超时。半开时加锁、标记、读取等调用各占用一个探测名额，
+ * 名额用完后同样直接抛出异常；解锁、续约等释放已持有资源的调用不占用名额，半开时照常访问后端
+ *
+ * @author moon
+ */
+public class CircuitBreakerLockBackend implements LockBackend {
+
+    private final LockBackend delegate;
+
+    private final LockCircuitBreaker circuitBreaker;
+
+    public CircuitBreakerLockBackend(LockBackend delegate, LockCircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public LockCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        return call(() -> delegate.acquire(key, value, timeout, unit));
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        return cleanup(() -> delegate.release(key, value));
+    }
+
+    @Override
+    public boolean acquireAll(List<String> keys, String value, long timeout, TimeUnit unit) {
+        return call(() -> delegate.acquireAll(keys, value, timeout, unit));
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys, String value) {
+        cleanup(() -> {
+            delegate.releaseAll(keys, value);
+            return null;
+        });
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        cleanup(() -> {
+            delegate.releaseAll(keys);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        return cleanup(() -> delegate.renew(key, value, timeout, unit));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return call(() -> delegate.exists(key));
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        return call(() -> delegate.mark(key, value, timeout, unit));
+    }
+
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        return call(() -> delegate.markBatch(keys, value, timeout, unit));
+    }
+
+    @Override
+    public String get(String key) {
+        return call(() -> delegate.get(key));
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        return call(() -> delegate.update(key, value, timeout, unit));
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        return call(() -> delegate.markCompact(key));
+    }
+
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        return call(() -> delegate.markCompactBatch(keys));
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        cleanup(() -> {
+            delegate.releaseCompact(key);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        return call(() -> delegate.existsCompact(key));
+    }
+
+    /**
+     * 加锁、标记、读取等调用，半开时占用探测名额
+     */
+    private <T> T call(Supplier<T> operation) {
+        CircuitStateEnum permit = circuitBreaker.acquire();
+        if (permit == CircuitStateEnum.OPEN) {
+            throw new LockBackendUnavailableException("锁存储后端熔断中");
+        }
+        return record(operation, permit == CircuitStateEnum.HALF_OPEN);
+    }
+
+    /**
+     * 解锁、续约等释放已持有资源的调用，只在打开时拒绝，不占用探测名额，也不计入探测结果
+     */
+    private <T> T cleanup(Supplier<T> operation) {
+        if (circuitBreaker.isOpen()) {
+            throw new LockBackendUnavailableException("锁存储后端熔断中");
+        }
+        return record(operation, false);
+    }
+
+    private <T> T record(Supplier<T> operation, boolean probe) {
+        long startNanos = System.nanoTime();
+        try {
+            T result = operation.get();
+            circuitBreaker.record(System.nanoTime() - startNanos, false, probe);
+            return result;
+        } catch (RuntimeException e) {
+            circuitBreaker.record(System.nanoTime() - startNanos, true, probe);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package moon.mlock.backend;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.BaseEncoding;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内存锁存储后端
+ * <p>
+ * 单JVM内的锁和幂等标记，用于测试、基准测试和无redis的本地环境：
+ * <ul>
+ *     <li>数据保存在ConcurrentHashMap中，写入、比较删除、续约都是单个key上的CAS，不加全局锁</li>
+ *     <li>过期key由时间轮清理：每个tick处理一个槽位，槽位中未到期的key重新放回对应槽位，已被覆盖或删除的条目直接丢弃</li>
+ *     <li>读取时同样检查过期时间，时间轮只负责回收内存，不影响过期判断的精度</li>
+ * </ul>
+ * 注册为Spring bean时由容器在关闭时调用 {@link #close()} 停止时间轮线程
+ *
+ * @author moon
+ */
+@Slf4j
+public class InMemoryLockBackend implements LockBackend, AutoCloseable {
+
+    /**
+     * 时间轮tick间隔，单位ns
+     */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 时间轮槽位数量，必须是2的幂
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * 紧凑幂等key中桶key与摘要的分隔符
+     */
+    private static final String COMPACT_SEPARATOR = "#";
+
+    /**
+     * key:锁key或幂等key，value:值和过期时间
+     */
+    private final ConcurrentMap<String, Entry> store = Maps.newConcurrentMap();
+
+    /**
+     * 时间轮槽位，固定 {@link #WHEEL_SIZE} 个，创建后不再修改
+     */
+    private final List<Queue<Timeout>> wheel = new ArrayList<>(WHEEL_SIZE);
+
+    /**
+     * 时间轮起始时间点（System.nanoTime）
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 时间轮当前处理到的tick
+     */
+    private volatile long tick;
+
+    private volatile boolean closed;
+
+    private final Thread worker;
+
+    public InMemoryLockBackend() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ConcurrentLinkedQueue<>());
+        }
+        worker = new Thread(this::runWheel, "mlock-memory-backend-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        return putIfAbsent(key, value, timeout, unit);
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        Entry entry = getEntry(key);
+        return Objects.nonNull(entry) && Objects.equals(entry.value, value) && store.remove(key, entry);
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        for (String key : keys) {
+            store.remove(key);
+        }
+    }
+
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        Entry entry = getEntry(key);
+        if (Objects.isNull(entry) || !Objects.equals(entry.value, value)) {
+            return false;
+        }
+        Entry renewed = new Entry(value, expireAt(timeout, unit));
+        if (store.replace(key, entry, renewed)) {
+            schedule(key, renewed);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Objects.nonNull(getEntry(key));
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        return putIfAbsent(key, value, timeout, unit);
+    }
+
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        List<Boolean> marked = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            marked.add(putIfAbsent(key, value, timeout, unit));
+        }
+        return marked;
+    }
+
+    @Override
+    public String get(String key) {
+        Entry entry = getEntry(key);
+        return Objects.isNull(entry) ? null : entry.value;
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        Entry updated = new Entry(value, expireAt(timeout, unit));
+        while (true) {
+            Entry entry = getEntry(key);
+            if (Objects.isNull(entry)) {
+                return false;
+            }
+            if (store.replace(key, entry, updated)) {
+                schedule(key, updated);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        String field = BaseEncoding.base16().encode(key.getField());
+        if (exists(key.getPrevBucketKey() + COMPACT_SEPARATOR + field)) {
+            return false;
+        }
+        return putIfAbsent(key.getBucketKey() + COMPACT_SEPARATOR + field, field, key.getExpireSeconds(), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        List<Boolean> marked = new ArrayList<>(keys.size());
+        for (CompactIdempotentKey key : keys) {
+            marked.add(markCompact(key));
+        }
+        return marked;
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        String field = BaseEncoding.base16().encode(key.getField());
+        store.remove(key.getBucketKey() + COMPACT_SEPARATOR + field);
+        store.remove(key.getPrevBucketKey() + COMPACT_SEPARATOR + field);
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        String field = BaseEncoding.base16().encode(key.getField());
+        return exists(key.getBucketKey() + COMPACT_SEPARATOR + field) || exists(key.getPrevBucketKey() + COMPACT_SEPARATOR + field);
+    }
+
+    /**
+     * 当前key数量，包含已过期但尚未被时间轮清理的key
+     *
+     * @return key数量
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * 清空所有key
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * 停止时间轮线程
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    private boolean putIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        Entry entry = new Entry(value, expireAt(timeout, unit));
+        while (true) {
+            Entry old = store.putIfAbsent(key, entry);
+            if (Objects.isNull(old)) {
+                schedule(key, entry);
+                return true;
+            }
+            if (!old.isExpired(System.nanoTime())) {
+                return false;
+            }
+            if (store.replace(key, old, entry)) {
+                schedule(key, entry);
+                return true;
+            }
+        }
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = store.get(key);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            store.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private static long expireAt(long timeout, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * 把条目放入到期tick对应的槽位，到期时间向上取整到tick，已过期的条目放入下一个tick
+     *
+     * @param key   key
+     * @param entry 条目
+     */
+    private void schedule(String key, Entry entry) {
+        long deadlineTick = Math.max((entry.expireAtNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS, tick + 1);
+        wheel.get((int) (deadlineTick & WHEEL_MASK)).offer(new Timeout(key, entry));
+    }
+
+    /**
+     * 时间轮线程
+     */
+    private void runWheel() {
+        List<Timeout> expired = new ArrayList<>();
+        while (!closed) {
+            try {
+                long nextTick = tick + 1;
+                long sleepNanos = startNanos + nextTick * TICK_NANOS - System.nanoTime();
+                if (sleepNanos > 0) {
+                    LockSupport.parkNanos(sleepNanos);
+                    continue;
+                }
+                // 先推进tick，之后放入的条目不会落到正在处理的槽位
+                tick = nextTick;
+                Queue<Timeout> slot = wheel.get((int) (nextTick & WHEEL_MASK));
+                // 先取出再处理，未到期的条目会放回下一轮对应的槽位
+                for (Timeout timeout = slot.poll(); Objects.nonNull(timeout); timeout = slot.poll()) {
+                    expired.add(timeout);
+                }
+                long now = System.nanoTime();
+                for (Timeout timeout : expired) {
+                    if (store.get(timeout.key) != timeout.entry) {
+                        // 已被覆盖、续约或删除
+                        continue;
+                    }
+                    if (timeout.entry.isExpired(now)) {
+                        store.remove(timeout.key, timeout.entry);
+                    } else {
+                        schedule(timeout.key, timeout.entry);
+                    }
+                }
+                expired.clear();
+            } catch (Throwable e) {
+                expired.clear();
+                log.error("InMemoryLockBackend wheel ex:", e);
+            }
+        }
+    }
+
+    /**
+     * 值和过期时间
+     */
+    private static class Entry {
+        private final String value;
+
+        /**
+         * 过期时间点（System.nanoTime）
+         */
+        private final long expireAtNanos;
+
+        private Entry(String value, long expireAtNanos) {
+            this.value = value;
+            this.expireAtNanos = expireAtNanos;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            return nowNanos - expireAtNanos >= 0;
+        }
+    }
+
+    /**
+     * 时间轮中的到期任务
+     */
+    private static class Timeout {
+        private final String key;
+
+        private final Entry entry;
+
+        private Timeout(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package moon.mlock.backend;
+
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.KeyLayoutEnum;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * 锁key布局
+ * <p>
+ * redis cluster上的多key命令和lua脚本要求所有key在同一个slot，否则报CROSSSLOT错误。
+ * 按配置的 {@link KeyLayoutEnum} 在锁key中插入 {...} hash tag，控制key落在哪个slot：
+ * <ul>
+ *     <li>{@link #lockKey(String, String)}：切面拼接锁key、幂等key</li>
+ *     <li>{@link #derivedKey(String, String)}：锁的附属key，与锁key在同一个slot，可以和锁key在一个脚本中读写</li>
+ *     <li>{@link #groupBySlot(int, IntFunction)}：批量操作按slot分组，每组用一个脚本完成</li>
+ * </ul>
+ * 切换布局会改变锁key，切换期间新旧节点之间的锁互不可见，应在停机或无并发时切换
+ *
+ * @author moon
+ */
+public final class KeyLayout {
+
+    /**
+     * 附属key分隔符
+     */
+    private static final String DERIVED_SEPARATOR = ":";
+
+    private static volatile KeyLayoutEnum layout = KeyLayoutEnum.PLAIN;
+
+    private KeyLayout() {
+    }
+
+    /**
+     * 配置锁key布局
+     *
+     * @param layout 锁key布局，为空时不使用hash tag
+     */
+    public static void configure(KeyLayoutEnum layout) {
+        KeyLayout.layout = Objects.isNull(layout) ? KeyLayoutEnum.PLAIN : layout;
+    }
+
+    /**
+     * 当前锁key布局
+     *
+     * @return 锁key布局
+     */
+    public static KeyLayoutEnum getLayout() {
+        return layout;
+    }
+
+    /**
+     * 按当前布局拼接锁key
+     *
+     * @param domain 业务领域
+     * @param key    业务key
+     * @return 锁key
+     */
+    public static String lockKey(String domain, String key) {
+        switch (layout) {
+            case DOMAIN:
+                return "{" + domain + "}" + StringConst.UNDERLINE + key;
+            case KEY:
+                return "{" + domain + StringConst.UNDERLINE + key + "}";
+            default:
+                return domain + StringConst.UNDERLINE + key;
+        }
+    }
+
+    /**
+     * 锁的附属key，与锁key在同一个slot
+     * <p>
+     * 锁key含有hash tag时直接追加后缀，否则把整个锁key作为hash tag，两种情况与锁key的slot都相同
+     *
+     * @param lockKey 锁key
+     * @param suffix  后缀
+     * @return 附属key
+     */
+    public static String derivedKey(String lockKey, String suffix) {
+        if (lockKey.indexOf('{') >= 0 || lockKey.indexOf('}') >= 0) {
+            return lockKey + DERIVED_SEPARATOR + suffix;
+        }
+        return "{" + lockKey + "}" + DERIVED_SEPARATOR + suffix;
+    }
+
+    /**
+     * 取 {...} 中的内容，规则与redis cluster一致：第一个 { 之后第一个 } 之前的内容，内容为空时使用整个key
+     *
+     * @param key redis key
+     * @return 参与slot计算的部分
+     */
+    public static String hashTag(String key) {
+        int start = key.indexOf('{');
+        if (start < 0) {
+            return key;
+        }
+        int end = key.indexOf('}', start + 1);
+        if (end <= start + 1) {
+            return key;
+        }
+        return key.substring(start + 1, end);
+    }
+
+    /**
+     * 计算redis cluster slot
+     *
+     * @param key redis key
+     * @return slot
+     */
+    public static int slot(String key) {
+        return ClusterSlotHashUtil.calculateSlot(key);
+    }
+
+    /**
+     * 按slot分组
+     *
+     * @param size  元素数量
+     * @param keyOf 第i个元素的redis key
+     * @return key:slot，value:元素下标，保持原有顺序
+     */
+    public static Map<Integer, List<Integer>> groupBySlot(int size, IntFunction<String> keyOf) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            groups.computeIfAbsent(slot(keyOf.apply(i)), s -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,273 @@
+package moon.mlock.backend;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于Lettuce异步API的锁存储后端
+ * <p>
+ * 所有线程共享一个由后端自己创建的专用连接，不再从连接池借还连接：
+ * <ul>
+ *     <li>连接关闭自动flush，命令先写入Lettuce的发送缓冲区</li>
+ *     <li>写入命令的线程竞争flush权，抢到的线程把缓冲区中所有线程的命令一次写出，其余线程只等待结果；
+ *     flush期间新写入的命令由flush线程在结束后再写出一次，不会遗漏</li>
+ *     <li>批量操作的所有命令只触发一次flush，效果等同pipeline</li>
+ * </ul>
+ * 高并发时多个线程的加锁命令合并为少量网络写，消除连接池争用。
+ * 连接关闭了自动flush，不能与其他组件共用，因此由后端从 {@link RedisClient} 创建并持有，{@link #close()} 时关闭；
+ * RedisClient仍由调用方管理。与 {@link RedisLockBackend} 使用相同的UTF-8编码，两者可混用：
+ * <pre>
+ * RedisClient client = RedisClient.create("redis://localhost:6379");
+ * LockBackend backend = new LettuceLockBackend(client);
+ * </pre>
+ *
+ * @author moon
+ */
+public class LettuceLockBackend implements LockBackend, AutoCloseable {
+
+    private static final String OK = "OK";
+
+    private final StatefulRedisConnection<byte[], byte[]> connection;
+
+    private final RedisAsyncCommands<byte[], byte[]> async;
+
+    /**
+     * 等待命令结果的超时时间，单位ns
+     */
+    private final long timeoutNanos;
+
+    /**
+     * 是否有未flush的命令
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * 是否有线程正在flush
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    /**
+     * 从RedisClient创建后端专用的连接
+     *
+     * @param client redis客户端，由调用方关闭
+     */
+    public LettuceLockBackend(RedisClient client) {
+        StatefulRedisConnection<byte[], byte[]> connection = client.connect(ByteArrayCodec.INSTANCE);
+        this.connection = connection;
+        this.async = connection.async();
+        this.timeoutNanos = connection.getTimeout().toNanos();
+        connection.setAutoFlushCommands(false);
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        RedisFuture<String> future = async.set(bytes(key), bytes(value), SetArgs.Builder.nx().px(unit.toMillis(timeout)));
+        flush();
+        return OK.equals(await(future));
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        return evalInteger(LockScripts.RELEASE_SHA, LockScripts.RELEASE, bytes(key), bytes(value)) == 1L;
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        byte[][] rawKeys = new byte[keys.size()][];
+        int i = 0;
+        for (String key : keys) {
+            rawKeys[i++] = bytes(key);
+        }
+        RedisFuture<Long> future = async.del(rawKeys);
+        flush();
+        await(future);
+    }
+
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        return evalInteger(LockScripts.RENEW_SHA, LockScripts.RENEW, bytes(key), bytes(value),
+                bytes(String.valueOf(unit.toMillis(timeout)))) == 1L;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        RedisFuture<Long> future = async.exists(bytes(key));
+        flush();
+        return Objects.equals(await(future), 1L);
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        return acquire(key, value, timeout, unit);
+    }
+
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        byte[] rawValue = bytes(value);
+        SetArgs args = SetArgs.Builder.nx().px(unit.toMillis(timeout));
+        List<RedisFuture<String>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(async.set(bytes(key), rawValue, args));
+        }
+        flush();
+        List<Boolean> marked = new ArrayList<>(keys.size());
+        for (RedisFuture<String> future : futures) {
+            marked.add(OK.equals(await(future)));
+        }
+        return marked;
+    }
+
+    @Override
+    public String get(String key) {
+        RedisFuture<byte[]> future = async.get(bytes(key));
+        flush();
+        byte[] value = await(future);
+        return Objects.isNull(value) ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        RedisFuture<String> future = async.set(bytes(key), bytes(value), SetArgs.Builder.xx().px(unit.toMillis(timeout)));
+        flush();
+        return OK.equals(await(future));
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        return evalInteger(LockScripts.COMPACT_IDEMPOTENT_SHA, LockScripts.COMPACT_IDEMPOTENT, compactKeys(key),
+                compactArgs(key)) == 1L;
+    }
+
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        List<RedisFuture<Long>> futures = new ArrayList<>(keys.size());
+        for (CompactIdempotentKey key : keys) {
+            futures.add(async.evalsha(LockScripts.COMPACT_IDEMPOTENT_SHA, ScriptOutputType.INTEGER, compactKeys(key), compactArgs(key)));
+        }
+        flush();
+        List<Boolean> marked = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Long result;
+            try {
+                result = await(futures.get(i));
+            } catch (RedisNoScriptException e) {
+                // 脚本未缓存（如redis重启），EVAL执行的同时会缓存脚本
+                CompactIdempotentKey key = keys.get(i);
+                result = evalInteger(LockScripts.COMPACT_IDEMPOTENT_SHA, LockScripts.COMPACT_IDEMPOTENT, compactKeys(key), compactArgs(key));
+            }
+            marked.add(Objects.equals(result, 1L));
+        }
+        return marked;
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        RedisFuture<Long> future = async.hdel(bytes(key.getBucketKey()), key.getField());
+        RedisFuture<Long> prevFuture = async.hdel(bytes(key.getPrevBucketKey()), key.getField());
+        flush();
+        await(future);
+        await(prevFuture);
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        RedisFuture<Boolean> future = async.hexists(bytes(key.getBucketKey()), key.getField());
+        RedisFuture<Boolean> prevFuture = async.hexists(bytes(key.getPrevBucketKey()), key.getField());
+        flush();
+        return Boolean.TRUE.equals(await(future)) || Boolean.TRUE.equals(await(prevFuture));
+    }
+
+    /**
+     * 关闭后端创建的连接
+     */
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    /**
+     * 写出发送缓冲区中的命令
+     * <p>
+     * 先标记有未写出的命令，再竞争flush权；flush前清除标记，flush期间其他线程写入的命令会重新设置标记，
+     * 由当前线程在下一轮循环中写出，或由释放flush权之后到来的线程写出
+     */
+    private void flush() {
+        dirty.set(true);
+        while (dirty.get() && flushing.compareAndSet(false, true)) {
+            try {
+                dirty.set(false);
+                connection.flushCommands();
+            } finally {
+                flushing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 执行返回整数的lua脚本，优先使用EVALSHA，脚本未缓存时使用EVAL
+     *
+     * @param sha    脚本sha1
+     * @param script 脚本
+     * @param key    KEYS[1]
+     * @param args   ARGV
+     * @return 脚本返回值
+     */
+    private long evalInteger(String sha, String script, byte[] key, byte[]... args) {
+        return evalInteger(sha, script, new byte[][]{key}, args);
+    }
+
+    private long evalInteger(String sha, String script, byte[][] keys, byte[]... args) {
+        RedisFuture<Long> future = async.evalsha(sha, ScriptOutputType.INTEGER, keys, args);
+        flush();
+        Long result;
+        try {
+            result = await(future);
+        } catch (RedisNoScriptException e) {
+            future = async.eval(script, ScriptOutputType.INTEGER, keys, args);
+            flush();
+            result = await(future);
+        }
+        return Objects.isNull(result) ? 0L : result;
+    }
+
+    /**
+     * 等待命令结果，超时取消命令，NOSCRIPT错误抛出 {@link RedisNoScriptException}
+     *
+     * @param future 命令结果
+     * @return 命令结果
+     */
+    private <T> T await(RedisFuture<T> future) {
+        return LettuceFutures.awaitOrCancel(future, timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static byte[][] compactKeys(CompactIdempotentKey key) {
+        return new byte[][]{bytes(key.getBucketKey()), bytes(key.getPrevBucketKey())};
+    }
+
+    private static byte[][] compactArgs(CompactIdempotentKey key) {
+        return new byte[][]{key.getField(), bytes(String.valueOf(key.getExpireSeconds()))};
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
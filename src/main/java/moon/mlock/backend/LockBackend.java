@@ -0,0 +1,180 @@
+package moon.mlock.backend;
+
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁存储后端
+ * <p>
+ * 锁和幂等标记最终落到的k-v存储，{@link moon.mlock.proxy.RedisLockProxy} 只依赖该接口，
+ * 默认实现为 {@link RedisLockBackend}，不依赖redis的测试和基准测试可使用 {@link InMemoryLockBackend}。
+ * 容器中注册了LockBackend bean时优先使用该bean
+ *
+ * @author moon
+ */
+public interface LockBackend {
+
+    /**
+     * 加锁，key不存在时写入value并设置过期时间
+     *
+     * @param key     锁key
+     * @param value   锁value，用于校验持有者
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return true：加锁成功
+     */
+    boolean acquire(String key, String value, long timeout, TimeUnit unit);
+
+    /**
+     * 解锁，只有value一致时才删除
+     *
+     * @param key   锁key
+     * @param value 锁value
+     * @return true：删除成功
+     */
+    boolean release(String key, String value);
+
+    /**
+     * 批量加锁，全部加锁成功或全部不加锁
+     * <p>
+     * 默认实现按keys的顺序逐个加锁，某个key加锁失败时释放已加的锁；调用方应传入排序去重后的keys，
+     * 保证所有节点以相同顺序加锁，不会互相等待形成死锁。支持脚本的后端可覆盖为一次原子操作
+     *
+     * @param keys    锁key列表，已排序去重
+     * @param value   锁value，所有key使用同一个value
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return true：全部加锁成功
+     */
+    default boolean acquireAll(List<String> keys, String value, long timeout, TimeUnit unit) {
+        for (int i = 0; i < keys.size(); i++) {
+            boolean acquired;
+            try {
+                acquired = acquire(keys.get(i), value, timeout, unit);
+            } catch (RuntimeException e) {
+                releaseAll(keys.subList(0, i), value);
+                throw e;
+            }
+            if (!acquired) {
+                releaseAll(keys.subList(0, i), value);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 批量解锁，只删除value一致的key
+     *
+     * @param keys  锁key集合
+     * @param value 锁value
+     */
+    default void releaseAll(Collection<String> keys, String value) {
+        for (String key : keys) {
+            release(key, value);
+        }
+    }
+
+    /**
+     * 不校验value直接删除
+     *
+     * @param keys 锁key集合
+     */
+    void releaseAll(Collection<String> keys);
+
+    /**
+     * 续约，只有value一致时才刷新过期时间
+     *
+     * @param key     锁key
+     * @param value   锁value
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return true：续约成功
+     */
+    boolean renew(String key, String value, long timeout, TimeUnit unit);
+
+    /**
+     * key是否存在
+     *
+     * @param key 锁key
+     * @return true：存在
+     */
+    boolean exists(String key);
+
+    /**
+     * 标记幂等key，key不存在时写入value并设置过期时间
+     *
+     * @param key     幂等key
+     * @param value   value
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return true：首次标记
+     */
+    boolean mark(String key, String value, long timeout, TimeUnit unit);
+
+    /**
+     * 批量标记幂等key，批次内重复的key只有第一个会标记成功
+     *
+     * @param keys    幂等key列表
+     * @param value   value
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return 与keys一一对应的标记结果，true：首次标记
+     */
+    List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit);
+
+    /**
+     * 获取value
+     *
+     * @param key key
+     * @return value，key不存在时返回null
+     */
+    String get(String key);
+
+    /**
+     * 更新value，key不存在时不更新
+     *
+     * @param key     key
+     * @param value   value
+     * @param timeout 过期时间
+     * @param unit    过期时间单位
+     * @return true：更新成功
+     */
+    boolean update(String key, String value, long timeout, TimeUnit unit);
+
+    /**
+     * 紧凑存储模式下标记幂等key
+     *
+     * @param key 紧凑幂等key
+     * @return true：首次标记
+     */
+    boolean markCompact(CompactIdempotentKey key);
+
+    /**
+     * 紧凑存储模式下批量标记幂等key
+     *
+     * @param keys 紧凑幂等key列表
+     * @return 与keys一一对应的标记结果，true：首次标记
+     */
+    List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys);
+
+    /**
+     * 紧凑存储模式下释放幂等key
+     * <p>
+     * 当前桶和上一个桶都要删除：标记之后跨过桶边界才释放时，摘要位于上一个桶
+     *
+     * @param key 紧凑幂等key
+     */
+    void releaseCompact(CompactIdempotentKey key);
+
+    /**
+     * 紧凑存储模式下幂等key是否已标记，当前桶或上一个桶中存在即为已标记，只读不写
+     *
+     * @param key 紧凑幂等key
+     * @return true：已标记
+     */
+    boolean existsCompact(CompactIdempotentKey key);
+}
@@ -0,0 +1,139 @@
+package moon.mlock.backend;
+
+import com.google.common.io.BaseEncoding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 锁存储后端使用的lua脚本
+ *
+ * @author moon
+ */
+final class LockScripts {
+
+    /**
+     * 紧凑幂等脚本：上一个桶已存在或当前桶HSETNX失败，说明是重复请求；标记成功时刷新当前桶过期时间
+     * <p>
+     * KEYS[1]当前桶，KEYS[2]上一个桶，ARGV[1]摘要，ARGV[2]当前桶过期时间
+     */
+    static final String COMPACT_IDEMPOTENT =
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 1 then return 0 end "
+                    + "if redis.call('HSETNX', KEYS[1], ARGV[1], '1') == 0 then return 0 end "
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2]) "
+                    + "return 1";
+
+    static final byte[] COMPACT_IDEMPOTENT_BYTES = COMPACT_IDEMPOTENT.getBytes(StandardCharsets.UTF_8);
+
+    static final String COMPACT_IDEMPOTENT_SHA = sha1(COMPACT_IDEMPOTENT_BYTES);
+
+    /**
+     * 批量紧凑幂等脚本，同一个slot的多个紧凑幂等key一次执行，返回每个key的标记结果
+     * <p>
+     * KEYS[2i-1]当前桶，KEYS[2i]上一个桶，ARGV[2i-1]摘要，ARGV[2i]当前桶过期时间
+     */
+    static final String COMPACT_IDEMPOTENT_BATCH =
+            "local r = {} "
+                    + "for i = 1, #KEYS / 2 do "
+                    + "if redis.call('HEXISTS', KEYS[2 * i], ARGV[2 * i - 1]) == 1 "
+                    + "or redis.call('HSETNX', KEYS[2 * i - 1], ARGV[2 * i - 1], '1') == 0 then r[i] = 0 "
+                    + "else redis.call('EXPIRE', KEYS[2 * i - 1], ARGV[2 * i]) r[i] = 1 end "
+                    + "end "
+                    + "return r";
+
+    static final byte[] COMPACT_IDEMPOTENT_BATCH_BYTES = COMPACT_IDEMPOTENT_BATCH.getBytes(StandardCharsets.UTF_8);
+
+    static final String COMPACT_IDEMPOTENT_BATCH_SHA = sha1(COMPACT_IDEMPOTENT_BATCH_BYTES);
+
+    /**
+     * 批量标记，同一个slot的多个key一次执行 SET NX PX，返回每个key的标记结果
+     * <p>
+     * KEYS 幂等key，ARGV[1]value，ARGV[2]过期时间，单位ms
+     */
+    static final String MARK_BATCH =
+            "local r = {} "
+                    + "for i = 1, #KEYS do "
+                    + "if redis.call('SET', KEYS[i], ARGV[1], 'NX', 'PX', ARGV[2]) then r[i] = 1 else r[i] = 0 end "
+                    + "end "
+                    + "return r";
+
+    static final byte[] MARK_BATCH_BYTES = MARK_BATCH.getBytes(StandardCharsets.UTF_8);
+
+    static final String MARK_BATCH_SHA = sha1(MARK_BATCH_BYTES);
+
+    /**
+     * 批量加锁：所有key都不存在时才全部写入，否则不写入任何key
+     * <p>
+     * KEYS 锁key，ARGV[1]锁value，ARGV[2]过期时间，单位ms
+     */
+    static final String ACQUIRE_ALL =
+            "for i = 1, #KEYS do "
+                    + "if redis.call('EXISTS', KEYS[i]) == 1 then return 0 end "
+                    + "end "
+                    + "for i = 1, #KEYS do "
+                    + "redis.call('SET', KEYS[i], ARGV[1], 'PX', ARGV[2]) "
+                    + "end "
+                    + "return 1";
+
+    static final byte[] ACQUIRE_ALL_BYTES = ACQUIRE_ALL.getBytes(StandardCharsets.UTF_8);
+
+    static final String ACQUIRE_ALL_SHA = sha1(ACQUIRE_ALL_BYTES);
+
+    /**
+     * 批量比较并删除：value一致的key才删除
+     * <p>
+     * KEYS 锁key，ARGV[1]锁value
+     */
+    static final String RELEASE_ALL =
+            "local n = 0 "
+                    + "for i = 1, #KEYS do "
+                    + "if redis.call('GET', KEYS[i]) == ARGV[1] then n = n + redis.call('DEL', KEYS[i]) end "
+                    + "end "
+                    + "return n";
+
+    static final byte[] RELEASE_ALL_BYTES = RELEASE_ALL.getBytes(StandardCharsets.UTF_8);
+
+    static final String RELEASE_ALL_SHA = sha1(RELEASE_ALL_BYTES);
+
+    /**
+     * 比较并删除：value一致时删除key
+     * <p>
+     * KEYS[1]锁key，ARGV[1]锁value
+     */
+    static final String RELEASE =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+                    + "return 0";
+
+    static final byte[] RELEASE_BYTES = RELEASE.getBytes(StandardCharsets.UTF_8);
+
+    static final String RELEASE_SHA = sha1(RELEASE_BYTES);
+
+    /**
+     * 比较并续约：value一致时刷新过期时间
+     * <p>
+     * KEYS[1]锁key，ARGV[1]锁value，ARGV[2]过期时间，单位ms
+     */
+    static final String RENEW =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+                    + "return 0";
+
+    static final byte[] RENEW_BYTES = RENEW.getBytes(StandardCharsets.UTF_8);
+
+    static final String RENEW_SHA = sha1(RENEW_BYTES);
+
+    private LockScripts() {
+    }
+
+    /**
+     * 计算脚本的sha1，与EVALSHA使用的小写十六进制一致
+     */
+    private static String sha1(byte[] script) {
+        try {
+            return BaseEncoding.base16().lowerCase().encode(MessageDigest.getInstance("SHA-1").digest(script));
+        } catch (NoSuchAlgorithmException e) {
+            // 所有JDK实现都必须支持SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package moon.mlock.backend;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.idempotent.CompactIdempotentKey;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 基于StringRedisTemplate的锁存储后端
+ * <p>
+ * 批量操作在单机redis上不分组，所有key一个lua脚本一次网络往返；redis cluster上按 {@link KeyLayout#slot(String)} 分组，
+ * 每个slot一个lua脚本一次网络往返，不会出现CROSSSLOT错误。配合 {@link KeyLayout} 的hash tag布局，
+ * 同一domain或同一个锁的多个key在一个脚本中完成
+ *
+ * @author moon
+ */
+@Slf4j
+public class RedisLockBackend implements LockBackend {
+
+    /**
+     * redisTemplate实例
+     */
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 是否是redis cluster，首次批量操作时判断
+     */
+    private volatile Boolean cluster;
+
+    public RedisLockBackend(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 测试redis连接
+     */
+    public void testConnection() {
+        String key = "ILock-connect-test-" + System.currentTimeMillis();
+        redisTemplate.opsForValue().set(key, key);
+        String val = redisTemplate.opsForValue().get(key);
+        log.info("ILock connect test: set={}, get={}", key, val);
+        redisTemplate.delete(key);
+        log.info("Successfully initialized ILock redis connection");
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+    }
+
+    /**
+     * {@link LockScripts#RELEASE} 脚本比较并删除，避免GET之后锁过期被他人获取时误删他人的锁
+     */
+    @Override
+    public boolean release(String key, String value) {
+        return Objects.equals(evalInteger(LockScripts.RELEASE_SHA, LockScripts.RELEASE_BYTES, 1, keysAndArgs(
+                Collections.singletonList(key), bytes(value))), 1L);
+    }
+
+    /**
+     * 单机redis或所有key在同一个slot时一次 {@link LockScripts#ACQUIRE_ALL} 脚本原子加锁，否则按顺序逐个加锁
+     */
+    @Override
+    public boolean acquireAll(List<String> keys, String value, long timeout, TimeUnit unit) {
+        if (keys.isEmpty()) {
+            return true;
+        }
+        if (keys.size() == 1) {
+            return acquire(keys.get(0), value, timeout, unit);
+        }
+        if (!isSingleSlot(keys)) {
+            return LockBackend.super.acquireAll(keys, value, timeout, unit);
+        }
+        byte[][] keysAndArgs = keysAndArgs(keys, bytes(value), bytes(String.valueOf(unit.toMillis(timeout))));
+        return Objects.equals(evalInteger(LockScripts.ACQUIRE_ALL_SHA, LockScripts.ACQUIRE_ALL_BYTES, keys.size(), keysAndArgs), 1L);
+    }
+
+    /**
+     * 单机redis或所有key在同一个slot时一次 {@link LockScripts#RELEASE_ALL} 脚本删除，否则逐个比较并删除
+     */
+    @Override
+    public void releaseAll(Collection<String> keys, String value) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<String> keyList = new ArrayList<>(keys);
+        if (keyList.size() == 1 || !isSingleSlot(keyList)) {
+            LockBackend.super.releaseAll(keyList, value);
+            return;
+        }
+        evalInteger(LockScripts.RELEASE_ALL_SHA, LockScripts.RELEASE_ALL_BYTES, keyList.size(), keysAndArgs(keyList, bytes(value)));
+    }
+
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keys.size() == 1) {
+            redisTemplate.delete(keys.iterator().next());
+            return;
+        }
+        if (!isCluster()) {
+            redisTemplate.delete(keys);
+            return;
+        }
+        // cluster上的多key DEL要求所有key在同一个slot
+        List<String> keyList = new ArrayList<>(keys);
+        for (List<Integer> group : KeyLayout.groupBySlot(keyList.size(), keyList::get).values()) {
+            List<String> slotKeys = new ArrayList<>(group.size());
+            for (Integer index : group) {
+                slotKeys.add(keyList.get(index));
+            }
+            redisTemplate.delete(slotKeys);
+        }
+    }
+
+    /**
+     * {@link LockScripts#RENEW} 脚本比较并续约，value不是当前持有者设置的则不续约
+     */
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        return Objects.equals(evalInteger(LockScripts.RENEW_SHA, LockScripts.RENEW_BYTES, 1, keysAndArgs(
+                Collections.singletonList(key), bytes(value), bytes(String.valueOf(unit.toMillis(timeout))))), 1L);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+    }
+
+    /**
+     * 单机redis一个 {@link LockScripts#MARK_BATCH} 脚本，cluster上按slot分组，每组一个脚本
+     */
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        byte[] rawValue = bytes(value);
+        byte[] rawMillis = bytes(String.valueOf(unit.toMillis(timeout)));
+        return evalBatch(LockScripts.MARK_BATCH_SHA, LockScripts.MARK_BATCH_BYTES, keys.size(), keys::get, group -> {
+            byte[][] keysAndArgs = new byte[group.size() + 2][];
+            for (int i = 0; i < group.size(); i++) {
+                keysAndArgs[i] = bytes(keys.get(group.get(i)));
+            }
+            keysAndArgs[group.size()] = rawValue;
+            keysAndArgs[group.size() + 1] = rawMillis;
+            return keysAndArgs;
+        }, 1);
+    }
+
+    @Override
+    public String get(String key) {
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfPresent(key, value, timeout, unit));
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        byte[][] keysAndArgs = compactKeysAndArgs(key);
+        Long result = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            try {
+                return connection.evalSha(LockScripts.COMPACT_IDEMPOTENT_SHA, ReturnType.INTEGER, 2, keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!isNoScriptError(e)) {
+                    throw e;
+                }
+                // 脚本未缓存（如redis重启），EVAL执行的同时会缓存脚本
+                return connection.eval(LockScripts.COMPACT_IDEMPOTENT_BYTES, ReturnType.INTEGER, 2, keysAndArgs);
+            }
+        });
+        return Objects.equals(result, 1L);
+    }
+
+    /**
+     * 单机redis一个 {@link LockScripts#COMPACT_IDEMPOTENT_BATCH} 脚本，cluster上按当前桶的slot分组，每组一个脚本
+     */
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return evalBatch(LockScripts.COMPACT_IDEMPOTENT_BATCH_SHA, LockScripts.COMPACT_IDEMPOTENT_BATCH_BYTES, keys.size(),
+                i -> keys.get(i).getBucketKey(), group -> {
+                    byte[][] keysAndArgs = new byte[group.size() * 4][];
+                    int args = group.size() * 2;
+                    for (int i = 0; i < group.size(); i++) {
+                        byte[][] single = compactKeysAndArgs(keys.get(group.get(i)));
+                        keysAndArgs[2 * i] = single[0];
+                        keysAndArgs[2 * i + 1] = single[1];
+                        keysAndArgs[args + 2 * i] = single[2];
+                        keysAndArgs[args + 2 * i + 1] = single[3];
+                    }
+                    return keysAndArgs;
+                }, 2);
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        byte[] bucketKey = bytes(key.getBucketKey());
+        byte[] prevBucketKey = bytes(key.getPrevBucketKey());
+        redisTemplate.execute((RedisCallback<Long>) connection -> {
+            connection.hDel(bucketKey, key.getField());
+            return connection.hDel(prevBucketKey, key.getField());
+        });
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        byte[] bucketKey = bytes(key.getBucketKey());
+        byte[] prevBucketKey = bytes(key.getPrevBucketKey());
+        return Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                Boolean.TRUE.equals(connection.hExists(bucketKey, key.getField()))
+                        || Boolean.TRUE.equals(connection.hExists(prevBucketKey, key.getField()))));
+    }
+
+    /**
+     * 执行批量脚本，cluster上按slot分组，单机redis所有元素一组，脚本返回组内每个元素的结果，1表示成功
+     *
+     * @param sha         脚本sha1
+     * @param script      脚本
+     * @param size        元素数量
+     * @param keyOf       第i个元素用于计算slot的key
+     * @param keysAndArgs 组内元素下标到脚本keys和args的转换，keys在前
+     * @param keysPerItem 每个元素的key数量
+     * @return 与元素一一对应的结果
+     */
+    private List<Boolean> evalBatch(String sha, byte[] script, int size, IntFunction<String> keyOf,
+                                    Function<List<Integer>, byte[][]> keysAndArgs, int keysPerItem) {
+        boolean cluster = isCluster();
+        List<List<Integer>> groups;
+        if (cluster) {
+            groups = new ArrayList<>(KeyLayout.groupBySlot(size, keyOf).values());
+        } else {
+            // 单机redis没有slot限制，所有元素一个脚本
+            List<Integer> all = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                all.add(i);
+            }
+            groups = Collections.singletonList(all);
+        }
+        List<byte[][]> keysAndArgsList = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups) {
+            keysAndArgsList.add(keysAndArgs.apply(group));
+        }
+        List<Object> results;
+        if (cluster) {
+            // cluster不支持pipeline，每个slot一次网络往返
+            results = new ArrayList<>(groups.size());
+            for (int i = 0; i < groups.size(); i++) {
+                int numKeys = groups.get(i).size() * keysPerItem;
+                byte[][] groupKeysAndArgs = keysAndArgsList.get(i);
+                results.add(redisTemplate.execute((RedisCallback<List<Object>>) connection ->
+                        evalMulti(connection, sha, script, numKeys, groupKeysAndArgs)));
+            }
+        } else {
+            RedisCallback<Object> callback = connection -> {
+                for (int i = 0; i < groups.size(); i++) {
+                    connection.evalSha(sha, ReturnType.MULTI, groups.get(i).size() * keysPerItem, keysAndArgsList.get(i));
+                }
+                return null;
+            };
+            try {
+                results = redisTemplate.executePipelined(callback);
+            } catch (DataAccessException e) {
+                if (!isNoScriptError(e)) {
+                    throw e;
+                }
+                // pipeline中无法回退到EVAL，先加载脚本再重试一次
+                redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptLoad(script));
+                results = redisTemplate.executePipelined(callback);
+            }
+        }
+        Boolean[] marked = new Boolean[size];
+        for (int i = 0; i < groups.size(); i++) {
+            List<Integer> group = groups.get(i);
+            List<?> groupResults = (List<?>) results.get(i);
+            for (int j = 0; j < group.size(); j++) {
+                marked[group.get(j)] = Objects.equals(groupResults.get(j), 1L);
+            }
+        }
+        return Arrays.asList(marked);
+    }
+
+    /**
+     * 执行返回列表的lua脚本，优先使用EVALSHA，脚本未缓存时使用EVAL
+     */
+    private static List<Object> evalMulti(RedisConnection connection, String sha, byte[] script, int numKeys, byte[][] keysAndArgs) {
+        try {
+            return connection.evalSha(sha, ReturnType.MULTI, numKeys, keysAndArgs);
+        } catch (DataAccessException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            return connection.eval(script, ReturnType.MULTI, numKeys, keysAndArgs);
+        }
+    }
+
+    /**
+     * 执行返回整数的lua脚本，优先使用EVALSHA，脚本未缓存时使用EVAL
+     */
+    private Long evalInteger(String sha, byte[] script, int numKeys, byte[][] keysAndArgs) {
+        return redisTemplate.execute((RedisCallback<Long>) connection -> {
+            try {
+                return connection.evalSha(sha, ReturnType.INTEGER, numKeys, keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!isNoScriptError(e)) {
+                    throw e;
+                }
+                return connection.eval(script, ReturnType.INTEGER, numKeys, keysAndArgs);
+            }
+        });
+    }
+
+    /**
+     * 多key脚本能否一次执行：单机redis，或cluster上所有key在同一个slot
+     *
+     * @param keys 锁key列表
+     * @return true：可以一次执行
+     */
+    private boolean isSingleSlot(List<String> keys) {
+        if (!isCluster()) {
+            return true;
+        }
+        int slot = KeyLayout.slot(keys.get(0));
+        for (int i = 1; i < keys.size(); i++) {
+            if (KeyLayout.slot(keys.get(i)) != slot) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 拼装脚本参数，keys在前
+     */
+    private static byte[][] keysAndArgs(List<String> keys, byte[]... args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = bytes(keys.get(i));
+        }
+        System.arraycopy(args, 0, keysAndArgs, keys.size(), args.length);
+        return keysAndArgs;
+    }
+
+    /**
+     * 是否是redis cluster
+     *
+     * @return true：redis cluster
+     */
+    private boolean isCluster() {
+        Boolean result = cluster;
+        if (Objects.isNull(result)) {
+            // StringRedisTemplate回调中的连接是包装后的StringRedisConnection，需要直接从连接工厂判断
+            try (RedisConnection connection = redisTemplate.getRequiredConnectionFactory().getConnection()) {
+                result = connection instanceof RedisClusterConnection;
+            }
+            cluster = result;
+        }
+        return result;
+    }
+
+    /**
+     * 紧凑幂等脚本的参数：KEYS[1]当前桶，KEYS[2]上一个桶，ARGV[1]摘要，ARGV[2]当前桶过期时间
+     *
+     * @param key 紧凑幂等key
+     * @return 脚本的keys和args
+     */
+    private static byte[][] compactKeysAndArgs(CompactIdempotentKey key) {
+        return new byte[][]{
+                key.getBucketKey().getBytes(StandardCharsets.UTF_8),
+                key.getPrevBucketKey().getBytes(StandardCharsets.UTF_8),
+                key.getField(),
+                String.valueOf(key.getExpireSeconds()).getBytes(StandardCharsets.UTF_8)
+        };
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 是否是脚本未缓存异常
+     *
+     * @param e 异常
+     * @return true：NOSCRIPT异常
+     */
+    private static boolean isNoScriptError(Throwable e) {
+        for (Throwable t = e; Objects.nonNull(t); t = t.getCause()) {
+            if (StringUtils.contains(t.getMessage(), "NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,487 @@
+package moon.mlock.backend;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.idempotent.CompactIdempotentKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * 一致性哈希分片的锁存储后端
+ * <p>
+ * 把锁key分散到多个后端（通常是多个redis集群），锁的吞吐随redis节点数水平扩展：
+ * <ul>
+ *     <li>每个分片在哈希环上有若干虚拟节点，key按路由key的哈希顺时针找到第一个虚拟节点对应的分片</li>
+ *     <li>路由key默认是锁key本身；key中含有 {...} 时使用花括号内的内容，保证紧凑幂等的前后两个桶落在同一个分片；
+ *     也可以按domain路由，同一domain的锁都在一个分片上</li>
+ *     <li>批量操作按分片分组，多个分片并行执行，单个分片时直接在调用线程执行</li>
+ * </ul>
+ * 调用 {@link #reshard(Map, long)} 增减分片时平滑迁移：迁移窗口内同时保留旧环，对归属发生变化的key：
+ * <ul>
+ *     <li>加锁和幂等标记先在旧分片上 SET NX，成功后再在新分片上 SET NX，新分片失败时撤销旧分片上的锁。
+ *     旧分片是窗口内唯一的互斥点，尚未切换的节点只写旧分片，也会被正确互斥；窗口结束后新分片上已有完整的锁</li>
+ *     <li>解锁、续约、更新在两个分片上都执行，读取优先新分片，找不到时回退到旧分片</li>
+ *     <li>紧凑幂等标记只检查旧分片是否已标记，不在旧分片写入，标记写在新分片上</li>
+ * </ul>
+ * 窗口应不短于锁的过期时间和幂等保留时长。所有节点应在同一个迁移窗口内完成切换
+ *
+ * @author moon
+ */
+@Slf4j
+public class ShardedLockBackend implements LockBackend, AutoCloseable {
+
+    /**
+     * 默认每个分片的虚拟节点数量
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    /**
+     * 按锁key路由，key中含有 {...} 时按花括号内的内容路由
+     */
+    public static final Function<String, String> KEY_ROUTING = KeyLayout::hashTag;
+
+    /**
+     * 按domain路由，取hash tag（没有时为整个key）中第一个下划线之前的部分，适用于 {@link KeyLayout} 的所有布局
+     */
+    public static final Function<String, String> DOMAIN_ROUTING = key -> {
+        String tag = KeyLayout.hashTag(key);
+        int index = tag.indexOf(StringConst.UNDERLINE);
+        return index > 0 ? tag.substring(0, index) : tag;
+    };
+
+    private final int virtualNodes;
+
+    private final Function<String, String> routing;
+
+    /**
+     * 批量操作的并行执行线程池
+     */
+    private final ExecutorService executor;
+
+    private volatile RingState state;
+
+    /**
+     * @param shards       key:分片名称，value:分片后端
+     * @param virtualNodes 每个分片的虚拟节点数量
+     * @param routing      锁key到路由key的映射，{@link #KEY_ROUTING} 或 {@link #DOMAIN_ROUTING}
+     */
+    public ShardedLockBackend(Map<String, LockBackend> shards, int virtualNodes, Function<String, String> routing) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("分片不能为空");
+        }
+        this.virtualNodes = virtualNodes;
+        this.routing = routing;
+        this.state = new RingState(new Ring(shards, virtualNodes), null, 0L);
+        this.executor = new ThreadPoolExecutor(shards.size(), Math.max(shards.size(), 1), 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setNameFormat("mlock-shard-%d").setDaemon(true).build());
+    }
+
+    public ShardedLockBackend(Map<String, LockBackend> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES, KEY_ROUTING);
+    }
+
+    /**
+     * 切换分片，迁移窗口内旧环继续参与判断
+     * <p>
+     * 只保留一个旧环，上一次切换的迁移窗口结束前不能再次切换：否则更早的旧环上仍有的锁和幂等标记不再被检查，
+     * 同一个key可能被重复加锁
+     *
+     * @param shards          key:分片名称，value:分片后端
+     * @param migrationMillis 迁移窗口，单位ms，不短于锁的过期时间和幂等保留时长
+     * @throws IllegalStateException 上一次切换的迁移窗口尚未结束
+     */
+    public synchronized void reshard(Map<String, LockBackend> shards, long migrationMillis) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("分片不能为空");
+        }
+        RingState current = state;
+        long remainMillis = current.previousUntilMillis - System.currentTimeMillis();
+        if (Objects.nonNull(current.previous) && remainMillis > 0) {
+            throw new IllegalStateException("上一次分片切换的迁移窗口尚未结束，剩余" + remainMillis + "ms");
+        }
+        Ring previous = current.current;
+        state = new RingState(new Ring(shards, virtualNodes), previous, System.currentTimeMillis() + migrationMillis);
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        if (shards.size() > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(shards.size());
+            pool.setCorePoolSize(shards.size());
+        }
+        log.info("ShardedLockBackend reshard from {} to {}, migrationMillis={}", previous.backends.keySet(), shards.keySet(), migrationMillis);
+    }
+
+    /**
+     * 当前分片名称
+     *
+     * @return 分片名称
+     */
+    public Collection<String> getShardNames() {
+        return state.current.backends.keySet();
+    }
+
+    /**
+     * 锁key所在的分片名称
+     *
+     * @param key 锁key
+     * @return 分片名称
+     */
+    public String getShardName(String key) {
+        return state.current.locate(routing.apply(key));
+    }
+
+    @Override
+    public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+        LockBackend previous = previousOwner(key);
+        if (Objects.isNull(previous)) {
+            return owner(key).acquire(key, value, timeout, unit);
+        }
+        // 迁移窗口内先在旧分片上互斥，再写新分片
+        if (!previous.acquire(key, value, timeout, unit)) {
+            return false;
+        }
+        if (owner(key).acquire(key, value, timeout, unit)) {
+            return true;
+        }
+        previous.release(key, value);
+        return false;
+    }
+
+    @Override
+    public boolean release(String key, String value) {
+        boolean released = owner(key).release(key, value);
+        LockBackend previous = previousOwner(key);
+        return (Objects.nonNull(previous) && previous.release(key, value)) || released;
+    }
+
+    /**
+     * 所有key在同一个分片且都不在迁移窗口内时由该分片批量加锁，否则按顺序逐个加锁
+     */
+    @Override
+    public boolean acquireAll(List<String> keys, String value, long timeout, TimeUnit unit) {
+        RingState current = state;
+        String shard = null;
+        for (String key : keys) {
+            String routingKey = routing.apply(key);
+            String keyShard = current.current.locate(routingKey);
+            if (Objects.nonNull(current.previousShard(routingKey)) || (Objects.nonNull(shard) && !shard.equals(keyShard))) {
+                return LockBackend.super.acquireAll(keys, value, timeout, unit);
+            }
+            shard = keyShard;
+        }
+        return Objects.isNull(shard) || current.backend(shard).acquireAll(keys, value, timeout, unit);
+    }
+
+    /**
+     * 迁移窗口内的key由 {@link #mark} 或 {@link #acquire} 同时写入了新旧两个分片，两个分片都要删除
+     */
+    @Override
+    public void releaseAll(Collection<String> keys) {
+        RingState current = state;
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String key : keys) {
+            String routingKey = routing.apply(key);
+            groups.computeIfAbsent(current.current.locate(routingKey), s -> new ArrayList<>()).add(key);
+            String previous = current.previousShard(routingKey);
+            if (Objects.nonNull(previous)) {
+                groups.computeIfAbsent(previous, s -> new ArrayList<>()).add(key);
+            }
+        }
+        List<Future<?>> futures = new ArrayList<>(groups.size());
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            LockBackend backend = current.backend(group.getKey());
+            futures.add(submit(groups.size(), () -> {
+                backend.releaseAll(group.getValue());
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            join(future);
+        }
+    }
+
+    @Override
+    public boolean renew(String key, String value, long timeout, TimeUnit unit) {
+        boolean renewed = owner(key).renew(key, value, timeout, unit);
+        LockBackend previous = previousOwner(key);
+        return (Objects.nonNull(previous) && previous.renew(key, value, timeout, unit)) || renewed;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        if (owner(key).exists(key)) {
+            return true;
+        }
+        LockBackend previous = previousOwner(key);
+        return Objects.nonNull(previous) && previous.exists(key);
+    }
+
+    @Override
+    public boolean mark(String key, String value, long timeout, TimeUnit unit) {
+        LockBackend previous = previousOwner(key);
+        if (Objects.nonNull(previous) && !previous.mark(key, value, timeout, unit)) {
+            // 迁移窗口内旧分片上已标记
+            return false;
+        }
+        // 新分片上已标记时是重复请求，旧分片上的标记同样表示已处理，不需要撤销
+        return owner(key).mark(key, value, timeout, unit);
+    }
+
+    @Override
+    public List<Boolean> markBatch(List<String> keys, String value, long timeout, TimeUnit unit) {
+        return routeBatch(keys, keys::get, (backend, batch) -> backend.markBatch(batch, value, timeout, unit),
+                key -> mark(key, value, timeout, unit));
+    }
+
+    @Override
+    public String get(String key) {
+        String value = owner(key).get(key);
+        if (Objects.nonNull(value)) {
+            return value;
+        }
+        LockBackend previous = previousOwner(key);
+        return Objects.isNull(previous) ? null : previous.get(key);
+    }
+
+    @Override
+    public boolean update(String key, String value, long timeout, TimeUnit unit) {
+        boolean updated = owner(key).update(key, value, timeout, unit);
+        LockBackend previous = previousOwner(key);
+        return (Objects.nonNull(previous) && previous.update(key, value, timeout, unit)) || updated;
+    }
+
+    @Override
+    public boolean markCompact(CompactIdempotentKey key) {
+        LockBackend previous = previousOwner(key.getBucketKey());
+        if (Objects.nonNull(previous) && previous.existsCompact(key)) {
+            // 旧分片上已标记
+            return false;
+        }
+        return owner(key.getBucketKey()).markCompact(key);
+    }
+
+    @Override
+    public List<Boolean> markCompactBatch(List<CompactIdempotentKey> keys) {
+        return routeBatch(keys, i -> keys.get(i).getBucketKey(), LockBackend::markCompactBatch, this::markCompact);
+    }
+
+    @Override
+    public void releaseCompact(CompactIdempotentKey key) {
+        owner(key.getBucketKey()).releaseCompact(key);
+        LockBackend previous = previousOwner(key.getBucketKey());
+        if (Objects.nonNull(previous)) {
+            previous.releaseCompact(key);
+        }
+    }
+
+    @Override
+    public boolean existsCompact(CompactIdempotentKey key) {
+        if (owner(key.getBucketKey()).existsCompact(key)) {
+            return true;
+        }
+        LockBackend previous = previousOwner(key.getBucketKey());
+        return Objects.nonNull(previous) && previous.existsCompact(key);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * 批量操作：归属未变化的key按分片分组并行执行，迁移中归属发生变化的key逐个执行
+     *
+     * @param items      批量元素
+     * @param keyOf      第i个元素的锁key
+     * @param batchCall  分片上的批量调用
+     * @param singleCall 单个元素的调用
+     * @return 与items一一对应的结果
+     */
+    private <T> List<Boolean> routeBatch(List<T> items, IntFunction<String> keyOf, BatchCall<T> batchCall,
+                                         Function<T, Boolean> singleCall) {
+        RingState current = state;
+        Boolean[] results = new Boolean[items.size()];
+        // key:分片名称，value:元素下标
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<Integer> migrating = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            String routingKey = routing.apply(keyOf.apply(i));
+            if (Objects.nonNull(current.previousShard(routingKey))) {
+                migrating.add(i);
+                continue;
+            }
+            groups.computeIfAbsent(current.current.locate(routingKey), s -> new ArrayList<>()).add(i);
+        }
+        List<Future<List<Boolean>>> futures = new ArrayList<>(groups.size());
+        List<List<Integer>> indexes = new ArrayList<>(groups.size());
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+            LockBackend backend = current.backend(group.getKey());
+            List<T> batch = new ArrayList<>(group.getValue().size());
+            for (Integer index : group.getValue()) {
+                batch.add(items.get(index));
+            }
+            futures.add(submit(groups.size(), () -> batchCall.call(backend, batch)));
+            indexes.add(group.getValue());
+        }
+        for (Integer index : migrating) {
+            results[index] = singleCall.apply(items.get(index));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            List<Boolean> batchResults = join(futures.get(i));
+            List<Integer> groupIndexes = indexes.get(i);
+            for (int j = 0; j < groupIndexes.size(); j++) {
+                results[groupIndexes.get(j)] = batchResults.get(j);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 分片数大于1时提交到线程池，否则在调用线程执行
+     */
+    private <R> Future<R> submit(int groups, Callable<R> task) {
+        if (groups <= 1) {
+            FutureTask<R> future = new FutureTask<>(task);
+            future.run();
+            return future;
+        }
+        return executor.submit(task);
+    }
+
+    private static <R> R join(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ShardedLockBackend interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private LockBackend owner(String key) {
+        RingState current = state;
+        return current.backend(current.current.locate(routing.apply(key)));
+    }
+
+    /**
+     * 迁移窗口内归属发生变化的key在旧环上的分片
+     *
+     * @param key 锁key
+     * @return 旧分片，不在迁移窗口内或归属未变化时返回null
+     */
+    private LockBackend previousOwner(String key) {
+        RingState current = state;
+        String previous = current.previousShard(routing.apply(key));
+        return Objects.isNull(previous) ? null : current.previous.backends.get(previous);
+    }
+
+    private static long hash(String value) {
+        return Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * 分片上的批量调用
+     */
+    @FunctionalInterface
+    private interface BatchCall<T> {
+        List<Boolean> call(LockBackend backend, List<T> batch);
+    }
+
+    /**
+     * 哈希环，虚拟节点按哈希值排序后二分查找
+     */
+    private static class Ring {
+
+        private final Map<String, LockBackend> backends;
+
+        private final long[] hashes;
+
+        private final String[] shards;
+
+        private Ring(Map<String, LockBackend> backends, int virtualNodes) {
+            this.backends = ImmutableMap.copyOf(backends);
+            List<Map.Entry<Long, String>> nodes = new ArrayList<>(backends.size() * virtualNodes);
+            for (String shard : backends.keySet()) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    nodes.add(new AbstractMap.SimpleImmutableEntry<>(hash(shard + "#" + i), shard));
+                }
+            }
+            nodes.sort(Map.Entry.comparingByKey());
+            hashes = new long[nodes.size()];
+            shards = new String[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                hashes[i] = nodes.get(i).getKey();
+                shards[i] = nodes.get(i).getValue();
+            }
+        }
+
+        private String locate(String routingKey) {
+            int index = Arrays.binarySearch(hashes, hash(routingKey));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return shards[index == hashes.length ? 0 : index];
+        }
+    }
+
+    /**
+     * 当前环和迁移窗口内的旧环
+     */
+    private static class RingState {
+
+        private final Ring current;
+
+        private final Ring previous;
+
+        private final long previousUntilMillis;
+
+        private RingState(Ring current, Ring previous, long previousUntilMillis) {
+            this.current = current;
+            this.previous = previous;
+            this.previousUntilMillis = previousUntilMillis;
+        }
+
+        private LockBackend backend(String shard) {
+            LockBackend backend = current.backends.get(shard);
+            return Objects.nonNull(backend) ? backend : previous.backends.get(shard);
+        }
+
+        /**
+         * 迁移窗口内归属发生变化的路由key在旧环上的分片
+         */
+        private String previousShard(String routingKey) {
+            if (Objects.isNull(previous) || System.currentTimeMillis() >= previousUntilMillis) {
+                return null;
+            }
+            String previousShard = previous.locate(routingKey);
+            if (Objects.equals(previousShard, current.locate(routingKey))) {
+                return null;
+            }
+            return previousShard;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package moon.mlock.breaker;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.CircuitStateEnum;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 锁存储后端熔断器
+ * <p>
+ * 按秒分桶统计最近 windowSeconds 秒内的调用数、异常数和慢调用数：
+ * <ul>
+ *     <li>关闭：调用数不少于 minCalls，且异常率或慢调用率达到阈值时打开</li>
+ *     <li>打开：持续 openMillis，期间请求不访问后端，非强制锁按domain策略降级，强制锁快速失败</li>
+ *     <li>半开：打开时间结束后放行 probeCalls 个探测请求，全部成功（且不慢）则关闭，任一失败重新打开；
+ *     解锁、续约等不占用探测名额的调用不影响半开状态</li>
+ * </ul>
+ * 只有异常或慢调用才会重新计算比率，正常调用只做计数
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockCircuitBreaker {
+
+    public static final int DEFAULT_WINDOW_SECONDS = 10;
+
+    public static final int DEFAULT_MIN_CALLS = 20;
+
+    public static final double DEFAULT_ERROR_RATE = 0.5D;
+
+    public static final long DEFAULT_SLOW_CALL_MILLIS = 200L;
+
+    public static final double DEFAULT_SLOW_CALL_RATE = 0.5D;
+
+    public static final long DEFAULT_OPEN_MILLIS = 5000L;
+
+    public static final int DEFAULT_PROBE_CALLS = 5;
+
+    /**
+     * 统计窗口，单位s，每秒一个桶
+     */
+    private final int windowSeconds;
+
+    /**
+     * 计算比率所需的最少调用数
+     */
+    private final int minCalls;
+
+    /**
+     * 异常率阈值
+     */
+    private final double errorRate;
+
+    /**
+     * 慢调用耗时阈值，单位ns
+     */
+    private final long slowCallNanos;
+
+    /**
+     * 慢调用率阈值
+     */
+    private final double slowCallRate;
+
+    /**
+     * 打开持续时长，单位ms
+     */
+    private final long openMillis;
+
+    /**
+     * 半开时的探测请求数量
+     */
+    private final int probeCalls;
+
+    private final Bucket[] buckets;
+
+    private final AtomicReference<CircuitStateEnum> state = new AtomicReference<>(CircuitStateEnum.CLOSED);
+
+    /**
+     * 打开结束的时间点（System.currentTimeMillis）
+     */
+    private volatile long openUntilMillis;
+
+    /**
+     * 半开时剩余的探测名额
+     */
+    private final AtomicInteger probePermits = new AtomicInteger();
+
+    /**
+     * 半开时成功的探测数量
+     */
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    public LockCircuitBreaker() {
+        this(DEFAULT_WINDOW_SECONDS, DEFAULT_MIN_CALLS, DEFAULT_ERROR_RATE, DEFAULT_SLOW_CALL_MILLIS, DEFAULT_SLOW_CALL_RATE,
+                DEFAULT_OPEN_MILLIS, DEFAULT_PROBE_CALLS);
+    }
+
+    /**
+     * @param windowSeconds  统计窗口，单位s
+     * @param minCalls       计算比率所需的最少调用数
+     * @param errorRate      异常率阈值，取值 (0, 1]
+     * @param slowCallMillis 慢调用耗时阈值，单位ms
+     * @param slowCallRate   慢调用率阈值，取值 (0, 1]
+     * @param openMillis     打开持续时长，单位ms
+     * @param probeCalls     半开时的探测请求数量
+     */
+    public LockCircuitBreaker(int windowSeconds, int minCalls, double errorRate, long slowCallMillis, double slowCallRate,
+                              long openMillis, int probeCalls) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.minCalls = Math.max(1, minCalls);
+        this.errorRate = errorRate;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRate = slowCallRate;
+        this.openMillis = openMillis;
+        this.probeCalls = Math.max(1, probeCalls);
+        this.buckets = new Bucket[this.windowSeconds];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 当前状态，打开时间结束后转为半开
+     *
+     * @return 熔断器状态
+     */
+    public CircuitStateEnum getState() {
+        CircuitStateEnum current = state.get();
+        if (current == CircuitStateEnum.OPEN && System.currentTimeMillis() >= openUntilMillis
+                && state.compareAndSet(CircuitStateEnum.OPEN, CircuitStateEnum.HALF_OPEN)) {
+            probeSuccesses.set(0);
+            probePermits.set(probeCalls);
+            log.info("LockCircuitBreaker half open, probeCalls={}", probeCalls);
+            return CircuitStateEnum.HALF_OPEN;
+        }
+        return state.get();
+    }
+
+    /**
+     * 是否打开，打开时不访问后端
+     *
+     * @return true：打开
+     */
+    public boolean isOpen() {
+        return getState() == CircuitStateEnum.OPEN;
+    }
+
+    /**
+     * 是否还能访问后端，不占用探测名额：关闭时可以，打开时不可以，半开时还有探测名额时可以
+     *
+     * @return true：可以访问后端
+     */
+    public boolean isAvailable() {
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return probePermits.get() > 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 访问后端前调用：关闭时放行，打开时拒绝，半开时占用一个探测名额，名额用完后拒绝
+     *
+     * @return true：可以访问后端，false：应降级
+     */
+    public boolean allowRequest() {
+        return acquire() != CircuitStateEnum.OPEN;
+    }
+
+    /**
+     * 访问后端前调用，与 {@link #allowRequest()} 相同，返回放行时的状态，调用结束后据此记录是否为探测请求
+     *
+     * @return CLOSED：放行，HALF_OPEN：放行并占用了一个探测名额，OPEN：拒绝
+     */
+    public CircuitStateEnum acquire() {
+        switch (getState()) {
+            case CLOSED:
+                return CircuitStateEnum.CLOSED;
+            case HALF_OPEN:
+                return probePermits.getAndDecrement() > 0 ? CircuitStateEnum.HALF_OPEN : CircuitStateEnum.OPEN;
+            default:
+                return CircuitStateEnum.OPEN;
+        }
+    }
+
+    /**
+     * 记录一次占用了探测名额的调用结果
+     *
+     * @param elapsedNanos 调用耗时，单位ns
+     * @param error        是否异常
+     */
+    public void record(long elapsedNanos, boolean error) {
+        record(elapsedNanos, error, true);
+    }
+
+    /**
+     * 记录一次调用结果，半开时只有占用了探测名额的调用才会关闭或重新打开熔断器
+     *
+     * @param elapsedNanos 调用耗时，单位ns
+     * @param error        是否异常
+     * @param probe        是否占用了探测名额，解锁、续约等不占用名额的调用为false
+     */
+    public void record(long elapsedNanos, boolean error, boolean probe) {
+        boolean slow = elapsedNanos >= slowCallNanos;
+        switch (state.get()) {
+            case HALF_OPEN:
+                if (!probe) {
+                    return;
+                }
+                if (error || slow) {
+                    open(CircuitStateEnum.HALF_OPEN, error ? "probe error" : "probe slow");
+                } else if (probeSuccesses.incrementAndGet() >= probeCalls) {
+                    close();
+                }
+                return;
+            case CLOSED:
+                long second = System.currentTimeMillis() / 1000;
+                Bucket bucket = bucket(second);
+                bucket.calls.increment();
+                if (error) {
+                    bucket.errors.increment();
+                }
+                if (slow) {
+                    bucket.slowCalls.increment();
+                }
+                if (error || slow) {
+                    evaluate(second);
+                }
+                return;
+            default:
+                // 打开前发出的请求，忽略
+        }
+    }
+
+    /**
+     * 按窗口内的比率判断是否打开
+     */
+    private void evaluate(long second) {
+        long calls = 0L;
+        long errors = 0L;
+        long slowCalls = 0L;
+        for (Bucket bucket : buckets) {
+            if (second - bucket.second < windowSeconds) {
+                calls += bucket.calls.sum();
+                errors += bucket.errors.sum();
+                slowCalls += bucket.slowCalls.sum();
+            }
+        }
+        if (calls < minCalls) {
+            return;
+        }
+        if (errors >= calls * errorRate) {
+            open(CircuitStateEnum.CLOSED, "errors=" + errors + ", calls=" + calls);
+        } else if (slowCalls >= calls * slowCallRate) {
+            open(CircuitStateEnum.CLOSED, "slowCalls=" + slowCalls + ", calls=" + calls);
+        }
+    }
+
+    private void open(CircuitStateEnum from, String reason) {
+        if (state.get() != from) {
+            return;
+        }
+        openUntilMillis = System.currentTimeMillis() + openMillis;
+        if (state.compareAndSet(from, CircuitStateEnum.OPEN)) {
+            log.warn("LockCircuitBreaker open from {}, {}, openMillis={}", from.getName(), reason, openMillis);
+        }
+    }
+
+    private void close() {
+        if (state.compareAndSet(CircuitStateEnum.HALF_OPEN, CircuitStateEnum.CLOSED)) {
+            for (Bucket bucket : buckets) {
+                bucket.reset(-1L);
+            }
+            log.info("LockCircuitBreaker closed");
+        }
+    }
+
+    /**
+     * 取当前秒的桶，桶属于更早的秒时先清零
+     */
+    private Bucket bucket(long second) {
+        Bucket bucket = buckets[(int) (second % buckets.length)];
+        if (bucket.second != second) {
+            synchronized (bucket) {
+                if (bucket.second != second) {
+                    bucket.reset(second);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+
+        private volatile long second = -1L;
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder slowCalls = new LongAdder();
+
+        private void reset(long second) {
+            calls.reset();
+            errors.reset();
+            slowCalls.reset();
+            this.second = second;
+        }
+    }
+}
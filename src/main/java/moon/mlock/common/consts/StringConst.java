@@ -26,4 +26,9 @@ public class StringConst {
      * 字符 '.'
      */
     public static final String DOT = ".";
+
+    /**
+     * 批量幂等锁value前缀
+     */
+    public static final String BATCH = "batch";
 }
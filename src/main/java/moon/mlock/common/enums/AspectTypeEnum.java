@@ -0,0 +1,79 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 切面类型枚举
+ *
+ * @author moon
+ */
+public enum AspectTypeEnum implements EnumValue {
+
+    /**
+     * 分布式锁
+     */
+    LOCK(1, "lock"),
+
+    /**
+     * 分布式检查锁
+     */
+    CHECK_LOCK(2, "check_lock"),
+
+    /**
+     * 分布式幂等
+     */
+    IDEMPOTENT(3, "idempotent"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    AspectTypeEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取切面类型枚举
+     *
+     * @param index index
+     * @return 切面类型枚举
+     */
+    public static AspectTypeEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (AspectTypeEnum value : AspectTypeEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
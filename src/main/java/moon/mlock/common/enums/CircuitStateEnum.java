@@ -0,0 +1,96 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 熔断器状态枚举
+ *
+ * @author moon
+ */
+public enum CircuitStateEnum implements EnumValue {
+
+    /**
+     * 关闭，请求正常访问锁存储后端
+     */
+    CLOSED(0, "closed"),
+
+    /**
+     * 打开，请求不再访问锁存储后端
+     */
+    OPEN(1, "open"),
+
+    /**
+     * 半开，放行少量探测请求，根据探测结果关闭或重新打开
+     */
+    HALF_OPEN(2, "half_open"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    CircuitStateEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取熔断器状态枚举
+     *
+     * @param index index
+     * @return 熔断器状态枚举
+     */
+    public static CircuitStateEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (CircuitStateEnum value : CircuitStateEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据name获取熔断器状态枚举，忽略大小写
+     *
+     * @param name name
+     * @return 熔断器状态枚举
+     */
+    public static CircuitStateEnum getEnumByName(String name) {
+        if (Objects.nonNull(name)) {
+            for (CircuitStateEnum value : CircuitStateEnum.values()) {
+                if (value.getName().equalsIgnoreCase(name.trim())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
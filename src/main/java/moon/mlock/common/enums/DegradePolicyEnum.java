@@ -0,0 +1,96 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 熔断降级策略枚举
+ *
+ * @author moon
+ */
+public enum DegradePolicyEnum implements EnumValue {
+
+    /**
+     * 降级为JVM本地锁，同一节点内仍然互斥
+     */
+    LOCAL(1, "local"),
+
+    /**
+     * 降级为无锁
+     */
+    NOTHING(2, "nothing"),
+
+    /**
+     * 不降级，快速失败
+     */
+    FAIL(3, "fail"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    DegradePolicyEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取熔断降级策略枚举
+     *
+     * @param index index
+     * @return 熔断降级策略枚举
+     */
+    public static DegradePolicyEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (DegradePolicyEnum value : DegradePolicyEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据name获取熔断降级策略枚举，忽略大小写
+     *
+     * @param name name
+     * @return 熔断降级策略枚举
+     */
+    public static DegradePolicyEnum getEnumByName(String name) {
+        if (Objects.nonNull(name)) {
+            for (DegradePolicyEnum value : DegradePolicyEnum.values()) {
+                if (value.getName().equalsIgnoreCase(name.trim())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 锁key布局枚举
+ *
+ * @author moon
+ */
+public enum KeyLayoutEnum implements EnumValue {
+
+    /**
+     * 不使用hash tag：domain_key
+     */
+    PLAIN(0, "plain"),
+
+    /**
+     * 按domain打tag：{domain}_key，同一domain的锁在同一个slot，批量操作一个脚本完成，但domain内的锁集中在一个节点
+     */
+    DOMAIN(1, "domain"),
+
+    /**
+     * 按锁打tag：{domain_key}，每个锁单独一个slot，锁的附属key（计数器、元数据等）与锁在同一个slot
+     */
+    KEY(2, "key"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    KeyLayoutEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取锁key布局枚举
+     *
+     * @param index index
+     * @return 锁key布局枚举
+     */
+    public static KeyLayoutEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (KeyLayoutEnum value : KeyLayoutEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据name获取锁key布局枚举，忽略大小写
+     *
+     * @param name name
+     * @return 锁key布局枚举
+     */
+    public static KeyLayoutEnum getEnumByName(String name) {
+        if (Objects.nonNull(name)) {
+            for (KeyLayoutEnum value : KeyLayoutEnum.values()) {
+                if (value.getName().equalsIgnoreCase(name.trim())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 锁事件日志级别枚举
+ *
+ * @author moon
+ */
+public enum LockEventLevelEnum implements EnumValue {
+
+    /**
+     * 不记录
+     */
+    OFF(0, "off"),
+
+    /**
+     * 按采样率记录
+     */
+    SAMPLED(1, "sampled"),
+
+    /**
+     * 全部记录
+     */
+    ALL(2, "all"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    LockEventLevelEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取锁事件日志级别枚举
+     *
+     * @param index index
+     * @return 锁事件日志级别枚举
+     */
+    public static LockEventLevelEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (LockEventLevelEnum value : LockEventLevelEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 根据name获取锁事件日志级别枚举，忽略大小写
+     *
+     * @param name name
+     * @return 锁事件日志级别枚举
+     */
+    public static LockEventLevelEnum getEnumByName(String name) {
+        if (Objects.nonNull(name)) {
+            for (LockEventLevelEnum value : LockEventLevelEnum.values()) {
+                if (value.getName().equalsIgnoreCase(name.trim())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 锁事件类型枚举
+ *
+ * @author moon
+ */
+public enum LockEventTypeEnum implements EnumValue {
+
+    /**
+     * ReentrantRedisLock加锁
+     */
+    TRY_LOCK(1, "try_lock"),
+
+    /**
+     * ReentrantRedisLock重入检查
+     */
+    REENTRY(2, "reentry"),
+
+    /**
+     * ReentrantRedisLock解锁
+     */
+    UNLOCK(3, "unlock"),
+
+    /**
+     * ReentrantRedisLock检查锁
+     */
+    CHECK(4, "check"),
+
+    /**
+     * 分布式锁切面
+     */
+    LOCK_ASPECT(5, "lock_aspect"),
+
+    /**
+     * 分布式检查锁切面
+     */
+    CHECK_LOCK_ASPECT(6, "check_lock_aspect"),
+
+    /**
+     * 分布式幂等切面
+     */
+    IDEMPOTENT_ASPECT(7, "idempotent_aspect"),
+
+    /**
+     * 分布式幂等结果回放
+     */
+    IDEMPOTENT_REPLAY(8, "idempotent_replay"),
+
+    /**
+     * 批量分布式幂等切面
+     */
+    IDEMPOTENT_BATCH(9, "idempotent_batch"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    LockEventTypeEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取锁事件类型枚举
+     *
+     * @param index index
+     * @return 锁事件类型枚举
+     */
+    public static LockEventTypeEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (LockEventTypeEnum value : LockEventTypeEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
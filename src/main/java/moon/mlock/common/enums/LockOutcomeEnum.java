@@ -0,0 +1,99 @@
+package moon.mlock.common.enums;
+
+import java.util.Objects;
+
+/**
+ * 锁操作结果枚举
+ *
+ * @author moon
+ */
+public enum LockOutcomeEnum implements EnumValue {
+
+    /**
+     * 成功，加锁成功、检查通过或幂等首次调用
+     */
+    SUCCESS(1, "success"),
+
+    /**
+     * 失败，锁被占用、检查未通过或幂等重复调用
+     */
+    FAIL(2, "fail"),
+
+    /**
+     * 等待锁超时
+     */
+    TIMEOUT(3, "timeout"),
+
+    /**
+     * 异常
+     */
+    ERROR(4, "error"),
+
+    /**
+     * 幂等重复调用，回放了首次调用的结果
+     */
+    REPLAY(5, "replay"),
+
+    /**
+     * 等待锁的并发数超过上限，直接拒绝
+     */
+    SHED(6, "shed"),
+
+    /**
+     * 等待锁时线程被中断
+     */
+    INTERRUPTED(7, "interrupted"),
+    ;
+
+    /**
+     * index
+     */
+    private final Integer index;
+
+    /**
+     * name
+     */
+    private final String name;
+
+    LockOutcomeEnum(int index, String name) {
+        this.index = index;
+        this.name = name;
+    }
+
+    /**
+     * 获取枚举的index
+     *
+     * @return 枚举的index
+     */
+    @Override
+    public Integer getIndex() {
+        return this.index;
+    }
+
+    /**
+     * 获取枚举的name
+     *
+     * @return 枚举的name
+     */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * 根据index获取锁操作结果枚举
+     *
+     * @param index index
+     * @return 锁操作结果枚举
+     */
+    public static LockOutcomeEnum getEnumByIndex(Integer index) {
+        if (Objects.nonNull(index)) {
+            for (LockOutcomeEnum value : LockOutcomeEnum.values()) {
+                if (Objects.equals(index, value.getIndex())) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+}
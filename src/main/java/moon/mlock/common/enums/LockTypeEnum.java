@@ -25,6 +25,11 @@ public enum LockTypeEnum implements EnumValue {
      * 强制redis锁
      */
     LOCK_REDIS_FORCE(3, "redis_force"),
+
+    /**
+     * JVM本地锁，只在同一节点内互斥，redis锁熔断降级时使用
+     */
+    LOCK_LOCAL(4, "local"),
     ;
 
     /**
@@ -78,4 +83,21 @@ public enum LockTypeEnum implements EnumValue {
         }
         return null;
     }
+
+    /**
+     * 根据name获取锁类型枚举，忽略大小写
+     *
+     * @param name name
+     * @return 锁类型枚举
+     */
+    public static LockTypeEnum getEnumByName(String name) {
+        if (Objects.nonNull(name)) {
+            for (LockTypeEnum lockTypeEnum : LockTypeEnum.values()) {
+                if (lockTypeEnum.getName().equalsIgnoreCase(name.trim())) {
+                    return lockTypeEnum;
+                }
+            }
+        }
+        return null;
+    }
 }
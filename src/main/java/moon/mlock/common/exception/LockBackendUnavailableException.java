@@ -0,0 +1,26 @@
+package moon.mlock.common.exception;
+
+/**
+ * 锁存储后端不可用异常，熔断打开时快速失败
+ *
+ * @author moon
+ */
+public class LockBackendUnavailableException extends RuntimeException {
+
+    public LockBackendUnavailableException() {
+        super();
+    }
+
+    public LockBackendUnavailableException(String message) {
+        super(message);
+    }
+
+    public LockBackendUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public LockBackendUnavailableException(Throwable cause) {
+        super(cause);
+    }
+
+}
@@ -0,0 +1,104 @@
+package moon.mlock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.enums.KeyLayoutEnum;
+import moon.mlock.common.enums.LockEventLevelEnum;
+import moon.mlock.event.LockEventLogger;
+import moon.mlock.idempotent.IdempotentResultCodec;
+import moon.mlock.limit.LockWaitLimiters;
+import moon.mlock.stripe.LockStripes;
+import moon.mlock.utils.SnowflakeIdGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 进程级的全局配置：锁key布局、锁等待并发限制、幂等结果回放白名单、锁分段、id生成器节点号、锁事件日志
+ * <p>
+ * 这些配置保存在静态变量中，对进程内所有Spring上下文生效，只在第一次调用 {@link #configure(LockProperties)} 时初始化。
+ * 之后的调用（如第二个Spring上下文、测试上下文中的 RedisLockProxy）：
+ * <ul>
+ *     <li>锁key布局或id生成器节点号不同时抛出 {@link IllegalStateException}，修改它们会使已持有的锁和已写入的key失效</li>
+ *     <li>其他配置不同时记录warn日志，仍以第一次的配置为准</li>
+ * </ul>
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockGlobalConfig {
+
+    /**
+     * 已生效的配置，未初始化时为null
+     */
+    private static LockGlobalConfig applied;
+
+    /**
+     * 锁key布局
+     */
+    private final KeyLayoutEnum keyLayout;
+
+    /**
+     * id生成器节点号，小于0表示按本机ip计算
+     */
+    private final int nodeId;
+
+    /**
+     * 其他配置，只用于比较
+     */
+    private final List<Object> settings;
+
+    private LockGlobalConfig(LockProperties lockProperties) {
+        KeyLayoutEnum layout = KeyLayoutEnum.getEnumByName(lockProperties.getKeyLayout());
+        this.keyLayout = Objects.isNull(layout) ? KeyLayoutEnum.PLAIN : layout;
+        this.nodeId = Optional.ofNullable(lockProperties.getIdNodeId()).orElse(-1);
+        this.settings = Arrays.asList(Boolean.TRUE.equals(lockProperties.getLimiterEnabled()),
+                lockProperties.getLimiterInitialLimit(), lockProperties.getLimiterMinLimit(), lockProperties.getLimiterMaxLimit(),
+                lockProperties.getLimiterSmoothing(), lockProperties.getLimiterTolerance(),
+                lockProperties.parseReplayAllowedPackages(), lockProperties.parseStripeDomains(),
+                lockProperties.getEventSampleRate(), lockProperties.getEventLevel(), lockProperties.parseEventDomainLevels());
+    }
+
+    /**
+     * 初始化全局配置，只有第一次调用生效
+     *
+     * @param lockProperties 锁配置
+     * @throws IllegalStateException 锁key布局或id生成器节点号与已生效的配置不同
+     */
+    public static synchronized void configure(LockProperties lockProperties) {
+        LockGlobalConfig config = new LockGlobalConfig(lockProperties);
+        if (Objects.nonNull(applied)) {
+            if (config.keyLayout != applied.keyLayout || config.nodeId != applied.nodeId) {
+                throw new IllegalStateException("mlock锁key布局或id生成器节点号与已生效的配置不同，已生效：keyLayout="
+                        + applied.keyLayout.getName() + ", nodeId=" + applied.nodeId + "，本次：keyLayout="
+                        + config.keyLayout.getName() + ", nodeId=" + config.nodeId);
+            }
+            if (!config.settings.equals(applied.settings)) {
+                log.warn("LockGlobalConfig already configured, ignore different settings, applied={}, ignored={}",
+                        applied.settings, config.settings);
+            }
+            return;
+        }
+        // 初始化锁key布局
+        KeyLayout.configure(config.keyLayout);
+        // 初始化锁等待并发限制
+        LockWaitLimiters.configure(Boolean.TRUE.equals(lockProperties.getLimiterEnabled()),
+                Optional.ofNullable(lockProperties.getLimiterInitialLimit()).orElse(LockWaitLimiters.DEFAULT_INITIAL_LIMIT),
+                Optional.ofNullable(lockProperties.getLimiterMinLimit()).orElse(LockWaitLimiters.DEFAULT_MIN_LIMIT),
+                Optional.ofNullable(lockProperties.getLimiterMaxLimit()).orElse(LockWaitLimiters.DEFAULT_MAX_LIMIT),
+                Optional.ofNullable(lockProperties.getLimiterSmoothing()).orElse(LockWaitLimiters.DEFAULT_SMOOTHING),
+                Optional.ofNullable(lockProperties.getLimiterTolerance()).orElse(LockWaitLimiters.DEFAULT_TOLERANCE));
+        // 初始化幂等结果回放白名单
+        IdempotentResultCodec.configure(lockProperties.parseReplayAllowedPackages());
+        // 初始化锁分段
+        LockStripes.configure(lockProperties.parseStripeDomains());
+        // 初始化id生成器节点号
+        SnowflakeIdGenerator.configure(config.nodeId);
+        // 初始化锁事件日志
+        LockEventLogger.configure(Optional.ofNullable(lockProperties.getEventSampleRate()).orElse(1D),
+                LockEventLevelEnum.getEnumByName(lockProperties.getEventLevel()), lockProperties.parseEventDomainLevels());
+        applied = config;
+    }
+}
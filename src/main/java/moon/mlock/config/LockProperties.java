@@ -1,10 +1,20 @@
 package moon.mlock.config;
 
 
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.DegradePolicyEnum;
+import moon.mlock.common.enums.LockEventLevelEnum;
 import moon.mlock.common.enums.LockTypeEnum;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
 /**
  * Lock配置()
  *
@@ -32,6 +42,162 @@ public class LockProperties {
     @Value("${component.redis.cluster-name:moonCluster}")
     private String redisGroupName;
 
+    /**
+     * 锁分片的redis集群名称，逗号分隔，为空时只使用 redisGroupName
+     */
+    @Value("${mlock.shard.groups:}")
+    private String shardGroups;
+
+    /**
+     * 每个分片的虚拟节点数量
+     */
+    @Value("${mlock.shard.virtual-nodes:160}")
+    private Integer shardVirtualNodes;
+
+    /**
+     * 是否按domain分片，默认按锁key分片
+     */
+    @Value("${mlock.shard.by-domain:false}")
+    private Boolean shardByDomain;
+
+    /**
+     * 锁key布局：plain、domain、key，redis cluster上使用domain或key
+     */
+    @Value("${mlock.key-layout:plain}")
+    private String keyLayout;
+
+    /**
+     * 是否开启锁存储后端熔断
+     */
+    @Value("${mlock.breaker.enabled:false}")
+    private Boolean breakerEnabled;
+
+    /**
+     * 熔断统计窗口，单位s
+     */
+    @Value("${mlock.breaker.window-seconds:10}")
+    private Integer breakerWindowSeconds;
+
+    /**
+     * 熔断计算比率所需的最少调用数
+     */
+    @Value("${mlock.breaker.min-calls:20}")
+    private Integer breakerMinCalls;
+
+    /**
+     * 熔断异常率阈值
+     */
+    @Value("${mlock.breaker.error-rate:0.5}")
+    private Double breakerErrorRate;
+
+    /**
+     * 慢调用耗时阈值，单位ms
+     */
+    @Value("${mlock.breaker.slow-call-millis:200}")
+    private Long breakerSlowCallMillis;
+
+    /**
+     * 熔断慢调用率阈值
+     */
+    @Value("${mlock.breaker.slow-call-rate:0.5}")
+    private Double breakerSlowCallRate;
+
+    /**
+     * 熔断打开持续时长，单位ms
+     */
+    @Value("${mlock.breaker.open-millis:5000}")
+    private Long breakerOpenMillis;
+
+    /**
+     * 半开时的探测请求数量
+     */
+    @Value("${mlock.breaker.probe-calls:5}")
+    private Integer breakerProbeCalls;
+
+    /**
+     * 熔断时非强制redis锁的默认降级策略：local、nothing、fail
+     */
+    @Value("${mlock.breaker.degrade-policy:local}")
+    private String breakerDegradePolicy;
+
+    /**
+     * 按domain配置的降级策略，格式：domain1:nothing,domain2:fail
+     */
+    @Value("${mlock.breaker.domain-policies:}")
+    private String breakerDomainPolicies;
+
+    /**
+     * 是否开启锁等待并发限制
+     */
+    @Value("${mlock.limiter.enabled:false}")
+    private Boolean limiterEnabled;
+
+    /**
+     * 每个domain的初始并发上限
+     */
+    @Value("${mlock.limiter.initial-limit:20}")
+    private Integer limiterInitialLimit;
+
+    /**
+     * 最小并发上限
+     */
+    @Value("${mlock.limiter.min-limit:2}")
+    private Integer limiterMinLimit;
+
+    /**
+     * 最大并发上限
+     */
+    @Value("${mlock.limiter.max-limit:200}")
+    private Integer limiterMaxLimit;
+
+    /**
+     * 上限调整的平滑系数，取值 (0, 1]
+     */
+    @Value("${mlock.limiter.smoothing:0.2}")
+    private Double limiterSmoothing;
+
+    /**
+     * 耗时容忍度，短期耗时不超过长期耗时的该倍数时视为正常
+     */
+    @Value("${mlock.limiter.tolerance:2}")
+    private Double limiterTolerance;
+
+    /**
+     * 幂等结果回放允许反序列化的业务包或类，逗号分隔，JDK的常用包默认允许
+     */
+    @Value("${mlock.idempotent.replay-allowed-packages:}")
+    private String replayAllowedPackages;
+
+    /**
+     * 按domain配置的锁分段数，格式：domain1:1024,domain2:256，未配置的domain不分段
+     */
+    @Value("${mlock.stripe.domains:}")
+    private String stripeDomains;
+
+    /**
+     * 雪花算法id的节点号，取值 [0, 1023]，小于0时取本机ip的低10位
+     */
+    @Value("${mlock.id.node-id:-1}")
+    private Integer idNodeId;
+
+    /**
+     * 锁事件日志采样率，取值 [0, 1]
+     */
+    @Value("${mlock.event.sample-rate:1}")
+    private Double eventSampleRate;
+
+    /**
+     * 锁事件日志默认级别：off、sampled、all
+     */
+    @Value("${mlock.event.level:sampled}")
+    private String eventLevel;
+
+    /**
+     * 按domain配置的锁事件日志级别，格式：domain1:all,domain2:off
+     */
+    @Value("${mlock.event.domain-levels:}")
+    private String eventDomainLevels;
+
     /**
      * 获取Lock锁类型
      *
@@ -56,4 +222,307 @@ public class LockProperties {
     public void setRedisGroupName(String redisGroupName) {
         this.redisGroupName = redisGroupName;
     }
+
+    public String getShardGroups() {
+        return shardGroups;
+    }
+
+    public void setShardGroups(String shardGroups) {
+        this.shardGroups = shardGroups;
+    }
+
+    public Integer getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    public void setShardVirtualNodes(Integer shardVirtualNodes) {
+        this.shardVirtualNodes = shardVirtualNodes;
+    }
+
+    public Boolean getShardByDomain() {
+        return shardByDomain;
+    }
+
+    public void setShardByDomain(Boolean shardByDomain) {
+        this.shardByDomain = shardByDomain;
+    }
+
+    public String getKeyLayout() {
+        return keyLayout;
+    }
+
+    public void setKeyLayout(String keyLayout) {
+        this.keyLayout = keyLayout;
+    }
+
+    public Boolean getBreakerEnabled() {
+        return breakerEnabled;
+    }
+
+    public void setBreakerEnabled(Boolean breakerEnabled) {
+        this.breakerEnabled = breakerEnabled;
+    }
+
+    public Integer getBreakerWindowSeconds() {
+        return breakerWindowSeconds;
+    }
+
+    public void setBreakerWindowSeconds(Integer breakerWindowSeconds) {
+        this.breakerWindowSeconds = breakerWindowSeconds;
+    }
+
+    public Integer getBreakerMinCalls() {
+        return breakerMinCalls;
+    }
+
+    public void setBreakerMinCalls(Integer breakerMinCalls) {
+        this.breakerMinCalls = breakerMinCalls;
+    }
+
+    public Double getBreakerErrorRate() {
+        return breakerErrorRate;
+    }
+
+    public void setBreakerErrorRate(Double breakerErrorRate) {
+        this.breakerErrorRate = breakerErrorRate;
+    }
+
+    public Long getBreakerSlowCallMillis() {
+        return breakerSlowCallMillis;
+    }
+
+    public void setBreakerSlowCallMillis(Long breakerSlowCallMillis) {
+        this.breakerSlowCallMillis = breakerSlowCallMillis;
+    }
+
+    public Double getBreakerSlowCallRate() {
+        return breakerSlowCallRate;
+    }
+
+    public void setBreakerSlowCallRate(Double breakerSlowCallRate) {
+        this.breakerSlowCallRate = breakerSlowCallRate;
+    }
+
+    public Long getBreakerOpenMillis() {
+        return breakerOpenMillis;
+    }
+
+    public void setBreakerOpenMillis(Long breakerOpenMillis) {
+        this.breakerOpenMillis = breakerOpenMillis;
+    }
+
+    public Integer getBreakerProbeCalls() {
+        return breakerProbeCalls;
+    }
+
+    public void setBreakerProbeCalls(Integer breakerProbeCalls) {
+        this.breakerProbeCalls = breakerProbeCalls;
+    }
+
+    public String getBreakerDegradePolicy() {
+        return breakerDegradePolicy;
+    }
+
+    public void setBreakerDegradePolicy(String breakerDegradePolicy) {
+        this.breakerDegradePolicy = breakerDegradePolicy;
+    }
+
+    public String getBreakerDomainPolicies() {
+        return breakerDomainPolicies;
+    }
+
+    public void setBreakerDomainPolicies(String breakerDomainPolicies) {
+        this.breakerDomainPolicies = breakerDomainPolicies;
+    }
+
+    public Boolean getLimiterEnabled() {
+        return limiterEnabled;
+    }
+
+    public void setLimiterEnabled(Boolean limiterEnabled) {
+        this.limiterEnabled = limiterEnabled;
+    }
+
+    public Integer getLimiterInitialLimit() {
+        return limiterInitialLimit;
+    }
+
+    public void setLimiterInitialLimit(Integer limiterInitialLimit) {
+        this.limiterInitialLimit = limiterInitialLimit;
+    }
+
+    public Integer getLimiterMinLimit() {
+        return limiterMinLimit;
+    }
+
+    public void setLimiterMinLimit(Integer limiterMinLimit) {
+        this.limiterMinLimit = limiterMinLimit;
+    }
+
+    public Integer getLimiterMaxLimit() {
+        return limiterMaxLimit;
+    }
+
+    public void setLimiterMaxLimit(Integer limiterMaxLimit) {
+        this.limiterMaxLimit = limiterMaxLimit;
+    }
+
+    public Double getLimiterSmoothing() {
+        return limiterSmoothing;
+    }
+
+    public void setLimiterSmoothing(Double limiterSmoothing) {
+        this.limiterSmoothing = limiterSmoothing;
+    }
+
+    public Double getLimiterTolerance() {
+        return limiterTolerance;
+    }
+
+    public void setLimiterTolerance(Double limiterTolerance) {
+        this.limiterTolerance = limiterTolerance;
+    }
+
+    public String getReplayAllowedPackages() {
+        return replayAllowedPackages;
+    }
+
+    public void setReplayAllowedPackages(String replayAllowedPackages) {
+        this.replayAllowedPackages = replayAllowedPackages;
+    }
+
+    public String getStripeDomains() {
+        return stripeDomains;
+    }
+
+    public void setStripeDomains(String stripeDomains) {
+        this.stripeDomains = stripeDomains;
+    }
+
+    public Integer getIdNodeId() {
+        return idNodeId;
+    }
+
+    public void setIdNodeId(Integer idNodeId) {
+        this.idNodeId = idNodeId;
+    }
+
+    public Double getEventSampleRate() {
+        return eventSampleRate;
+    }
+
+    public void setEventSampleRate(Double eventSampleRate) {
+        this.eventSampleRate = eventSampleRate;
+    }
+
+    public String getEventLevel() {
+        return eventLevel;
+    }
+
+    public void setEventLevel(String eventLevel) {
+        this.eventLevel = eventLevel;
+    }
+
+    public String getEventDomainLevels() {
+        return eventDomainLevels;
+    }
+
+    public void setEventDomainLevels(String eventDomainLevels) {
+        this.eventDomainLevels = eventDomainLevels;
+    }
+
+    /**
+     * 解析锁分片的redis集群名称
+     *
+     * @return redis集群名称，未配置分片时为空
+     */
+    public List<String> parseShardGroups() {
+        List<String> groups = new ArrayList<>();
+        if (StringUtils.isBlank(shardGroups)) {
+            return groups;
+        }
+        for (String group : shardGroups.split(StringConst.COMMA)) {
+            if (StringUtils.isNotBlank(group) && !groups.contains(group.trim())) {
+                groups.add(group.trim());
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 解析幂等结果回放允许反序列化的业务包
+     *
+     * @return 业务包前缀
+     */
+    public List<String> parseReplayAllowedPackages() {
+        List<String> packages = new ArrayList<>();
+        if (StringUtils.isBlank(replayAllowedPackages)) {
+            return packages;
+        }
+        for (String pkg : replayAllowedPackages.split(StringConst.COMMA)) {
+            if (StringUtils.isNotBlank(pkg)) {
+                packages.add(pkg.trim());
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * 解析按domain配置的降级策略
+     *
+     * @return key:业务领域，value:降级策略
+     */
+    public Map<String, DegradePolicyEnum> parseBreakerDomainPolicies() {
+        Map<String, DegradePolicyEnum> policies = new HashMap<>();
+        if (StringUtils.isBlank(breakerDomainPolicies)) {
+            return policies;
+        }
+        for (String item : breakerDomainPolicies.split(StringConst.COMMA)) {
+            String[] pair = item.split(":");
+            DegradePolicyEnum policy = pair.length == 2 ? DegradePolicyEnum.getEnumByName(pair[1]) : null;
+            if (Objects.nonNull(policy)) {
+                policies.put(pair[0].trim(), policy);
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * 解析按domain配置的锁事件日志级别
+     *
+     * @return key:业务领域，value:日志级别
+     */
+    public Map<String, LockEventLevelEnum> parseEventDomainLevels() {
+        Map<String, LockEventLevelEnum> levels = new HashMap<>();
+        if (StringUtils.isBlank(eventDomainLevels)) {
+            return levels;
+        }
+        for (String item : eventDomainLevels.split(StringConst.COMMA)) {
+            String[] pair = item.split(":");
+            LockEventLevelEnum level = pair.length == 2 ? LockEventLevelEnum.getEnumByName(pair[1]) : null;
+            if (Objects.nonNull(level)) {
+                levels.put(pair[0].trim(), level);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * 解析按domain配置的锁分段数
+     *
+     * @return key:业务领域，value:分段数
+     */
+    public Map<String, Integer> parseStripeDomains() {
+        Map<String, Integer> stripes = new HashMap<>();
+        if (StringUtils.isBlank(stripeDomains)) {
+            return stripes;
+        }
+        for (String item : stripeDomains.split(StringConst.COMMA)) {
+            String[] pair = item.split(":");
+            if (pair.length == 2 && StringUtils.isNumeric(pair[1].trim())) {
+                stripes.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+            }
+        }
+        return stripes;
+    }
 }
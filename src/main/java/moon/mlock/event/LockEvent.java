@@ -0,0 +1,78 @@
+package moon.mlock.event;
+
+import moon.mlock.common.enums.LockEventTypeEnum;
+
+/**
+ * 锁事件
+ * <p>
+ * 事件对象在环形缓冲区中预分配并循环复用，发布事件只写字段，不创建新对象
+ *
+ * @author moon
+ */
+class LockEvent {
+
+    /**
+     * 槽位序号，等于当前事件的发布序号时表示事件已写完，可被消费
+     */
+    volatile long sequence;
+
+    /**
+     * 事件类型
+     */
+    LockEventTypeEnum type;
+
+    /**
+     * 业务领域
+     */
+    String domain;
+
+    /**
+     * 锁key
+     */
+    String key;
+
+    /**
+     * 锁名称或锁id
+     */
+    String name;
+
+    /**
+     * 方法名称
+     */
+    String method;
+
+    /**
+     * 结果
+     */
+    boolean result;
+
+    /**
+     * 数量
+     */
+    int size;
+
+    /**
+     * 数量
+     */
+    int count;
+
+    /**
+     * 发生时间，单位ms
+     */
+    long timestamp;
+
+    LockEvent(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * 清空引用，避免缓冲区长期持有业务对象
+     */
+    void clear() {
+        this.type = null;
+        this.domain = null;
+        this.key = null;
+        this.name = null;
+        this.method = null;
+    }
+}
@@ -0,0 +1,297 @@
+package moon.mlock.event;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.LockEventLevelEnum;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.policy.LockPolicies;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步锁事件日志
+ * <p>
+ * 加锁路径上只做采样判断并把事件写入预分配的无锁环形缓冲区，由后台线程批量格式化并写日志，
+ * 加锁耗时不再受日志appender影响。缓冲区写满时直接丢弃事件而不阻塞，丢弃数量由后台线程定期输出
+ * <p>
+ * 每个domain可单独配置日志级别（不记录/按采样率记录/全部记录），未配置的domain使用默认级别
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockEventLogger {
+
+    /**
+     * 环形缓冲区大小，必须是2的幂
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int MASK = BUFFER_SIZE - 1;
+
+    /**
+     * 后台线程单批最多处理的事件数量
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * 后台线程空闲时的休眠时间，单位ns
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 丢弃数量的输出间隔，单位ms
+     */
+    private static final long DROP_REPORT_INTERVAL_MILLIS = 10000L;
+
+    /**
+     * 采样率精度
+     */
+    private static final int SAMPLE_SCALE = 1000000;
+
+    private static final LockEvent[] RING = new LockEvent[BUFFER_SIZE];
+
+    /**
+     * 下一个待发布的序号
+     */
+    private static final AtomicLong PRODUCER_SEQUENCE = new AtomicLong();
+
+    /**
+     * 下一个待消费的序号
+     */
+    private static final AtomicLong CONSUMER_SEQUENCE = new AtomicLong();
+
+    /**
+     * 缓冲区满时丢弃的事件数量
+     */
+    private static final LongAdder DROPPED = new LongAdder();
+
+    /**
+     * 采样阈值，取值 [0, SAMPLE_SCALE]
+     */
+    private static volatile int sampleThreshold = SAMPLE_SCALE;
+
+    /**
+     * 未单独配置的domain使用的日志级别
+     */
+    private static volatile LockEventLevelEnum defaultLevel = LockEventLevelEnum.SAMPLED;
+
+    /**
+     * key:业务领域，value:日志级别
+     */
+    private static volatile Map<String, LockEventLevelEnum> domainLevels = ImmutableMap.of();
+
+    static {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            RING[i] = new LockEvent(-1L);
+        }
+        Thread consumer = new Thread(LockEventLogger::consume, "mlock-event-logger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    private LockEventLogger() {
+    }
+
+    /**
+     * 配置采样率和日志级别
+     *
+     * @param sampleRate   采样率，取值 [0, 1]，只对SAMPLED级别生效
+     * @param defaultLevel 未单独配置的domain使用的日志级别
+     * @param domainLevels key:业务领域，value:日志级别
+     */
+    public static void configure(double sampleRate, LockEventLevelEnum defaultLevel, Map<String, LockEventLevelEnum> domainLevels) {
+        double rate = Math.max(0D, Math.min(1D, sampleRate));
+        LockEventLogger.sampleThreshold = (int) (rate * SAMPLE_SCALE);
+        LockEventLogger.defaultLevel = Objects.isNull(defaultLevel) ? LockEventLevelEnum.SAMPLED : defaultLevel;
+        LockEventLogger.domainLevels = ImmutableMap.copyOf(domainLevels);
+    }
+
+    /**
+     * 发布锁事件
+     *
+     * @param type   事件类型
+     * @param domain 业务领域
+     * @param key    锁key
+     * @param name   锁名称或锁id
+     * @param method 方法名称
+     * @param result 结果
+     */
+    public static void publish(LockEventTypeEnum type, String domain, String key, String name, String method, boolean result) {
+        publish(type, domain, key, name, method, result, 0, 0);
+    }
+
+    /**
+     * 发布锁事件
+     *
+     * @param type   事件类型
+     * @param domain 业务领域
+     * @param key    锁key
+     * @param name   锁名称或锁id
+     * @param method 方法名称
+     * @param result 结果
+     * @param size   数量
+     * @param count  数量
+     */
+    public static void publish(LockEventTypeEnum type, String domain, String key, String name, String method,
+                               boolean result, int size, int count) {
+        if (!isSampled(domain) || !log.isInfoEnabled()) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = PRODUCER_SEQUENCE.get();
+            if (sequence - CONSUMER_SEQUENCE.get() >= BUFFER_SIZE) {
+                // 缓冲区已满，丢弃事件，不阻塞加锁路径
+                DROPPED.increment();
+                return;
+            }
+        } while (!PRODUCER_SEQUENCE.compareAndSet(sequence, sequence + 1));
+
+        LockEvent event = RING[(int) sequence & MASK];
+        event.type = type;
+        event.domain = domain;
+        event.key = key;
+        event.name = name;
+        event.method = method;
+        event.result = result;
+        event.size = size;
+        event.count = count;
+        event.timestamp = System.currentTimeMillis();
+        // volatile写，发布事件
+        event.sequence = sequence;
+    }
+
+    /**
+     * 缓冲区满时丢弃的事件总数
+     *
+     * @return 丢弃的事件总数
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * 判断事件是否需要记录
+     *
+     * @param domain 业务领域
+     * @return true：需要记录
+     */
+    private static boolean isSampled(String domain) {
+        // 运行时策略优先
+        LockEventLevelEnum level = LockPolicies.get(domain).getEventLevel();
+        if (Objects.isNull(level) && Objects.nonNull(domain)) {
+            level = domainLevels.get(domain);
+        }
+        if (Objects.isNull(level)) {
+            level = defaultLevel;
+        }
+        switch (level) {
+            case ALL:
+                return true;
+            case SAMPLED:
+                int threshold = sampleThreshold;
+                return threshold >= SAMPLE_SCALE
+                        || (threshold > 0 && ThreadLocalRandom.current().nextInt(SAMPLE_SCALE) < threshold);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 后台线程，批量消费事件
+     */
+    private static void consume() {
+        long lastDropReport = System.currentTimeMillis();
+        long reportedDropped = 0L;
+        while (true) {
+            try {
+                int drained = drain();
+                long now = System.currentTimeMillis();
+                if (now - lastDropReport >= DROP_REPORT_INTERVAL_MILLIS) {
+                    long dropped = DROPPED.sum();
+                    if (dropped > reportedDropped) {
+                        log.warn("LockEventLogger dropped {} events in last {}ms", dropped - reportedDropped, now - lastDropReport);
+                        reportedDropped = dropped;
+                    }
+                    lastDropReport = now;
+                }
+                if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (Throwable e) {
+                log.error("LockEventLogger consume ex:", e);
+            }
+        }
+    }
+
+    /**
+     * 消费一批已发布的事件
+     *
+     * @return 本批消费的事件数量
+     */
+    private static int drain() {
+        long sequence = CONSUMER_SEQUENCE.get();
+        int drained = 0;
+        while (drained < BATCH_SIZE) {
+            LockEvent event = RING[(int) sequence & MASK];
+            if (event.sequence != sequence) {
+                // 尚未发布
+                break;
+            }
+            try {
+                write(event);
+            } finally {
+                event.clear();
+                sequence++;
+                drained++;
+                CONSUMER_SEQUENCE.lazySet(sequence);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * 格式化并输出事件
+     *
+     * @param e 事件
+     */
+    private static void write(LockEvent e) {
+        switch (e.type) {
+            case TRY_LOCK:
+                log.info("ReentrantRedisLock tryLock result={}, id={}, domain={}, key={}, at={}", e.result, e.name, e.domain, e.key, e.timestamp);
+                break;
+            case REENTRY:
+                log.info("是否重入={}, key={}, holderKey={}, at={}", e.result, e.key, e.name, e.timestamp);
+                break;
+            case UNLOCK:
+                log.info("domain={},key={},id={},unlock success, at={}", e.domain, e.key, e.name, e.timestamp);
+                break;
+            case CHECK:
+                log.info("checkLock: domain={},key={},id={},checkLockResult={}, at={}", e.domain, e.key, e.name, e.result, e.timestamp);
+                break;
+            case LOCK_ASPECT:
+                log.info("domain={} lockKey={} lockName={} lockResult={} methodName={} at={}", e.domain, e.key, e.name, e.result, e.method, e.timestamp);
+                break;
+            case CHECK_LOCK_ASPECT:
+                log.info("checkLock domain={} lockKey={} lockName={} methodName={} check={} at={}", e.domain, e.key, e.name, e.method, e.result, e.timestamp);
+                break;
+            case IDEMPOTENT_ASPECT:
+                log.info("tryRedisIdempotent domain={} key={} result={} methodName={} at={}", e.domain, e.key, e.result, e.method, e.timestamp);
+                break;
+            case IDEMPOTENT_REPLAY:
+                log.info("idempotent replay domain={} key={} methodName={} at={}", e.domain, e.key, e.method, e.timestamp);
+                break;
+            case IDEMPOTENT_BATCH:
+                log.info("tryRedisIdempotentBatch domain={} size={} newSize={} methodName={} at={}", e.domain, e.size, e.count, e.method, e.timestamp);
+                break;
+            default:
+                log.info("lock event type={} domain={} key={} at={}", e.type, e.domain, e.key, e.timestamp);
+        }
+    }
+}
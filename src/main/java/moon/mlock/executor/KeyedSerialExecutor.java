@@ -0,0 +1,473 @@
+package moon.mlock.executor;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.enums.DegradePolicyEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.common.exception.GetLockException;
+import moon.mlock.common.exception.LockBackendUnavailableException;
+import moon.mlock.policy.LockPolicies;
+import moon.mlock.proxy.RedisLockProxy;
+import moon.mlock.stripe.LockStripes;
+import moon.mlock.task.RedisLockKeyRenewTask;
+import moon.mlock.utils.OwnerIdUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 按key串行执行的执行器
+ * <p>
+ * "对实体X的更新串行化"这类场景，同一节点内按key排队执行比加锁更便宜：
+ * <ul>
+ *     <li>相同key的任务按提交顺序依次执行，不同key的任务在有界线程池中并行执行</li>
+ *     <li>提交任务不阻塞，不占用等待锁的线程；每个key同一时刻最多占用一个工作线程，
+ *     单次最多连续执行 {@link #DEFAULT_BATCH_SIZE} 个任务后让出线程，避免热点key饿死其他key</li>
+ *     <li>可选的分布式租约：key的队列从空变为非空时加redis锁，队列清空时解锁，期间由续约任务续期，
+ *     一批任务只访问一次redis，热点key的吞吐不再受每个任务一次加解锁的限制</li>
+ *     <li>租约只尝试一次，不在工作线程中等待：被占用时让出工作线程，间隔重试时间后重新调度，直到等待时间结束</li>
+ * </ul>
+ * 租约加锁失败（超过等待时间或熔断策略为fail）时，当前排队的任务以 {@link GetLockException} 异常结束；
+ * 熔断策略为本地锁或无锁时跳过租约，只保证本节点内串行
+ *
+ * @author moon
+ */
+@Slf4j
+public class KeyedSerialExecutor implements AutoCloseable {
+
+    /**
+     * 单个key单次最多连续执行的任务数量
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * 租约默认等待时间，单位ms
+     */
+    public static final long DEFAULT_LEASE_WAIT_MILLIS = 1000L;
+
+    /**
+     * 租约被占用时默认的重试间隔，单位ms，运行时策略配置了重试间隔时优先使用策略
+     */
+    public static final long DEFAULT_LEASE_RETRY_MILLIS = 100L;
+
+    /**
+     * 租约重试的延时调度线程，所有执行器共用，只负责把队列重新提交到工作线程池
+     */
+    private static final ScheduledExecutorService LEASE_RETRY_SCHEDULER = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("mlock-serial-lease-retry-%d").setDaemon(true).build());
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * 工作线程池
+     */
+    private final Executor workers;
+
+    /**
+     * 是否由本执行器创建工作线程池，关闭时一并关闭
+     */
+    private final boolean ownWorkers;
+
+    /**
+     * redis锁代理，不使用分布式租约时为null
+     */
+    private final RedisLockProxy proxy;
+
+    /**
+     * 租约等待时间，单位ms，运行时策略配置了等待时间时优先使用策略
+     */
+    private final long leaseWaitMillis;
+
+    /**
+     * key:业务key，value:该key的任务队列，队列清空后移除
+     */
+    private final Map<String, KeyQueue> queues = Maps.newConcurrentMap();
+
+    /**
+     * 只在本节点内串行，不使用分布式租约
+     *
+     * @param domain  业务领域
+     * @param threads 工作线程数
+     */
+    public KeyedSerialExecutor(String domain, int threads) {
+        this(domain, threads, null, DEFAULT_LEASE_WAIT_MILLIS);
+    }
+
+    /**
+     * 本节点内串行，队列非空期间持有key的分布式租约
+     *
+     * @param domain          业务领域
+     * @param threads         工作线程数
+     * @param proxy           redis锁代理，为null时不使用分布式租约
+     * @param leaseWaitMillis 租约等待时间，单位ms
+     */
+    public KeyedSerialExecutor(String domain, int threads, RedisLockProxy proxy, long leaseWaitMillis) {
+        this(domain, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder().setNameFormat("mlock-serial-" + domain + "-%d").setDaemon(true).build()),
+                true, proxy, leaseWaitMillis);
+    }
+
+    /**
+     * 使用外部线程池，关闭执行器时不关闭该线程池
+     *
+     * @param domain          业务领域
+     * @param workers         工作线程池
+     * @param proxy           redis锁代理，为null时不使用分布式租约
+     * @param leaseWaitMillis 租约等待时间，单位ms
+     */
+    public KeyedSerialExecutor(String domain, Executor workers, RedisLockProxy proxy, long leaseWaitMillis) {
+        this(domain, workers, false, proxy, leaseWaitMillis);
+    }
+
+    private KeyedSerialExecutor(String domain, Executor workers, boolean ownWorkers, RedisLockProxy proxy, long leaseWaitMillis) {
+        this.domain = domain;
+        this.workers = workers;
+        this.ownWorkers = ownWorkers;
+        this.proxy = proxy;
+        this.leaseWaitMillis = leaseWaitMillis;
+    }
+
+    /**
+     * 提交有返回值的任务
+     *
+     * @param key  业务key，相同key的任务串行执行
+     * @param task 任务
+     * @param <T>  返回值类型
+     * @return 任务结果，任务异常或租约加锁失败时异常结束
+     */
+    public <T> CompletableFuture<T> submit(String key, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        enqueue(key, new Task(future, () -> future.complete(task.get())));
+        return future;
+    }
+
+    /**
+     * 提交无返回值的任务
+     *
+     * @param key  业务key，相同key的任务串行执行
+     * @param task 任务
+     * @return 任务完成时结束，任务异常或租约加锁失败时异常结束
+     */
+    public CompletableFuture<Void> execute(String key, Runnable task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        enqueue(key, new Task(future, () -> {
+            task.run();
+            future.complete(null);
+        }));
+        return future;
+    }
+
+    /**
+     * 有排队或正在执行任务的key数量
+     *
+     * @return key数量
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    /**
+     * 关闭执行器，只关闭本执行器创建的线程池，已提交的任务继续执行
+     */
+    @Override
+    public void close() {
+        if (ownWorkers) {
+            ((ExecutorService) workers).shutdown();
+        }
+    }
+
+    /**
+     * 任务入队，队列从空变为非空时调度一次执行
+     *
+     * @param key  业务key
+     * @param task 任务
+     */
+    private void enqueue(String key, Task task) {
+        boolean[] schedule = new boolean[1];
+        KeyQueue queue = queues.compute(key, (k, q) -> {
+            KeyQueue current = Objects.isNull(q) ? new KeyQueue(k) : q;
+            current.tasks.add(task);
+            if (!current.scheduled) {
+                current.scheduled = true;
+                schedule[0] = true;
+            }
+            return current;
+        });
+        if (schedule[0]) {
+            schedule(queue);
+        }
+    }
+
+    private void schedule(KeyQueue queue) {
+        try {
+            workers.execute(() -> drain(queue));
+        } catch (RuntimeException e) {
+            log.error("KeyedSerialExecutor domain={} key={} schedule ex:", domain, queue.key, e);
+            releaseLease(queue);
+            do {
+                failAll(queue, e);
+            } while (!finish(queue));
+        }
+    }
+
+    /**
+     * 在工作线程中执行一批任务，执行后队列仍有任务时重新调度，队列清空时释放租约并移除队列
+     * <p>
+     * 租约被占用时不执行任务，队列保持已调度状态，间隔重试时间后重新调度
+     *
+     * @param queue 任务队列
+     */
+    private void drain(KeyQueue queue) {
+        LeaseResult lease = LeaseResult.FAILED;
+        try {
+            lease = acquireLease(queue);
+            if (lease == LeaseResult.ACQUIRED) {
+                for (int i = 0; i < DEFAULT_BATCH_SIZE; i++) {
+                    Task task = queue.tasks.poll();
+                    if (Objects.isNull(task)) {
+                        break;
+                    }
+                    task.run();
+                }
+            } else if (lease == LeaseResult.FAILED) {
+                failAll(queue, new GetLockException("KeyedSerialExecutor 获取租约失败，domain=" + domain + ", key=" + queue.key));
+            }
+        } finally {
+            if (lease == LeaseResult.BUSY) {
+                retryLater(queue);
+            } else {
+                if (queue.tasks.isEmpty()) {
+                    releaseLease(queue);
+                }
+                if (!finish(queue)) {
+                    schedule(queue);
+                }
+            }
+        }
+    }
+
+    /**
+     * 间隔重试时间后重新调度，不占用工作线程等待
+     *
+     * @param queue 任务队列
+     */
+    private void retryLater(KeyQueue queue) {
+        long retryMillis = LockPolicies.get(domain).retryMillis(DEFAULT_LEASE_RETRY_MILLIS);
+        try {
+            LEASE_RETRY_SCHEDULER.schedule(() -> schedule(queue), retryMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.error("KeyedSerialExecutor domain={} key={} schedule lease retry ex:", domain, queue.key, e);
+            queue.leaseDeadlineNanos = 0L;
+            do {
+                failAll(queue, e);
+            } while (!finish(queue));
+        }
+    }
+
+    /**
+     * 结束一次调度：队列已空时移除队列
+     *
+     * @param queue 任务队列
+     * @return true：队列已空并已移除
+     */
+    private boolean finish(KeyQueue queue) {
+        boolean[] removed = new boolean[1];
+        queues.compute(queue.key, (k, q) -> {
+            if (q.tasks.isEmpty()) {
+                q.scheduled = false;
+                removed[0] = true;
+                return null;
+            }
+            return q;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 尝试一次分布式租约，不等待，已持有或不使用租约时直接返回成功
+     * <p>
+     * 首次被占用时按等待时间记录截止时间，截止前被占用返回 {@link LeaseResult#BUSY}，之后返回 {@link LeaseResult#FAILED}
+     *
+     * @param queue 任务队列
+     * @return 租约结果
+     */
+    private LeaseResult acquireLease(KeyQueue queue) {
+        if (Objects.isNull(proxy) || Objects.nonNull(queue.leaseValue)) {
+            return LeaseResult.ACQUIRED;
+        }
+        DegradePolicyEnum degradePolicy = proxy.getDegradePolicy(domain);
+        if (Objects.nonNull(degradePolicy)) {
+            return degrade(queue, degradePolicy);
+        }
+        String key = KeyLayout.lockKey(domain, queue.key);
+        // 与LockFactory一致：开启分段的domain按分段key加锁，value带有业务key的hash
+        String lockKey = LockStripes.stripeKey(domain, key);
+        String ownerId = LockStripes.isStriped(domain)
+                ? LockStripes.stripeValue(OwnerIdUtils.nextId(), key)
+                : OwnerIdUtils.nextId();
+        String value;
+        try {
+            value = proxy.tryRedisLock(domain, LockTypeEnum.LOCK_REDIS, lockKey, ownerId, 0L, TimeUnit.MILLISECONDS);
+        } catch (LockBackendUnavailableException e) {
+            // 判断降级后探测名额被其他请求占满
+            return degrade(queue, proxy.getConfiguredDegradePolicy(domain));
+        } catch (RuntimeException e) {
+            log.error("KeyedSerialExecutor domain={} key={} acquire lease ex:", domain, queue.key, e);
+            queue.leaseDeadlineNanos = 0L;
+            return LeaseResult.FAILED;
+        }
+        if (Objects.isNull(value)) {
+            long now = System.nanoTime();
+            if (queue.leaseDeadlineNanos == 0L) {
+                long wait = LockPolicies.get(domain).waitMillis(leaseWaitMillis);
+                queue.leaseDeadlineNanos = now + TimeUnit.MILLISECONDS.toNanos(wait);
+            }
+            if (now - queue.leaseDeadlineNanos < 0) {
+                return LeaseResult.BUSY;
+            }
+            queue.leaseDeadlineNanos = 0L;
+            return LeaseResult.FAILED;
+        }
+        queue.leaseDeadlineNanos = 0L;
+        queue.leaseKey = lockKey;
+        queue.leaseValue = value;
+        RedisLockKeyRenewTask.putLockKey(domain, LockTypeEnum.LOCK_REDIS, lockKey, value);
+        return LeaseResult.ACQUIRED;
+    }
+
+    /**
+     * 熔断时按降级策略处理租约，本地锁和无锁策略只保证本节点内串行
+     *
+     * @param queue         任务队列
+     * @param degradePolicy 降级策略
+     * @return 租约结果
+     */
+    private LeaseResult degrade(KeyQueue queue, DegradePolicyEnum degradePolicy) {
+        queue.leaseDeadlineNanos = 0L;
+        return degradePolicy != DegradePolicyEnum.FAIL ? LeaseResult.ACQUIRED : LeaseResult.FAILED;
+    }
+
+    private void releaseLease(KeyQueue queue) {
+        String value = queue.leaseValue;
+        if (Objects.isNull(value)) {
+            return;
+        }
+        queue.leaseValue = null;
+        RedisLockKeyRenewTask.removeLockKey(queue.leaseKey);
+        try {
+            proxy.unlock(queue.leaseKey, value);
+        } catch (RuntimeException e) {
+            // 解锁失败时租约会在过期后自动释放
+            log.error("KeyedSerialExecutor domain={} key={} release lease ex:", domain, queue.key, e);
+        }
+    }
+
+    private void failAll(KeyQueue queue, Throwable e) {
+        Task task;
+        while (Objects.nonNull(task = queue.tasks.poll())) {
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 单个key的任务队列
+     * <p>
+     * 入队和移除队列在 {@link Map#compute} 中完成，出队只由当前调度的工作线程执行
+     */
+    private static class KeyQueue {
+
+        /**
+         * 业务key
+         */
+        private final String key;
+
+        /**
+         * 待执行任务
+         */
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 是否已调度执行，只在compute中读写
+         */
+        private boolean scheduled;
+
+        /**
+         * 租约的redis锁key，只由当前调度的工作线程读写
+         */
+        private String leaseKey;
+
+        /**
+         * 租约的redis锁value，未持有租约时为null，只由当前调度的工作线程读写
+         */
+        private String leaseValue;
+
+        /**
+         * 租约等待的截止时间（System.nanoTime），未在等待时为0，只由当前调度的工作线程读写
+         */
+        private long leaseDeadlineNanos;
+
+        private KeyQueue(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 租约结果
+     */
+    private enum LeaseResult {
+
+        /**
+         * 已持有租约或不需要租约，可以执行任务
+         */
+        ACQUIRED,
+
+        /**
+         * 租约被占用，还未到等待截止时间，稍后重试
+         */
+        BUSY,
+
+        /**
+         * 租约加锁失败，排队的任务以异常结束
+         */
+        FAILED
+    }
+
+    /**
+     * 任务，执行异常时以异常结束future，不影响同一key的后续任务
+     */
+    private static class Task {
+
+        private final CompletableFuture<?> future;
+
+        private final Runnable body;
+
+        private Task(CompletableFuture<?> future, Runnable body) {
+            this.future = future;
+            this.body = body;
+        }
+
+        private void run() {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -1,12 +1,25 @@
 package moon.mlock.factory;
 
+import moon.mlock.common.enums.DegradePolicyEnum;
 import moon.mlock.common.enums.LockTypeEnum;
 import moon.mlock.common.exception.GetLockException;
 import moon.mlock.config.LockProperties;
 import moon.mlock.lock.ILock;
+import moon.mlock.lock.impl.DegradableRedisLock;
+import moon.mlock.lock.impl.LocalLock;
+import moon.mlock.lock.impl.MultiRedisLock;
 import moon.mlock.lock.impl.NoLock;
+import moon.mlock.lock.impl.OrderedMultiLock;
 import moon.mlock.lock.impl.ReentrantRedisLock;
+import moon.mlock.proxy.RedisLockProxy;
+import moon.mlock.stripe.LockStripes;
+import moon.mlock.utils.OwnerIdUtils;
+import moon.mlock.utils.SpringUtils;
+import org.springframework.context.ApplicationContext;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -21,6 +34,11 @@ public class LockFactory {
      */
     private static LockProperties lockProperties;
 
+    /**
+     * 缓存的redis锁代理，只在首次使用或Spring上下文变化时从容器中获取
+     */
+    private static volatile CachedProxy cachedProxy;
+
     private LockFactory(LockProperties lockProperties) {
         initLockProperties(lockProperties);
     }
@@ -35,7 +53,7 @@ public class LockFactory {
     }
 
     /**
-     * 根据lockType 获取锁，可根据配置中心进行锁降级
+     * 根据lockType 获取锁，redis锁熔断时按domain的降级策略降级为本地锁或无锁，强制redis锁不降级，熔断时快速失败
      * 优先级  无锁 > 强制redis锁 > redis锁
      *
      * @param lockType 锁类型
@@ -47,11 +65,16 @@ public class LockFactory {
         ILock lock;
         switch (lockType) {
             case LOCK_NOTHING:
-                lock = new NoLock();
+                lock = NoLock.INSTANCE;
                 break;
             case LOCK_REDIS:
+                lock = getRedisLock(domain, key);
+                break;
             case LOCK_REDIS_FORCE:
-                lock = new ReentrantRedisLock(domain, key);
+                lock = newRedisLock(getRedisLockProxy(), lockType, domain, key);
+                break;
+            case LOCK_LOCAL:
+                lock = new LocalLock(domain, key);
                 break;
             default:
                 lock = null;
@@ -61,4 +84,179 @@ public class LockFactory {
         }
         return lock;
     }
+
+    /**
+     * 根据lockType 获取多key锁，全部加锁成功或全部失败
+     * <p>
+     * redis锁一次批量加锁；本地锁按keys的顺序逐个加锁。keys必须已排序去重，保证所有调用方加锁顺序一致
+     *
+     * @param lockType 锁类型
+     * @param domain   业务领域
+     * @param keys     local key列表，已排序去重
+     * @return 获取锁
+     */
+    public static ILock getLock(LockTypeEnum lockType, String domain, List<String> keys) throws GetLockException {
+        if (keys.isEmpty()) {
+            return NoLock.INSTANCE;
+        }
+        if (keys.size() == 1) {
+            return getLock(lockType, domain, keys.get(0));
+        }
+        switch (lockType) {
+            case LOCK_NOTHING:
+                return NoLock.INSTANCE;
+            case LOCK_REDIS:
+                return getMultiRedisLock(domain, keys);
+            case LOCK_REDIS_FORCE:
+                return newMultiRedisLock(getRedisLockProxy(), lockType, domain, keys);
+            case LOCK_LOCAL:
+                return getMultiLocalLock(domain, keys);
+            default:
+                throw new GetLockException("DLockFactory getLock 获取锁失败");
+        }
+    }
+
+    /**
+     * 获取多key redis锁，熔断时按降级策略降级
+     *
+     * @param domain 业务领域
+     * @param keys   local key列表
+     * @return 锁
+     */
+    private static ILock getMultiRedisLock(String domain, List<String> keys) {
+        RedisLockProxy proxy = getRedisLockProxy();
+        DegradePolicyEnum policy = proxy.getDegradePolicy(domain);
+        if (policy == DegradePolicyEnum.LOCAL) {
+            return getMultiLocalLock(domain, keys);
+        }
+        if (policy == DegradePolicyEnum.NOTHING) {
+            return NoLock.INSTANCE;
+        }
+        return degradable(proxy, domain, keys, newMultiRedisLock(proxy, LockTypeEnum.LOCK_REDIS, domain, keys));
+    }
+
+    /**
+     * 创建多key redis锁，开启分段的domain按分段key加锁，多个key落在同一分段时只加锁一次
+     *
+     * @param proxy    redis锁代理
+     * @param lockType 锁类型
+     * @param domain   业务领域
+     * @param keys     local key列表
+     * @return 锁
+     */
+    private static ILock newMultiRedisLock(RedisLockProxy proxy, LockTypeEnum lockType, String domain, List<String> keys) {
+        if (!LockStripes.isStriped(domain)) {
+            return new MultiRedisLock(proxy, lockType, domain, keys);
+        }
+        List<String> stripeKeys = LockStripes.stripeKeys(domain, keys);
+        // 多个业务key的锁value无法带上单个业务key的hash，不区分真实争用和伪共享
+        return stripeKeys.size() == 1
+                ? new ReentrantRedisLock(proxy, lockType, domain, stripeKeys.get(0))
+                : new MultiRedisLock(proxy, lockType, domain, stripeKeys);
+    }
+
+    private static ILock getMultiLocalLock(String domain, List<String> keys) {
+        List<ILock> locks = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            locks.add(new LocalLock(domain, key));
+        }
+        return new OrderedMultiLock(locks);
+    }
+
+    /**
+     * 获取redis锁，熔断时按降级策略降级
+     *
+     * @param domain 业务领域
+     * @param key    local key
+     * @return 锁
+     */
+    private static ILock getRedisLock(String domain, String key) {
+        RedisLockProxy proxy = getRedisLockProxy();
+        DegradePolicyEnum policy = proxy.getDegradePolicy(domain);
+        if (policy == DegradePolicyEnum.LOCAL) {
+            return new LocalLock(domain, key);
+        }
+        if (policy == DegradePolicyEnum.NOTHING) {
+            return NoLock.INSTANCE;
+        }
+        return degradable(proxy, domain, Collections.singletonList(key), newRedisLock(proxy, LockTypeEnum.LOCK_REDIS, domain, key));
+    }
+
+    /**
+     * 开启熔断时包装redis锁：加锁时后端已熔断（如半开的探测名额被并发请求抢光）按domain的降级策略处理，见 {@link DegradableRedisLock}
+     * <p>
+     * 降级策略为本地锁的domain，redis锁同时持有每个key的本地锁：先加本地锁再加redis锁，释放时顺序相反。
+     * 熔断打开或半开时，同一个key上降级后的本地锁和仍在访问后端的redis锁可能同时存在，共用本地锁才能在本节点内互斥
+     *
+     * @param proxy     redis锁代理
+     * @param domain    业务领域
+     * @param keys      local key列表，已排序去重
+     * @param redisLock redis锁
+     * @return 锁
+     */
+    private static ILock degradable(RedisLockProxy proxy, String domain, List<String> keys, ILock redisLock) {
+        DegradePolicyEnum policy = proxy.getConfiguredDegradePolicy(domain);
+        if (Objects.isNull(policy)) {
+            return redisLock;
+        }
+        ILock lock = new DegradableRedisLock(redisLock, domain, policy);
+        if (policy != DegradePolicyEnum.LOCAL) {
+            return lock;
+        }
+        List<ILock> locks = new ArrayList<>(keys.size() + 1);
+        for (String key : keys) {
+            locks.add(new LocalLock(domain, key));
+        }
+        locks.add(lock);
+        return new OrderedMultiLock(locks);
+    }
+
+    /**
+     * 创建redis锁，开启分段的domain按分段key加锁，锁value带有业务key的hash
+     *
+     * @param proxy    redis锁代理
+     * @param lockType 锁类型
+     * @param domain   业务领域
+     * @param key      local key
+     * @return 锁
+     */
+    private static ILock newRedisLock(RedisLockProxy proxy, LockTypeEnum lockType, String domain, String key) {
+        if (!LockStripes.isStriped(domain)) {
+            return new ReentrantRedisLock(proxy, lockType, domain, key);
+        }
+        return new ReentrantRedisLock(proxy, lockType, domain, LockStripes.stripeKey(domain, key),
+                LockStripes.stripeValue(OwnerIdUtils.nextId(), key));
+    }
+
+    /**
+     * 获取redis锁代理，每个Spring上下文只查找一次bean
+     *
+     * @return redis锁代理
+     */
+    public static RedisLockProxy getRedisLockProxy() {
+        ApplicationContext context = SpringUtils.getApplicationContext();
+        CachedProxy cached = cachedProxy;
+        if (Objects.isNull(cached) || cached.context != context) {
+            cached = new CachedProxy(context, context.getBean(RedisLockProxy.class));
+            cachedProxy = cached;
+        }
+        return cached.proxy;
+    }
+
+    private static class CachedProxy {
+        /**
+         * 获取代理时的Spring上下文
+         */
+        private final ApplicationContext context;
+
+        /**
+         * redis锁代理
+         */
+        private final RedisLockProxy proxy;
+
+        private CachedProxy(ApplicationContext context, RedisLockProxy proxy) {
+            this.context = context;
+            this.proxy = proxy;
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package moon.mlock.flight;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 单飞调用组
+ * <p>
+ * 同一JVM内，相同key的并发调用只有第一个（leader）真正执行，其余调用（follower）挂在进行中的调用上，
+ * 共享leader的返回值或异常；leader执行结束后，后续的调用重新开始新的一轮
+ * <p>
+ * 同一线程重入相同key时直接执行，不等待自己，避免死锁
+ *
+ * @author moon
+ */
+public class SingleFlightGroup {
+
+    /**
+     * 进行中的调用
+     * <p>
+     * key:调用key，value:进行中的调用
+     */
+    private final Map<String, Call> calls = Maps.newConcurrentMap();
+
+    /**
+     * 执行调用，相同key的并发调用共享同一次执行结果
+     *
+     * @param key        调用key
+     * @param invocation 实际调用
+     * @return 调用结果
+     * @throws Throwable 调用异常，follower抛出的是leader的异常
+     */
+    public Object execute(String key, Invocation invocation) throws Throwable {
+        Call call = new Call(Thread.currentThread());
+        Call inFlight = calls.putIfAbsent(key, call);
+        if (Objects.nonNull(inFlight)) {
+            if (inFlight.leader == Thread.currentThread()) {
+                // 重入
+                return invocation.invoke();
+            }
+            return inFlight.await();
+        }
+        try {
+            call.result = invocation.invoke();
+            return call.result;
+        } catch (Throwable e) {
+            call.error = e;
+            throw e;
+        } finally {
+            calls.remove(key, call);
+            call.latch.countDown();
+        }
+    }
+
+    /**
+     * 当前进行中的调用数量
+     *
+     * @return 进行中的调用数量
+     */
+    public int inFlightSize() {
+        return calls.size();
+    }
+
+    /**
+     * 实际调用
+     */
+    @FunctionalInterface
+    public interface Invocation {
+        /**
+         * 执行调用
+         *
+         * @return 调用结果
+         * @throws Throwable 调用异常
+         */
+        Object invoke() throws Throwable;
+    }
+
+    private static class Call {
+        /**
+         * 执行调用的线程
+         */
+        private final Thread leader;
+
+        /**
+         * 调用完成信号
+         */
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * 调用结果，latch释放后可见
+         */
+        private Object result;
+
+        /**
+         * 调用异常，latch释放后可见
+         */
+        private Throwable error;
+
+        private Call(Thread leader) {
+            this.leader = leader;
+        }
+
+        private Object await() throws Throwable {
+            latch.await();
+            if (Objects.nonNull(error)) {
+                throw error;
+            }
+            return result;
+        }
+    }
+}
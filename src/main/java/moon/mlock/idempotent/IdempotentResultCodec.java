@@ -0,0 +1,215 @@
+package moon.mlock.idempotent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 幂等结果编解码
+ * <p>
+ * 结果回放模式下，幂等key的value记录首次调用的状态：
+ * <ul>
+ *     <li>PROCESSING：{@link #PROCESSING}，首次调用正在执行</li>
+ *     <li>DONE：{@link #DONE_PREFIX} + Base64(JDK序列化结果)，首次调用已完成，结果为null时序列化部分为空</li>
+ *     <li>UNREPLAYABLE：{@link #UNREPLAYABLE}，首次调用已完成，但结果无法序列化，重复请求按普通幂等处理</li>
+ * </ul>
+ * 结果从redis读取后反序列化，为避免反序列化利用链，只允许白名单内的类：JDK的 {@link #DEFAULT_ALLOWED_PREFIXES}
+ * 和通过 {@code mlock.idempotent.replay-allowed-packages} 配置的业务包前缀，其他类（包括动态代理）解码时抛出
+ * {@link InvalidClassException}，编码时顶层类不在白名单内的结果直接记为不可回放
+ *
+ * @author moon
+ */
+@Slf4j
+public class IdempotentResultCodec {
+
+    /**
+     * 执行中
+     */
+    public static final String PROCESSING = "P_";
+
+    /**
+     * 已完成前缀
+     */
+    public static final String DONE_PREFIX = "D_";
+
+    /**
+     * 已完成，结果不可回放
+     */
+    public static final String UNREPLAYABLE = "U_";
+
+    /**
+     * 默认允许反序列化的JDK包
+     */
+    public static final List<String> DEFAULT_ALLOWED_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+            "java.lang.", "java.util.", "java.math.", "java.time."));
+
+    /**
+     * 白名单包内仍然禁止的类，反射和方法句柄可被用于构造利用链
+     */
+    private static final List<String> DENIED_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+            "java.lang.reflect.", "java.lang.invoke.", "java.util.logging."));
+
+    /**
+     * 允许反序列化的类名前缀，JDK包 + 业务包
+     */
+    private static volatile List<String> allowedPrefixes = DEFAULT_ALLOWED_PREFIXES;
+
+    private IdempotentResultCodec() {
+    }
+
+    /**
+     * 配置允许回放的业务包或类
+     *
+     * @param packages 业务包或类名，如 com.example.order.dto、com.example.order.OrderResult
+     */
+    public static void configure(Collection<String> packages) {
+        List<String> prefixes = new ArrayList<>(DEFAULT_ALLOWED_PREFIXES);
+        for (String pkg : packages) {
+            String name = pkg.endsWith(".") ? pkg.substring(0, pkg.length() - 1) : pkg;
+            // 包下的类、类本身及其内部类
+            prefixes.add(name + ".");
+            prefixes.add(name + "$");
+            prefixes.add(name);
+        }
+        allowedPrefixes = Collections.unmodifiableList(prefixes);
+    }
+
+    /**
+     * 类是否允许反序列化，数组按元素类型判断，基本类型总是允许
+     *
+     * @param className 类名，数组为 [Lxxx; 形式
+     * @return true：允许
+     */
+    public static boolean isAllowed(String className) {
+        String name = className;
+        int dims = 0;
+        while (dims < name.length() && name.charAt(dims) == '[') {
+            dims++;
+        }
+        if (dims > 0) {
+            if (name.length() == dims + 1) {
+                // 基本类型数组
+                return true;
+            }
+            name = name.substring(dims + 1, name.length() - 1);
+        }
+        for (String denied : DENIED_PREFIXES) {
+            if (name.startsWith(denied)) {
+                return false;
+            }
+        }
+        for (String allowed : allowedPrefixes) {
+            if (allowed.endsWith(".") || allowed.endsWith("$") ? name.startsWith(allowed) : name.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否执行中
+     *
+     * @param value 幂等key的value
+     * @return true：执行中
+     */
+    public static boolean isProcessing(String value) {
+        return PROCESSING.equals(value);
+    }
+
+    /**
+     * 是否已完成且可回放
+     *
+     * @param value 幂等key的value
+     * @return true：已完成且可回放
+     */
+    public static boolean isDone(String value) {
+        return Objects.nonNull(value) && value.startsWith(DONE_PREFIX);
+    }
+
+    /**
+     * 编码首次调用的结果
+     *
+     * @param result 方法返回值
+     * @return 已完成状态的value，结果无法序列化时返回 {@link #UNREPLAYABLE}
+     */
+    public static String encode(Object result) {
+        if (Objects.isNull(result)) {
+            return DONE_PREFIX;
+        }
+        if (!(result instanceof Serializable)) {
+            log.warn("IdempotentResultCodec result not serializable, class={}", result.getClass().getName());
+            return UNREPLAYABLE;
+        }
+        if (!isAllowed(result.getClass().getName())) {
+            log.warn("IdempotentResultCodec result class not allowed, configure mlock.idempotent.replay-allowed-packages, class={}",
+                    result.getClass().getName());
+            return UNREPLAYABLE;
+        }
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(result);
+            oos.flush();
+            return DONE_PREFIX + Base64.getEncoder().encodeToString(bos.toByteArray());
+        } catch (IOException e) {
+            log.warn("IdempotentResultCodec encode ex, class={}", result.getClass().getName(), e);
+            return UNREPLAYABLE;
+        }
+    }
+
+    /**
+     * 解码已完成状态的value
+     *
+     * @param value 已完成状态的value
+     * @return 首次调用的结果
+     * @throws IOException            反序列化异常，结果中含有白名单外的类时为 {@link InvalidClassException}
+     * @throws ClassNotFoundException 结果类不存在
+     */
+    public static Object decode(String value) throws IOException, ClassNotFoundException {
+        String data = value.substring(DONE_PREFIX.length());
+        if (data.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = Base64.getDecoder().decode(data);
+        try (ObjectInputStream ois = new AllowListObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * 只解析白名单内类的ObjectInputStream，在加载类之前检查，不会触发白名单外类的初始化
+     */
+    private static class AllowListObjectInputStream extends ObjectInputStream {
+
+        private AllowListObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "not allowed to replay");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("proxy", "not allowed to replay");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package moon.mlock.idempotent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地幂等预过滤器
+ * <p>
+ * 记录本节点已经在redis中成功标记过的幂等key及其过期时间，同一节点上的重复请求（如客户端重试风暴）
+ * 可在访问redis之前直接被拒绝；首次出现的key仍需要redis确认，因此本地过滤只会减少redis调用，不会放过重复请求
+ * <p>
+ * 使用容量有界的LRU缓存实现，超出容量时淘汰最久未访问的key，被淘汰的key会回退到redis判断
+ *
+ * @author moon
+ */
+public class LocalIdempotentFilter {
+
+    /**
+     * 默认最大缓存key数量
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 100000L;
+
+    /**
+     * key:幂等key，value:过期时间点（System.nanoTime）
+     */
+    private final Cache<String, Long> markedKeys;
+
+    public LocalIdempotentFilter() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public LocalIdempotentFilter(long maximumSize) {
+        this.markedKeys = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
+    /**
+     * 判断key是否已被本节点标记且仍在有效期内
+     *
+     * @param key 幂等key
+     * @return true：本节点已标记（重复请求），false：未知，需要redis确认
+     */
+    public boolean isMarked(String key) {
+        Long expireAt = markedKeys.getIfPresent(key);
+        if (Objects.isNull(expireAt)) {
+            return false;
+        }
+        if (expireAt - System.nanoTime() > 0) {
+            return true;
+        }
+        // 已过期，只删除仍是该过期时间的记录，避免误删其他线程刚写入的新标记
+        markedKeys.asMap().remove(key, expireAt);
+        return false;
+    }
+
+    /**
+     * 记录本节点已在redis中成功标记的key
+     *
+     * @param key 幂等key
+     * @param ttl 幂等保留时长，单位s
+     */
+    public void mark(String key, long ttl) {
+        markedKeys.put(key, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl));
+    }
+
+    /**
+     * 移除本地标记，与redis中的幂等key释放保持一致
+     *
+     * @param key 幂等key
+     */
+    public void remove(String key) {
+        markedKeys.invalidate(key);
+    }
+}
@@ -0,0 +1,41 @@
+package moon.mlock.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 加锁事件
+ *
+ * @author moon
+ */
+@Name("moon.mlock.LockAcquire")
+@Label("Lock Acquire")
+@Category({"mlock"})
+@Description("Distributed lock acquisition")
+@StackTrace(true)
+class LockAcquireEvent extends Event {
+
+    @Label("Domain")
+    String domain;
+
+    @Label("Key Hash")
+    int keyHash;
+
+    @Label("Lock Type")
+    String lockType;
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long waitTime;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Success")
+    boolean success;
+}
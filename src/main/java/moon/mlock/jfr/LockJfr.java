@@ -0,0 +1,98 @@
+package moon.mlock.jfr;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JFR锁事件入口
+ * <p>
+ * 提供 moon.mlock.LockAcquire、LockRelease、LockRenew、LockWait 四个自定义事件，事件携带domain和key的哈希值，不记录key原文。
+ * 事件未在JFR配置中开启时，每次调用只有一次事件开关判断；运行环境不支持JFR（如低版本JDK8）时所有方法退化为空操作，
+ * 本类不直接引用 jdk.jfr 中的类型，避免在不支持JFR的环境中加载失败
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockJfr {
+
+    /**
+     * 运行环境是否支持JFR
+     */
+    private static final boolean AVAILABLE = isJfrAvailable();
+
+    private LockJfr() {
+    }
+
+    /**
+     * 提交加锁事件
+     *
+     * @param domain    业务领域
+     * @param key       锁key
+     * @param lockType  锁类型
+     * @param waitNanos 加锁耗时，单位ns
+     * @param attempts  尝试次数
+     * @param success   加锁结果
+     */
+    public static void acquire(String domain, String key, LockTypeEnum lockType, long waitNanos, int attempts, boolean success) {
+        if (AVAILABLE) {
+            LockJfrEvents.acquire(domain, key, lockType, waitNanos, attempts, success);
+        }
+    }
+
+    /**
+     * 提交释放锁事件
+     *
+     * @param domain    业务领域
+     * @param key       锁key
+     * @param lockType  锁类型
+     * @param holdNanos 锁持有时长，单位ns
+     */
+    public static void release(String domain, String key, LockTypeEnum lockType, long holdNanos) {
+        if (AVAILABLE) {
+            LockJfrEvents.release(domain, key, lockType, holdNanos);
+        }
+    }
+
+    /**
+     * 提交续约事件
+     *
+     * @param domain     业务领域
+     * @param key        锁key
+     * @param lockType   锁类型
+     * @param renewNanos 续约耗时，单位ns
+     * @param success    续约结果
+     */
+    public static void renew(String domain, String key, LockTypeEnum lockType, long renewNanos, boolean success) {
+        if (AVAILABLE) {
+            LockJfrEvents.renew(domain, key, lockType, renewNanos, success);
+        }
+    }
+
+    /**
+     * 加锁重试前休眠，并以等待锁事件记录休眠区间，使锁等待在JFR中不再只显示为 LockSupport.parkNanos
+     *
+     * @param domain    业务领域
+     * @param key       锁key
+     * @param attempt   已尝试次数
+     * @param parkNanos 休眠时长，单位ns
+     */
+    public static void park(String domain, String key, int attempt, long parkNanos) {
+        if (AVAILABLE) {
+            LockJfrEvents.park(domain, key, attempt, parkNanos);
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable e) {
+            log.info("JFR is not available, mlock JFR events disabled");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package moon.mlock.jfr;
+
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JFR锁事件提交
+ * <p>
+ * 只在运行环境支持JFR时由 {@link LockJfr} 调用
+ *
+ * @author moon
+ */
+class LockJfrEvents {
+
+    private LockJfrEvents() {
+    }
+
+    static void acquire(String domain, String key, LockTypeEnum lockType, long waitNanos, int attempts, boolean success) {
+        LockAcquireEvent event = new LockAcquireEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.domain = domain;
+        event.keyHash = key.hashCode();
+        event.lockType = lockType.getName();
+        event.waitTime = waitNanos;
+        event.attempts = attempts;
+        event.success = success;
+        event.commit();
+    }
+
+    static void release(String domain, String key, LockTypeEnum lockType, long holdNanos) {
+        LockReleaseEvent event = new LockReleaseEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.domain = domain;
+        event.keyHash = key.hashCode();
+        event.lockType = lockType.getName();
+        event.holdTime = holdNanos;
+        event.commit();
+    }
+
+    static void renew(String domain, String key, LockTypeEnum lockType, long renewNanos, boolean success) {
+        LockRenewEvent event = new LockRenewEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.domain = domain;
+        event.keyHash = key.hashCode();
+        event.lockType = lockType.getName();
+        event.renewTime = renewNanos;
+        event.success = success;
+        event.commit();
+    }
+
+    static void park(String domain, String key, int attempt, long parkNanos) {
+        LockWaitEvent event = new LockWaitEvent();
+        if (!event.isEnabled()) {
+            LockSupport.parkNanos(parkNanos);
+            return;
+        }
+        event.begin();
+        LockSupport.parkNanos(parkNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.domain = domain;
+            event.keyHash = key.hashCode();
+            event.attempt = attempt;
+            event.parkTime = parkNanos;
+            event.commit();
+        }
+    }
+}
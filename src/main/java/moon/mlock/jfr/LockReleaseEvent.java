@@ -0,0 +1,35 @@
+package moon.mlock.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 释放锁事件
+ *
+ * @author moon
+ */
+@Name("moon.mlock.LockRelease")
+@Label("Lock Release")
+@Category({"mlock"})
+@Description("Distributed lock release")
+@StackTrace(false)
+class LockReleaseEvent extends Event {
+
+    @Label("Domain")
+    String domain;
+
+    @Label("Key Hash")
+    int keyHash;
+
+    @Label("Lock Type")
+    String lockType;
+
+    @Label("Hold Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long holdTime;
+}
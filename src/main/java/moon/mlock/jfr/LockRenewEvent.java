@@ -0,0 +1,38 @@
+package moon.mlock.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 续约事件
+ *
+ * @author moon
+ */
+@Name("moon.mlock.LockRenew")
+@Label("Lock Renew")
+@Category({"mlock"})
+@Description("Distributed lock lease renewal")
+@StackTrace(false)
+class LockRenewEvent extends Event {
+
+    @Label("Domain")
+    String domain;
+
+    @Label("Key Hash")
+    int keyHash;
+
+    @Label("Lock Type")
+    String lockType;
+
+    @Label("Renew Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long renewTime;
+
+    @Label("Success")
+    boolean success;
+}
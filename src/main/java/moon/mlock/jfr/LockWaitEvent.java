@@ -0,0 +1,35 @@
+package moon.mlock.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 等待锁事件，对应加锁重试之间的休眠
+ *
+ * @author moon
+ */
+@Name("moon.mlock.LockWait")
+@Label("Lock Wait")
+@Category({"mlock"})
+@Description("Parked between distributed lock acquisition attempts")
+@StackTrace(true)
+class LockWaitEvent extends Event {
+
+    @Label("Domain")
+    String domain;
+
+    @Label("Key Hash")
+    int keyHash;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Park Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parkTime;
+}
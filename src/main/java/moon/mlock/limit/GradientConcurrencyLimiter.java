@@ -0,0 +1,189 @@
+package moon.mlock.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于耗时梯度的自适应并发限制
+ * <p>
+ * 同时维护两个加锁耗时的指数移动平均：长期平均 longRtt 反映正常水平，短期平均 shortRtt 反映当前水平。
+ * 每个样本按梯度 gradient = clamp(tolerance * longRtt / shortRtt, 0.5, 1) 调整并发上限：
+ * <pre>
+ * newLimit = limit * gradient + sqrt(limit)
+ * limit = limit * (1 - smoothing) + newLimit * smoothing
+ * </pre>
+ * 耗时正常时梯度为1，上限每次增加约 sqrt(limit)；热点key导致等待变长时梯度下降，上限迅速收缩。
+ * 并发数远低于上限时不调整上限，避免空闲时上限无限增长。长期平均随短期平均缓慢漂移，适应新的正常水平；耗时回落时长期平均加速下降
+ * <p>
+ * 样本更新使用tryLock，竞争时丢弃样本，不阻塞调用线程
+ *
+ * @author moon
+ */
+public class GradientConcurrencyLimiter {
+
+    /**
+     * 短期平均的样本窗口
+     */
+    private static final int SHORT_WINDOW = 10;
+
+    /**
+     * 长期平均的样本窗口
+     */
+    private static final int LONG_WINDOW = 500;
+
+    /**
+     * 最小梯度，单个样本最多把上限降低一半
+     */
+    private static final double MIN_GRADIENT = 0.5D;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * 平滑系数，取值 (0, 1]
+     */
+    private final double smoothing;
+
+    /**
+     * 耗时容忍度，短期耗时不超过长期耗时的 tolerance 倍时视为正常
+     */
+    private final double tolerance;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * 被拒绝的请求数量
+     */
+    private final LongAdder shed = new LongAdder();
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    /**
+     * 当前并发上限，只在updateLock内修改
+     */
+    private volatile double limit;
+
+    private double shortRttNanos;
+
+    private double longRttNanos;
+
+    /**
+     * @param initialLimit 初始并发上限
+     * @param minLimit     最小并发上限
+     * @param maxLimit     最大并发上限
+     * @param smoothing    平滑系数，取值 (0, 1]
+     * @param tolerance    耗时容忍度，不小于1
+     */
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.smoothing = Math.max(0.01D, Math.min(1D, smoothing));
+        this.tolerance = Math.max(1D, tolerance);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * 尝试占用一个并发名额
+     *
+     * @return true：占用成功，结束后必须调用 {@link #release(long, boolean)}；false：超过上限，请求被拒绝
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= (int) limit) {
+                shed.increment();
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * 释放并发名额
+     *
+     * @param elapsedNanos 本次加锁耗时，单位ns
+     * @param sample       是否作为样本调整上限，异常时不作为样本
+     */
+    public void release(long elapsedNanos, boolean sample) {
+        int current = inflight.getAndDecrement();
+        if (sample && elapsedNanos > 0 && updateLock.tryLock()) {
+            try {
+                update(elapsedNanos, current);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    private void update(long rttNanos, int inflightAtSample) {
+        if (longRttNanos == 0D) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+        longRttNanos += (shortRttNanos - longRttNanos) / LONG_WINDOW;
+        if (longRttNanos / shortRttNanos > 2D) {
+            // 耗时回落，长期平均加速下降
+            longRttNanos *= 0.95D;
+        }
+        double current = limit;
+        if (inflightAtSample < current / 2) {
+            // 并发远低于上限，样本不能说明上限是否足够
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1D, tolerance * longRttNanos / shortRttNanos));
+        double newLimit = current * gradient + Math.sqrt(current);
+        newLimit = current * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return 并发上限
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 当前并发数
+     *
+     * @return 并发数
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 被拒绝的请求总数
+     *
+     * @return 被拒绝的请求总数
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * 短期平均耗时，单位μs
+     *
+     * @return 短期平均耗时
+     */
+    public long getShortRttMicros() {
+        return TimeUnit.NANOSECONDS.toMicros((long) shortRttNanos);
+    }
+
+    /**
+     * 长期平均耗时，单位μs
+     *
+     * @return 长期平均耗时
+     */
+    public long getLongRttMicros() {
+        return TimeUnit.NANOSECONDS.toMicros((long) longRttNanos);
+    }
+}
@@ -0,0 +1,96 @@
+package moon.mlock.limit;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 锁等待并发限制入口
+ * <p>
+ * 热点key上大量线程在 RedisLockProxy#tryRedisLock 中休眠重试，占用业务线程和redis。开启后每个domain一个
+ * {@link GradientConcurrencyLimiter}，根据加锁耗时自适应调整同时等待锁的线程数上限，超过上限的请求立即按加锁失败处理
+ * （切面按注解配置抛出ex），不再进入等待
+ *
+ * @author moon
+ */
+public class LockWaitLimiters {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    public static final int DEFAULT_MIN_LIMIT = 2;
+
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    public static final double DEFAULT_SMOOTHING = 0.2D;
+
+    public static final double DEFAULT_TOLERANCE = 2D;
+
+    /**
+     * key:业务领域，value:并发限制
+     */
+    private static final Map<String, GradientConcurrencyLimiter> LIMITERS = Maps.newConcurrentMap();
+
+    private static volatile boolean enabled;
+
+    private static volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+    private static volatile int minLimit = DEFAULT_MIN_LIMIT;
+
+    private static volatile int maxLimit = DEFAULT_MAX_LIMIT;
+
+    private static volatile double smoothing = DEFAULT_SMOOTHING;
+
+    private static volatile double tolerance = DEFAULT_TOLERANCE;
+
+    private LockWaitLimiters() {
+    }
+
+    /**
+     * 配置并发限制，已创建的限制器会被清除
+     *
+     * @param enabled      是否开启
+     * @param initialLimit 初始并发上限
+     * @param minLimit     最小并发上限
+     * @param maxLimit     最大并发上限
+     * @param smoothing    平滑系数
+     * @param tolerance    耗时容忍度
+     */
+    public static void configure(boolean enabled, int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance) {
+        LockWaitLimiters.initialLimit = initialLimit;
+        LockWaitLimiters.minLimit = minLimit;
+        LockWaitLimiters.maxLimit = maxLimit;
+        LockWaitLimiters.smoothing = smoothing;
+        LockWaitLimiters.tolerance = tolerance;
+        LockWaitLimiters.enabled = enabled;
+        LIMITERS.clear();
+    }
+
+    /**
+     * 获取业务领域的并发限制
+     *
+     * @param domain 业务领域
+     * @return 并发限制，未开启时为null
+     */
+    public static GradientConcurrencyLimiter get(String domain) {
+        if (!enabled) {
+            return null;
+        }
+        GradientConcurrencyLimiter limiter = LIMITERS.get(domain);
+        if (Objects.isNull(limiter)) {
+            limiter = LIMITERS.computeIfAbsent(domain,
+                    d -> new GradientConcurrencyLimiter(initialLimit, minLimit, maxLimit, smoothing, tolerance));
+        }
+        return limiter;
+    }
+
+    /**
+     * 所有业务领域的并发限制
+     *
+     * @return key:业务领域，value:并发限制
+     */
+    public static Map<String, GradientConcurrencyLimiter> getLimiters() {
+        return ImmutableMap.copyOf(LIMITERS);
+    }
+}
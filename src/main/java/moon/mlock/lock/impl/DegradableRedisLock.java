@@ -0,0 +1,106 @@
+package moon.mlock.lock.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.DegradePolicyEnum;
+import moon.mlock.common.exception.LockBackendUnavailableException;
+import moon.mlock.lock.ILock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可降级的redis锁
+ * <p>
+ * 熔断器半开时，降级判断只查看是否还有探测名额，名额在访问后端时才占用，并发请求抢光名额后加锁会收到
+ * {@link LockBackendUnavailableException}。非强制redis锁此时按domain的降级策略处理，而不是失败：
+ * <ul>
+ *     <li>LOCAL：视为加锁成功，由外层已持有的本地锁保证本节点内互斥，见 LockFactory#withLocalLock</li>
+ *     <li>NOTHING：视为加锁成功，不加锁</li>
+ *     <li>FAIL：抛出异常</li>
+ * </ul>
+ *
+ * @author moon
+ */
+@Slf4j
+public class DegradableRedisLock implements ILock {
+
+    /**
+     * redis锁
+     */
+    private final ILock redisLock;
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * domain配置的降级策略
+     */
+    private final DegradePolicyEnum degradePolicy;
+
+    /**
+     * 本次加锁是否已降级
+     */
+    private boolean degraded;
+
+    public DegradableRedisLock(ILock redisLock, String domain, DegradePolicyEnum degradePolicy) {
+        this.redisLock = redisLock;
+        this.domain = domain;
+        this.degradePolicy = degradePolicy;
+    }
+
+    /**
+     * 尝试加锁，后端熔断时按降级策略处理
+     *
+     * @param time 超时时间
+     * @param unit 超时时间单位
+     * @return 加锁结果， true=成功 false=失败
+     * @throws InterruptedException 中断异常
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (degraded) {
+            return true;
+        }
+        try {
+            return redisLock.tryLock(time, unit);
+        } catch (LockBackendUnavailableException e) {
+            if (degradePolicy != DegradePolicyEnum.LOCAL && degradePolicy != DegradePolicyEnum.NOTHING) {
+                throw e;
+            }
+            log.warn("DegradableRedisLock domain={} backend unavailable, degrade to {}", domain, degradePolicy.getName());
+            degraded = true;
+            return true;
+        }
+    }
+
+    /**
+     * 解锁，已降级时无需访问后端
+     */
+    @Override
+    public void unlock() {
+        if (degraded) {
+            degraded = false;
+            return;
+        }
+        redisLock.unlock();
+    }
+
+    /**
+     * 检查锁
+     *
+     * @return 检查锁结果，true=成功，也就是锁没有被其他占有，false=失败
+     */
+    @Override
+    public boolean checkLock() {
+        return redisLock.checkLock();
+    }
+
+    /**
+     * 关闭资源，在退出try -with-resources 块时自动调用
+     */
+    @Override
+    public void close() {
+        this.unlock();
+    }
+}
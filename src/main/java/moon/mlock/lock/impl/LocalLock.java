@@ -0,0 +1,157 @@
+package moon.mlock.lock.impl;
+
+import com.google.common.collect.Maps;
+import moon.mlock.common.enums.LockOutcomeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.lock.ILock;
+import moon.mlock.metrics.LockMetrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM本地锁
+ * <p>
+ * 同一节点内相同key互斥，可重入，不同节点之间不互斥。redis锁熔断时作为降级锁使用，保证单节点内不会并发执行。
+ * 没有线程持有或等待的key会从本地缓存中移除
+ *
+ * @author moon
+ */
+public class LocalLock implements ILock {
+
+    /**
+     * key:锁key，value:本地锁
+     */
+    private static final Map<String, LockEntry> LOCAL_LOCKS = Maps.newConcurrentMap();
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * 锁key
+     */
+    private final String key;
+
+    /**
+     * 当前实例引用的本地锁，加锁失败或解锁后为null
+     */
+    private LockEntry entry;
+
+    /**
+     * 加锁成功的时间点（System.nanoTime）
+     */
+    private long acquiredNanos;
+
+    public LocalLock(String domain, String key) {
+        this.domain = domain;
+        this.key = key;
+    }
+
+    /**
+     * 尝试加锁
+     *
+     * @param time 超时时间
+     * @param unit 超时时间单位
+     * @return 加锁结果， true=成功 false=失败
+     * @throws InterruptedException 中断异常
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (Objects.nonNull(entry)) {
+            // 同一实例重复加锁
+            return entry.lock.isHeldByCurrentThread();
+        }
+        long startNanos = System.nanoTime();
+        LockEntry lockEntry = retain(key);
+        boolean result = false;
+        try {
+            result = lockEntry.lock.tryLock(time, unit);
+        } finally {
+            if (!result) {
+                release(key);
+            }
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        LockMetrics.recordAcquire(domain, LockTypeEnum.LOCK_LOCAL, result ? LockOutcomeEnum.SUCCESS : LockOutcomeEnum.TIMEOUT, elapsed, 0);
+        if (result) {
+            entry = lockEntry;
+            acquiredNanos = System.nanoTime();
+        }
+        return result;
+    }
+
+    /**
+     * 解锁
+     */
+    @Override
+    public void unlock() {
+        LockEntry lockEntry = entry;
+        if (Objects.isNull(lockEntry) || !lockEntry.lock.isHeldByCurrentThread()) {
+            return;
+        }
+        entry = null;
+        lockEntry.lock.unlock();
+        release(key);
+        LockMetrics.recordRelease(domain, LockTypeEnum.LOCK_LOCAL, System.nanoTime() - acquiredNanos);
+    }
+
+    /**
+     * 检查锁，而不进行加锁操作，既无需解锁
+     *
+     * @return 检查锁结果，true=成功，也就是锁没有被其他占有，false=失败
+     */
+    @Override
+    public boolean checkLock() {
+        LockEntry lockEntry = LOCAL_LOCKS.get(key);
+        return Objects.isNull(lockEntry) || !lockEntry.lock.isLocked() || lockEntry.lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * 关闭资源，在退出try -with-resources 块时自动调用
+     */
+    @Override
+    public void close() {
+        this.unlock();
+    }
+
+    /**
+     * 当前缓存的本地锁数量
+     *
+     * @return 本地锁数量
+     */
+    public static int size() {
+        return LOCAL_LOCKS.size();
+    }
+
+    /**
+     * 引用key对应的本地锁，不存在时创建
+     */
+    private static LockEntry retain(String key) {
+        return LOCAL_LOCKS.compute(key, (k, e) -> {
+            LockEntry lockEntry = Objects.isNull(e) ? new LockEntry() : e;
+            lockEntry.refs++;
+            return lockEntry;
+        });
+    }
+
+    /**
+     * 释放引用，没有引用时移除
+     */
+    private static void release(String key) {
+        LOCAL_LOCKS.computeIfPresent(key, (k, e) -> --e.refs == 0 ? null : e);
+    }
+
+    private static class LockEntry {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * 持有或等待该锁的实例数量，只在compute中修改
+         */
+        private int refs;
+    }
+}
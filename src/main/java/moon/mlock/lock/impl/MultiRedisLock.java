@@ -0,0 +1,186 @@
+package moon.mlock.lock.impl;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.event.LockEventLogger;
+import moon.mlock.lock.ILock;
+import moon.mlock.metrics.LockMetrics;
+import moon.mlock.proxy.RedisLockProxy;
+import moon.mlock.registry.HeldLockInfo;
+import moon.mlock.task.RedisLockKeyRenewTask;
+import moon.mlock.utils.OwnerIdUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多key Redis分布式锁
+ * <p>
+ * 一次加锁多个key，全部成功或全部失败；单机redis或所有key在同一个slot时每次尝试只需一次脚本调用。
+ * keys必须已排序去重，所有节点以相同顺序加锁，不会互相等待形成死锁。
+ * 不可重入：同一线程已通过 {@link ReentrantRedisLock} 持有其中某个key时，本锁会加锁失败
+ *
+ * @author moon
+ */
+@Slf4j
+public class MultiRedisLock implements ILock {
+
+    /**
+     * 当前JVM持有的多key锁，key为锁id
+     */
+    private static final Map<String, MultiRedisLock> MULTI_LOCK_HOLDERS_MAP = Maps.newConcurrentMap();
+
+    /**
+     * redis lock 代理
+     */
+    private final RedisLockProxy proxy;
+
+    /**
+     * 锁类型
+     */
+    private final LockTypeEnum lockType;
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * redis锁的key列表，已排序去重
+     */
+    private final List<String> keys;
+
+    /**
+     * 锁id，即持有者id，同时作为所有key的redis锁value
+     */
+    private final String id;
+
+    /**
+     * 加锁结果
+     */
+    private boolean result;
+
+    /**
+     * 加锁成功的时间点（System.nanoTime）
+     */
+    private long acquiredNanos;
+
+    /**
+     * 加锁成功的时间点（System.currentTimeMillis）
+     */
+    private long acquiredMillis;
+
+    /**
+     * 持有锁的线程
+     */
+    private Thread thread;
+
+    public MultiRedisLock(RedisLockProxy proxy, LockTypeEnum lockType, String domain, List<String> keys) {
+        this.proxy = proxy;
+        this.lockType = lockType;
+        this.domain = domain;
+        this.keys = keys;
+        this.id = OwnerIdUtils.nextId();
+    }
+
+    /**
+     * 尝试加锁
+     *
+     * @param time 超时时间
+     * @param unit 超时时间单位
+     * @return 加锁结果， true=成功 false=失败
+     * @throws InterruptedException 中断异常
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (result) {
+            return true;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        result = proxy.tryRedisLockAll(domain, lockType, keys, id, time, unit) != null;
+        if (result) {
+            acquiredNanos = System.nanoTime();
+            acquiredMillis = System.currentTimeMillis();
+            thread = Thread.currentThread();
+            MULTI_LOCK_HOLDERS_MAP.put(id, this);
+            for (String key : keys) {
+                RedisLockKeyRenewTask.putLockKey(domain, lockType, key, id);
+            }
+        }
+        LockEventLogger.publish(LockEventTypeEnum.TRY_LOCK, domain, String.join(StringConst.COMMA, keys), id, null, result);
+        return result;
+    }
+
+    /**
+     * 解锁
+     */
+    @Override
+    public void unlock() {
+        if (!result) {
+            return;
+        }
+        result = false;
+        MULTI_LOCK_HOLDERS_MAP.remove(id);
+        try {
+            for (String key : keys) {
+                RedisLockKeyRenewTask.removeLockKey(key);
+            }
+            proxy.unlockAll(keys, id);
+            LockMetrics.recordRelease(domain, lockType, System.nanoTime() - acquiredNanos);
+            LockEventLogger.publish(LockEventTypeEnum.UNLOCK, domain, String.join(StringConst.COMMA, keys), id, null, true);
+        } catch (Exception e) {
+            log.error("domain={},keys={},id={},unlock ex:", domain, keys, id, e);
+        }
+    }
+
+    /**
+     * 检查锁，所有key都没有被占有时才检查通过
+     *
+     * @return 检查锁结果，true=成功，也就是锁没有被其他占有，false=失败
+     */
+    @Override
+    public boolean checkLock() {
+        try {
+            for (String key : keys) {
+                if (!proxy.checkRedisLock(key)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("checkLock Exception", e);
+            return false;
+        }
+    }
+
+    /**
+     * 当前JVM持有的多key锁，每个锁一条记录，key为逗号拼接的所有key，续约次数取第一个key
+     *
+     * @return 持有的锁
+     */
+    public static List<HeldLockInfo> getHeldLocks() {
+        long nowNanos = System.nanoTime();
+        List<HeldLockInfo> heldLocks = new ArrayList<>(MULTI_LOCK_HOLDERS_MAP.size());
+        for (MultiRedisLock lock : MULTI_LOCK_HOLDERS_MAP.values()) {
+            long ageMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - lock.acquiredNanos);
+            heldLocks.add(new HeldLockInfo(lock.domain, String.join(StringConst.COMMA, lock.keys), lock.lockType.getName(),
+                    lock.thread, lock.acquiredMillis, ageMillis, 1, RedisLockKeyRenewTask.getRenewCount(lock.keys.get(0))));
+        }
+        return heldLocks;
+    }
+
+    /**
+     * 关闭资源，在退出try -with-resources 块时自动调用
+     */
+    @Override
+    public void close() {
+        this.unlock();
+    }
+}
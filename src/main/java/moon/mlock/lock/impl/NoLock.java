@@ -11,6 +11,11 @@ import java.util.concurrent.TimeUnit;
  */
 public class NoLock implements ILock {
 
+    /**
+     * 无锁没有状态，可全局共用一个实例
+     */
+    public static final NoLock INSTANCE = new NoLock();
+
     /**
      * 尝试加锁，
      * 因为无锁，所以直接返回true，表示加锁成功
@@ -0,0 +1,95 @@
+package moon.mlock.lock.impl;
+
+import moon.mlock.lock.ILock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按顺序组合的多个锁
+ * <p>
+ * 按列表顺序逐个加锁，共用同一个等待时间，某个锁加锁失败时按相反顺序释放已加的锁，全部成功或全部失败。
+ * 调用方应按排序去重后的key创建子锁，保证加锁顺序一致，不会形成死锁。用于不支持批量加锁的锁类型，如 {@link LocalLock}
+ *
+ * @author moon
+ */
+public class OrderedMultiLock implements ILock {
+
+    /**
+     * 子锁，按加锁顺序排列
+     */
+    private final List<ILock> locks;
+
+    /**
+     * 已加锁成功的子锁数量
+     */
+    private int acquired;
+
+    public OrderedMultiLock(List<ILock> locks) {
+        this.locks = locks;
+    }
+
+    /**
+     * 尝试加锁
+     *
+     * @param time 超时时间
+     * @param unit 超时时间单位
+     * @return 加锁结果， true=成功 false=失败
+     * @throws InterruptedException 中断异常
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (acquired == locks.size()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        try {
+            while (acquired < locks.size()) {
+                long remaining = Math.max(0L, deadline - System.nanoTime());
+                if (!locks.get(acquired).tryLock(remaining, TimeUnit.NANOSECONDS)) {
+                    unlock();
+                    return false;
+                }
+                acquired++;
+            }
+            return true;
+        } catch (InterruptedException | RuntimeException e) {
+            unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * 按相反顺序释放已加的锁
+     */
+    @Override
+    public void unlock() {
+        while (acquired > 0) {
+            acquired--;
+            locks.get(acquired).unlock();
+        }
+    }
+
+    /**
+     * 检查锁，所有子锁都检查通过时才通过
+     *
+     * @return 检查锁结果，true=成功，也就是锁没有被其他占有，false=失败
+     */
+    @Override
+    public boolean checkLock() {
+        for (ILock lock : locks) {
+            if (!lock.checkLock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 关闭资源，在退出try -with-resources 块时自动调用
+     */
+    @Override
+    public void close() {
+        this.unlock();
+    }
+}
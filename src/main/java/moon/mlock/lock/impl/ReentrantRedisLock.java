@@ -2,14 +2,21 @@ package moon.mlock.lock.impl;
 
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
-import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.LockEventTypeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.event.LockEventLogger;
+import moon.mlock.factory.LockFactory;
+import moon.mlock.jfr.LockJfr;
 import moon.mlock.lock.ILock;
+import moon.mlock.metrics.LockMetrics;
 import moon.mlock.proxy.RedisLockProxy;
+import moon.mlock.registry.HeldLockInfo;
 import moon.mlock.task.RedisLockKeyRenewTask;
-import moon.mlock.utils.SpringUtils;
-import moon.mlock.utils.ThreadUtils;
-import moon.mlock.utils.UUIDUtils;
+import moon.mlock.utils.OwnerIdUtils;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +30,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 public class ReentrantRedisLock implements ILock {
 
+    /**
+     * key:redis锁的key，value:当前JVM中持有该锁的线程和计数
+     */
     private static final Map<String, LockHolder> REDIS_LOCK_HOLDERS_MAP = Maps.newConcurrentMap();
 
     /**
@@ -30,6 +40,11 @@ public class ReentrantRedisLock implements ILock {
      */
     private final RedisLockProxy proxy;
 
+    /**
+     * 锁类型
+     */
+    private final LockTypeEnum lockType;
+
     /**
      * 业务领域
      */
@@ -46,22 +61,38 @@ public class ReentrantRedisLock implements ILock {
     private Boolean result;
 
     /**
-     * 锁持有的key，格式：线程名称_锁key
-     */
-    private final String holderKey;
-
-    /**
-     * 锁id，使用UUID
+     * 锁id，即持有者id，同时作为redis锁的value
      */
     private final String id;
 
     public ReentrantRedisLock(String domain, String key) {
-        this.proxy = SpringUtils.getBean(RedisLockProxy.class);
+        this(LockTypeEnum.LOCK_REDIS, domain, key);
+    }
+
+    public ReentrantRedisLock(LockTypeEnum lockType, String domain, String key) {
+        this(LockFactory.getRedisLockProxy(), lockType, domain, key);
+    }
+
+    public ReentrantRedisLock(RedisLockProxy proxy, LockTypeEnum lockType, String domain, String key) {
+        this(proxy, lockType, domain, key, OwnerIdUtils.nextId());
+    }
+
+    /**
+     * 指定锁id，如分段锁在持有者id后追加业务key的hash
+     *
+     * @param proxy    redis lock 代理
+     * @param lockType 锁类型
+     * @param domain   业务领域
+     * @param key      redis锁的key
+     * @param id       锁id，同时作为redis锁的value，在所有节点中唯一
+     */
+    public ReentrantRedisLock(RedisLockProxy proxy, LockTypeEnum lockType, String domain, String key, String id) {
+        this.proxy = proxy;
+        this.lockType = lockType;
         this.domain = domain;
         this.key = key;
         this.result = false;
-        this.id = UUIDUtils.getUuid();
-        this.holderKey = ThreadUtils.getThreadName() + StringConst.UNDERLINE + this.key;
+        this.id = id;
     }
 
     /**
@@ -76,7 +107,7 @@ public class ReentrantRedisLock implements ILock {
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
         try {
             result = tryLockSelf(time, unit);
-            log.info("ReentrantRedisLock tryLock result={}, id={}, domain={}, key={}", result, id, domain, key);
+            LockEventLogger.publish(LockEventTypeEnum.TRY_LOCK, domain, key, id, null, result);
             return result;
         } catch (InterruptedException e) {
             log.error("ReentrantRedisLock tryLock ex:", e);
@@ -93,16 +124,19 @@ public class ReentrantRedisLock implements ILock {
             if (!result) {
                 return;
             }
-            LockHolder holder = REDIS_LOCK_HOLDERS_MAP.get(holderKey);
-            if (Objects.isNull(holder)) {
+            LockHolder holder = REDIS_LOCK_HOLDERS_MAP.get(key);
+            if (Objects.isNull(holder) || holder.thread != Thread.currentThread()) {
                 throw new IllegalMonitorStateException("没有持有锁：" + key);
             }
             int newCount = holder.count.decrementAndGet();
             if (newCount == 0) {
-                REDIS_LOCK_HOLDERS_MAP.remove(holderKey);
+                REDIS_LOCK_HOLDERS_MAP.remove(key, holder);
                 RedisLockKeyRenewTask.removeLockKey(key);
                 proxy.unlock(key, holder.value);
-                log.info("domain={},key={},id={},unlock success", domain, key, id);
+                long holdNanos = System.nanoTime() - holder.acquiredNanos;
+                LockMetrics.recordRelease(domain, lockType, holdNanos);
+                LockJfr.release(domain, key, lockType, holdNanos);
+                LockEventLogger.publish(LockEventTypeEnum.UNLOCK, domain, key, id, null, true);
             } else if (newCount < 0) {
                 throw new IllegalMonitorStateException("锁计数器为负: " + key);
             }
@@ -120,7 +154,7 @@ public class ReentrantRedisLock implements ILock {
     public boolean checkLock() {
         try {
             boolean check = proxy.checkRedisLock(key);
-            log.info("checkLock: domain={},key={},id={},checkLockResult={}", domain, key, id, check);
+            LockEventLogger.publish(LockEventTypeEnum.CHECK, domain, key, id, null, check);
             return check;
         } catch (Exception e) {
             log.error("checkLock Exception", e);
@@ -150,16 +184,16 @@ public class ReentrantRedisLock implements ILock {
             throw new InterruptedException();
         }
         boolean isReentrancy = isReentrancy();
-        log.info("是否重入={}, key={}, holderKey={}", isReentrancy, key, holderKey);
+        LockEventLogger.publish(LockEventTypeEnum.REENTRY, domain, key, id, null, isReentrancy);
         if (isReentrancy) {
             return true;
         }
-        // lockValue = key_系统纳秒数_本地机器ip
-        String lockValue = proxy.tryRedisLock(key, time, unit);
+        // lockValue = 持有者id
+        String lockValue = proxy.tryRedisLock(domain, lockType, key, id, time, unit);
         if (Objects.nonNull(lockValue)) {
-            LockHolder lockHolder = new LockHolder(lockValue);
-            REDIS_LOCK_HOLDERS_MAP.put(holderKey, lockHolder);
-            RedisLockKeyRenewTask.putLockKey(key, lockHolder.value);
+            LockHolder lockHolder = new LockHolder(lockType, domain, key, lockValue);
+            REDIS_LOCK_HOLDERS_MAP.put(key, lockHolder);
+            RedisLockKeyRenewTask.putLockKey(domain, lockType, key, lockHolder.value);
             return true;
         }
         return false;
@@ -167,33 +201,88 @@ public class ReentrantRedisLock implements ILock {
 
     /**
      * 检查是否重入
+     * <p>
+     * 同一个key在当前JVM中最多只有一个持有线程，其他线程不会在redis上加锁成功，因此按key查找后比较持有线程即可
      *
      * @return true：重入  false:非重入
      */
     private boolean isReentrancy() {
-        LockHolder lockHolder = REDIS_LOCK_HOLDERS_MAP.get(holderKey);
-        // 缓存中有holderKey对应的lockHolder，说明该线程的锁已经存在了，给锁计数器+1
-        if (Objects.nonNull(lockHolder)) {
+        LockHolder lockHolder = REDIS_LOCK_HOLDERS_MAP.get(key);
+        // 当前线程已持有该key的锁，给锁计数器+1
+        if (Objects.nonNull(lockHolder) && lockHolder.thread == Thread.currentThread()) {
             lockHolder.count.incrementAndGet();
             return true;
         }
         return false;
     }
 
+    /**
+     * 当前JVM持有的锁，按持有时长降序
+     *
+     * @return 持有的锁
+     */
+    public static List<HeldLockInfo> getHeldLocks() {
+        long nowNanos = System.nanoTime();
+        List<HeldLockInfo> heldLocks = new ArrayList<>(REDIS_LOCK_HOLDERS_MAP.size());
+        for (LockHolder holder : REDIS_LOCK_HOLDERS_MAP.values()) {
+            long ageMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - holder.acquiredNanos);
+            heldLocks.add(new HeldLockInfo(holder.domain, holder.key, holder.lockType.getName(), holder.thread,
+                    holder.acquiredMillis, ageMillis, holder.count.get(), RedisLockKeyRenewTask.getRenewCount(holder.key)));
+        }
+        heldLocks.sort(Comparator.comparingLong(HeldLockInfo::getAgeMillis).reversed());
+        return heldLocks;
+    }
+
     private static class LockHolder {
+        /**
+         * 锁类型
+         */
+        public final LockTypeEnum lockType;
+
+        /**
+         * 业务领域
+         */
+        public final String domain;
+
+        /**
+         * redis锁的key
+         */
+        public final String key;
+
         /**
          * value
          */
         public final String value;
 
+        /**
+         * 持有锁的线程
+         */
+        public final Thread thread;
+
         /**
          * 可重入锁计数器
          */
         public final AtomicInteger count;
 
-        private LockHolder(String value) {
+        /**
+         * 加锁成功的时间点（System.nanoTime）
+         */
+        public final long acquiredNanos;
+
+        /**
+         * 加锁成功的时间点（System.currentTimeMillis）
+         */
+        public final long acquiredMillis;
+
+        private LockHolder(LockTypeEnum lockType, String domain, String key, String value) {
+            this.lockType = lockType;
+            this.domain = domain;
+            this.key = key;
             this.count = new AtomicInteger(1);
             this.value = value;
+            this.thread = Thread.currentThread();
+            this.acquiredNanos = System.nanoTime();
+            this.acquiredMillis = System.currentTimeMillis();
         }
     }
 }
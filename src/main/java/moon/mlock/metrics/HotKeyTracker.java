@@ -0,0 +1,318 @@
+package moon.mlock.metrics;
+
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * 热点锁key追踪
+ * <p>
+ * 常开的争用统计，只在加锁发生争用（首次尝试失败）时记录：每个domain用两个count-min sketch分别估算key的争用次数和累计等待时长，
+ * 再用容量为 {@link #TOP_K} 的小顶堆保留争用最多、等待最久的key，内存占用与key数量无关。
+ * 计数每 {@link #DECAY_INTERVAL_MILLIS} 毫秒衰减一半，结果反映最近一段时间的热点
+ * <p>
+ * 通过 {@link #topContended(String)}、{@link #topWaited(String)} 查询，可在热点key拖垮整条链路之前调整分片或重新设计key
+ *
+ * @author moon
+ */
+public class HotKeyTracker {
+
+    /**
+     * 每个domain保留的热点key数量
+     */
+    public static final int TOP_K = 20;
+
+    /**
+     * sketch行数
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * sketch每行的计数器数量，必须是2的幂
+     */
+    private static final int WIDTH = 1024;
+
+    /**
+     * 衰减间隔，单位ms
+     */
+    private static final long DECAY_INTERVAL_MILLIS = 60000L;
+
+    /**
+     * key:业务领域，value:该业务领域的热点统计
+     */
+    private static final Map<String, DomainTracker> DOMAIN_TRACKERS = Maps.newConcurrentMap();
+
+    private HotKeyTracker() {
+    }
+
+    /**
+     * 记录一次发生争用的加锁
+     *
+     * @param domain    业务领域
+     * @param key       锁key
+     * @param waitNanos 本次加锁的等待时长，单位ns
+     */
+    public static void recordContention(String domain, String key, long waitNanos) {
+        DomainTracker tracker = DOMAIN_TRACKERS.get(domain);
+        if (Objects.isNull(tracker)) {
+            tracker = DOMAIN_TRACKERS.computeIfAbsent(domain, d -> new DomainTracker());
+        }
+        tracker.record(key, TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
+    /**
+     * 查询争用次数最多的key
+     *
+     * @param domain 业务领域
+     * @return 按争用次数降序排列的热点key
+     */
+    public static List<HotKey> topContended(String domain) {
+        DomainTracker tracker = DOMAIN_TRACKERS.get(domain);
+        return Objects.isNull(tracker) ? Collections.emptyList() : tracker.snapshot(tracker.contendedTop, HotKey::getContentions);
+    }
+
+    /**
+     * 查询累计等待时长最长的key
+     *
+     * @param domain 业务领域
+     * @return 按累计等待时长降序排列的热点key
+     */
+    public static List<HotKey> topWaited(String domain) {
+        DomainTracker tracker = DOMAIN_TRACKERS.get(domain);
+        return Objects.isNull(tracker) ? Collections.emptyList() : tracker.snapshot(tracker.waitedTop, HotKey::getWaitMicros);
+    }
+
+    /**
+     * 查询发生过争用的domain
+     *
+     * @return 业务领域集合
+     */
+    public static Set<String> domains() {
+        return Collections.unmodifiableSet(DOMAIN_TRACKERS.keySet());
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        DOMAIN_TRACKERS.clear();
+    }
+
+    /**
+     * 热点key
+     */
+    public static class HotKey {
+        /**
+         * 锁key
+         */
+        private final String key;
+
+        /**
+         * 争用次数估算值
+         */
+        private final long contentions;
+
+        /**
+         * 累计等待时长估算值，单位μs
+         */
+        private final long waitMicros;
+
+        public HotKey(String key, long contentions, long waitMicros) {
+            this.key = key;
+            this.contentions = contentions;
+            this.waitMicros = waitMicros;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getContentions() {
+            return contentions;
+        }
+
+        public long getWaitMicros() {
+            return waitMicros;
+        }
+
+        @Override
+        public String toString() {
+            return key + "(contentions=" + contentions + ", waitMicros=" + waitMicros + ")";
+        }
+    }
+
+    /**
+     * count-min sketch，计数器无锁更新
+     */
+    private static class CountMinSketch {
+
+        private final AtomicLongArray counters = new AtomicLongArray(DEPTH * WIDTH);
+
+        /**
+         * 累加并返回累加后的估算值
+         *
+         * @param hash  key的哈希值
+         * @param delta 增量
+         * @return 估算值
+         */
+        private long add(int hash, long delta) {
+            long min = Long.MAX_VALUE;
+            int h2 = spread(hash);
+            for (int i = 0; i < DEPTH; i++) {
+                int index = i * WIDTH + ((hash + i * h2) & (WIDTH - 1));
+                min = Math.min(min, counters.addAndGet(index, delta));
+            }
+            return min;
+        }
+
+        private long estimate(int hash) {
+            long min = Long.MAX_VALUE;
+            int h2 = spread(hash);
+            for (int i = 0; i < DEPTH; i++) {
+                int index = i * WIDTH + ((hash + i * h2) & (WIDTH - 1));
+                min = Math.min(min, counters.get(index));
+            }
+            return min;
+        }
+
+        private void halve() {
+            for (int i = 0; i < counters.length(); i++) {
+                long value;
+                do {
+                    value = counters.get(i);
+                } while (!counters.compareAndSet(i, value, value >>> 1));
+            }
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return (h ^ (h >>> 16)) | 1;
+        }
+    }
+
+    /**
+     * 单个业务领域的热点统计
+     */
+    private static class DomainTracker {
+
+        private final CountMinSketch contentionSketch = new CountMinSketch();
+
+        private final CountMinSketch waitSketch = new CountMinSketch();
+
+        /**
+         * 争用次数top-K，小顶堆
+         */
+        private final TopK contendedTop = new TopK();
+
+        /**
+         * 累计等待时长top-K，小顶堆
+         */
+        private final TopK waitedTop = new TopK();
+
+        private final AtomicLong nextDecayMillis = new AtomicLong(System.currentTimeMillis() + DECAY_INTERVAL_MILLIS);
+
+        private void record(String key, long waitMicros) {
+            decayIfNeeded();
+            int hash = key.hashCode();
+            long contentions = contentionSketch.add(hash, 1);
+            long waited = waitSketch.add(hash, waitMicros);
+            contendedTop.offer(key, contentions);
+            waitedTop.offer(key, waited);
+        }
+
+        private void decayIfNeeded() {
+            long next = nextDecayMillis.get();
+            long now = System.currentTimeMillis();
+            if (now < next || !nextDecayMillis.compareAndSet(next, now + DECAY_INTERVAL_MILLIS)) {
+                return;
+            }
+            contentionSketch.halve();
+            waitSketch.halve();
+            contendedTop.halve();
+            waitedTop.halve();
+        }
+
+        private List<HotKey> snapshot(TopK top, ToLongFunction<HotKey> order) {
+            List<String> keys = top.keys();
+            List<HotKey> result = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                int hash = key.hashCode();
+                result.add(new HotKey(key, contentionSketch.estimate(hash), waitSketch.estimate(hash)));
+            }
+            result.sort(Comparator.comparingLong(order).reversed());
+            return result;
+        }
+    }
+
+    /**
+     * 容量为 {@link #TOP_K} 的小顶堆，只在发生争用时更新，使用对象锁
+     */
+    private static class TopK {
+
+        /**
+         * key:锁key，value:堆中的条目
+         */
+        private final Map<String, Entry> entries = Maps.newHashMapWithExpectedSize(TOP_K);
+
+        private final PriorityQueue<Entry> heap = new PriorityQueue<>(TOP_K, Comparator.comparingLong(e -> e.value));
+
+        private synchronized void offer(String key, long value) {
+            Entry entry = entries.get(key);
+            if (Objects.nonNull(entry)) {
+                heap.remove(entry);
+                entry.value = value;
+                heap.offer(entry);
+                return;
+            }
+            if (heap.size() < TOP_K) {
+                entry = new Entry(key, value);
+                entries.put(key, entry);
+                heap.offer(entry);
+                return;
+            }
+            Entry min = heap.peek();
+            if (Objects.nonNull(min) && value > min.value) {
+                heap.poll();
+                entries.remove(min.key);
+                entry = new Entry(key, value);
+                entries.put(key, entry);
+                heap.offer(entry);
+            }
+        }
+
+        private synchronized void halve() {
+            List<Entry> all = new ArrayList<>(heap);
+            heap.clear();
+            for (Entry entry : all) {
+                entry.value >>>= 1;
+                heap.offer(entry);
+            }
+        }
+
+        private synchronized List<String> keys() {
+            return new ArrayList<>(entries.keySet());
+        }
+
+        private static class Entry {
+            private final String key;
+
+            private long value;
+
+            private Entry(String key, long value) {
+                this.key = key;
+                this.value = value;
+            }
+        }
+    }
+}
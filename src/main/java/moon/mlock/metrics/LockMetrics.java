@@ -0,0 +1,111 @@
+package moon.mlock.metrics;
+
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.Objects;
+
+/**
+ * 锁指标入口
+ * <p>
+ * 锁实例由工厂直接创建，不是Spring bean，因此通过静态入口记录指标；未注册记录器时所有记录方法都是空操作。
+ * 使用Micrometer时，把 {@link MicrometerLockMetrics} 注册为bean即可
+ *
+ * @author moon
+ */
+public class LockMetrics {
+
+    /**
+     * 未知业务领域，用于调用方未提供domain的场景
+     */
+    public static final String UNKNOWN_DOMAIN = "unknown";
+
+    /**
+     * 当前记录器，为null时不记录
+     */
+    private static volatile LockMetricsRecorder recorder;
+
+    private LockMetrics() {
+    }
+
+    /**
+     * 注册记录器
+     *
+     * @param recorder 记录器，为null时关闭记录
+     */
+    public static void setRecorder(LockMetricsRecorder recorder) {
+        LockMetrics.recorder = recorder;
+    }
+
+    /**
+     * 记录一次加锁
+     *
+     * @param domain    业务领域
+     * @param lockType  锁类型
+     * @param outcome   加锁结果
+     * @param waitNanos 加锁耗时，单位ns
+     * @param retries   重试次数
+     */
+    public static void recordAcquire(String domain, LockTypeEnum lockType, LockOutcomeEnum outcome, long waitNanos, int retries) {
+        LockMetricsRecorder r = recorder;
+        if (Objects.nonNull(r)) {
+            r.recordAcquire(domain, lockType, outcome, waitNanos, retries);
+        }
+    }
+
+    /**
+     * 记录一次释放锁
+     *
+     * @param domain    业务领域
+     * @param lockType  锁类型
+     * @param holdNanos 锁持有时长，单位ns
+     */
+    public static void recordRelease(String domain, LockTypeEnum lockType, long holdNanos) {
+        LockMetricsRecorder r = recorder;
+        if (Objects.nonNull(r)) {
+            r.recordRelease(domain, lockType, holdNanos);
+        }
+    }
+
+    /**
+     * 记录一次续约
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param success  续约结果
+     */
+    public static void recordRenew(String domain, LockTypeEnum lockType, boolean success) {
+        LockMetricsRecorder r = recorder;
+        if (Objects.nonNull(r)) {
+            r.recordRenew(domain, lockType, success);
+        }
+    }
+
+    /**
+     * 记录一次切面调用
+     *
+     * @param aspectType 切面类型
+     * @param domain     业务领域
+     * @param outcome    调用结果
+     */
+    public static void recordAspect(AspectTypeEnum aspectType, String domain, LockOutcomeEnum outcome) {
+        LockMetricsRecorder r = recorder;
+        if (Objects.nonNull(r)) {
+            r.recordAspect(aspectType, domain, outcome);
+        }
+    }
+
+    /**
+     * 记录一次分段锁争用
+     *
+     * @param domain       业务领域
+     * @param falseSharing true：不同业务key落在同一分段的伪共享，false：同一业务key的真实争用
+     */
+    public static void recordStripeContention(String domain, boolean falseSharing) {
+        LockMetricsRecorder r = recorder;
+        if (Objects.nonNull(r)) {
+            r.recordStripeContention(domain, falseSharing);
+        }
+    }
+}
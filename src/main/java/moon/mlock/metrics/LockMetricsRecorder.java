@@ -0,0 +1,62 @@
+package moon.mlock.metrics;
+
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+
+/**
+ * 锁指标记录器
+ * <p>
+ * 所有指标只按 domain、锁类型等有限取值打标签，不使用锁key，避免标签基数失控；实现需保证热路径上不分配对象
+ *
+ * @author moon
+ */
+public interface LockMetricsRecorder {
+
+    /**
+     * 记录一次加锁
+     *
+     * @param domain    业务领域
+     * @param lockType  锁类型
+     * @param outcome   加锁结果
+     * @param waitNanos 加锁耗时，单位ns
+     * @param retries   重试次数
+     */
+    void recordAcquire(String domain, LockTypeEnum lockType, LockOutcomeEnum outcome, long waitNanos, int retries);
+
+    /**
+     * 记录一次释放锁
+     *
+     * @param domain    业务领域
+     * @param lockType  锁类型
+     * @param holdNanos 锁持有时长，单位ns
+     */
+    void recordRelease(String domain, LockTypeEnum lockType, long holdNanos);
+
+    /**
+     * 记录一次续约
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param success  续约结果
+     */
+    void recordRenew(String domain, LockTypeEnum lockType, boolean success);
+
+    /**
+     * 记录一次切面调用
+     *
+     * @param aspectType 切面类型
+     * @param domain     业务领域
+     * @param outcome    调用结果
+     */
+    void recordAspect(AspectTypeEnum aspectType, String domain, LockOutcomeEnum outcome);
+
+    /**
+     * 记录一次分段锁争用，默认不记录
+     *
+     * @param domain       业务领域
+     * @param falseSharing true：不同业务key落在同一分段的伪共享，false：同一业务key的真实争用
+     */
+    default void recordStripeContention(String domain, boolean falseSharing) {
+    }
+}
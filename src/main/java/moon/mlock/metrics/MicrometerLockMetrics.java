@@ -0,0 +1,214 @@
+package moon.mlock.metrics;
+
+import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import moon.mlock.common.enums.AspectTypeEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Micrometer的锁指标
+ * <p>
+ * 注册为Spring bean后由Spring Boot自动绑定到MeterRegistry，也可手动调用 {@link #bindTo(MeterRegistry)}。指标：
+ * <ul>
+ *     <li>mlock.acquire：加锁耗时直方图，标签 domain、lock_type、outcome</li>
+ *     <li>mlock.acquire.retries：加锁重试次数，标签 domain、lock_type</li>
+ *     <li>mlock.hold：锁持有时长直方图，标签 domain、lock_type</li>
+ *     <li>mlock.renew：续约次数，标签 domain、lock_type、outcome</li>
+ *     <li>mlock.aspect.calls：切面调用次数，标签 aspect、domain、outcome</li>
+ *     <li>mlock.stripe.contention：分段锁争用次数，标签 domain、type（same_key：真实争用，false_sharing：伪共享）</li>
+ * </ul>
+ * 每个domain的meter在首次使用时创建并缓存，之后的记录只做数组下标访问，不分配对象
+ *
+ * @author moon
+ */
+public class MicrometerLockMetrics implements MeterBinder, LockMetricsRecorder {
+
+    private static final String TAG_DOMAIN = "domain";
+
+    private static final String TAG_LOCK_TYPE = "lock_type";
+
+    private static final String TAG_OUTCOME = "outcome";
+
+    private static final String TAG_ASPECT = "aspect";
+
+    private static final String TAG_TYPE = "type";
+
+    private static final LockTypeEnum[] LOCK_TYPES = LockTypeEnum.values();
+
+    private static final LockOutcomeEnum[] OUTCOMES = LockOutcomeEnum.values();
+
+    private static final AspectTypeEnum[] ASPECT_TYPES = AspectTypeEnum.values();
+
+    /**
+     * key:业务领域，value:该业务领域的meter
+     */
+    private final Map<String, DomainMeters> domainMeters = Maps.newConcurrentMap();
+
+    private volatile MeterRegistry registry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        this.domainMeters.clear();
+        LockMetrics.setRecorder(this);
+    }
+
+    @Override
+    public void recordAcquire(String domain, LockTypeEnum lockType, LockOutcomeEnum outcome, long waitNanos, int retries) {
+        DomainMeters meters = getDomainMeters(domain);
+        meters.acquireTimer(lockType, outcome).record(waitNanos, TimeUnit.NANOSECONDS);
+        if (retries > 0) {
+            meters.retriesSummary(lockType).record(retries);
+        }
+    }
+
+    @Override
+    public void recordRelease(String domain, LockTypeEnum lockType, long holdNanos) {
+        getDomainMeters(domain).holdTimer(lockType).record(holdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordRenew(String domain, LockTypeEnum lockType, boolean success) {
+        getDomainMeters(domain).renewCounter(lockType, success ? LockOutcomeEnum.SUCCESS : LockOutcomeEnum.FAIL).increment();
+    }
+
+    @Override
+    public void recordAspect(AspectTypeEnum aspectType, String domain, LockOutcomeEnum outcome) {
+        getDomainMeters(domain).aspectCounter(aspectType, outcome).increment();
+    }
+
+    @Override
+    public void recordStripeContention(String domain, boolean falseSharing) {
+        getDomainMeters(domain).stripeCounter(falseSharing).increment();
+    }
+
+    private DomainMeters getDomainMeters(String domain) {
+        DomainMeters meters = domainMeters.get(domain);
+        if (Objects.isNull(meters)) {
+            meters = domainMeters.computeIfAbsent(domain, DomainMeters::new);
+        }
+        return meters;
+    }
+
+    /**
+     * 单个业务领域的meter，按枚举下标缓存
+     * <p>
+     * 并发首次创建时可能重复注册，MeterRegistry对相同id返回同一个meter，结果一致
+     */
+    private class DomainMeters {
+
+        private final String domain;
+
+        private final Timer[][] acquireTimers = new Timer[LOCK_TYPES.length][OUTCOMES.length];
+
+        private final DistributionSummary[] retriesSummaries = new DistributionSummary[LOCK_TYPES.length];
+
+        private final Timer[] holdTimers = new Timer[LOCK_TYPES.length];
+
+        private final Counter[][] renewCounters = new Counter[LOCK_TYPES.length][OUTCOMES.length];
+
+        private final Counter[][] aspectCounters = new Counter[ASPECT_TYPES.length][OUTCOMES.length];
+
+        /**
+         * 下标0：真实争用，下标1：伪共享
+         */
+        private final Counter[] stripeCounters = new Counter[2];
+
+        private DomainMeters(String domain) {
+            this.domain = domain;
+        }
+
+        private Timer acquireTimer(LockTypeEnum lockType, LockOutcomeEnum outcome) {
+            Timer timer = acquireTimers[lockType.ordinal()][outcome.ordinal()];
+            if (Objects.isNull(timer)) {
+                timer = Timer.builder("mlock.acquire")
+                        .description("lock acquire latency")
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_LOCK_TYPE, lockType.getName())
+                        .tag(TAG_OUTCOME, outcome.getName())
+                        .publishPercentileHistogram()
+                        .register(registry);
+                acquireTimers[lockType.ordinal()][outcome.ordinal()] = timer;
+            }
+            return timer;
+        }
+
+        private DistributionSummary retriesSummary(LockTypeEnum lockType) {
+            DistributionSummary summary = retriesSummaries[lockType.ordinal()];
+            if (Objects.isNull(summary)) {
+                summary = DistributionSummary.builder("mlock.acquire.retries")
+                        .description("lock acquire retries")
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_LOCK_TYPE, lockType.getName())
+                        .register(registry);
+                retriesSummaries[lockType.ordinal()] = summary;
+            }
+            return summary;
+        }
+
+        private Timer holdTimer(LockTypeEnum lockType) {
+            Timer timer = holdTimers[lockType.ordinal()];
+            if (Objects.isNull(timer)) {
+                timer = Timer.builder("mlock.hold")
+                        .description("lock hold duration")
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_LOCK_TYPE, lockType.getName())
+                        .publishPercentileHistogram()
+                        .register(registry);
+                holdTimers[lockType.ordinal()] = timer;
+            }
+            return timer;
+        }
+
+        private Counter renewCounter(LockTypeEnum lockType, LockOutcomeEnum outcome) {
+            Counter counter = renewCounters[lockType.ordinal()][outcome.ordinal()];
+            if (Objects.isNull(counter)) {
+                counter = Counter.builder("mlock.renew")
+                        .description("lock lease renewals")
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_LOCK_TYPE, lockType.getName())
+                        .tag(TAG_OUTCOME, outcome.getName())
+                        .register(registry);
+                renewCounters[lockType.ordinal()][outcome.ordinal()] = counter;
+            }
+            return counter;
+        }
+
+        private Counter aspectCounter(AspectTypeEnum aspectType, LockOutcomeEnum outcome) {
+            Counter counter = aspectCounters[aspectType.ordinal()][outcome.ordinal()];
+            if (Objects.isNull(counter)) {
+                counter = Counter.builder("mlock.aspect.calls")
+                        .description("lock aspect invocations")
+                        .tag(TAG_ASPECT, aspectType.getName())
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_OUTCOME, outcome.getName())
+                        .register(registry);
+                aspectCounters[aspectType.ordinal()][outcome.ordinal()] = counter;
+            }
+            return counter;
+        }
+
+        private Counter stripeCounter(boolean falseSharing) {
+            int index = falseSharing ? 1 : 0;
+            Counter counter = stripeCounters[index];
+            if (Objects.isNull(counter)) {
+                counter = Counter.builder("mlock.stripe.contention")
+                        .description("striped lock contentions")
+                        .tag(TAG_DOMAIN, domain)
+                        .tag(TAG_TYPE, falseSharing ? "false_sharing" : "same_key")
+                        .register(registry);
+                stripeCounters[index] = counter;
+            }
+            return counter;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package moon.mlock.policy;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 锁策略入口
+ * <p>
+ * 锁实例和切面都不是通过Spring注入策略的，因此通过静态入口查询。策略保存在不可变快照中，
+ * 更新时整体替换快照（copy-on-write），查询只有一次volatile读和一次map查找，不加锁
+ *
+ * @author moon
+ */
+public class LockPolicies {
+
+    private static volatile Snapshot snapshot = new Snapshot(ImmutableMap.of(), LockPolicy.EMPTY);
+
+    private LockPolicies() {
+    }
+
+    /**
+     * 查询业务领域的策略，已与默认策略合并
+     *
+     * @param domain 业务领域
+     * @return 锁策略，未配置时返回默认策略
+     */
+    public static LockPolicy get(String domain) {
+        Snapshot current = snapshot;
+        LockPolicy policy = Objects.isNull(domain) ? null : current.policies.get(domain);
+        return Objects.isNull(policy) ? current.defaultPolicy : policy;
+    }
+
+    /**
+     * 替换全部策略
+     *
+     * @param policies      key:业务领域，value:锁策略
+     * @param defaultPolicy 默认策略，适用于所有业务领域
+     */
+    public static void update(Map<String, LockPolicy> policies, LockPolicy defaultPolicy) {
+        LockPolicy fallback = Objects.isNull(defaultPolicy) ? LockPolicy.EMPTY : defaultPolicy;
+        ImmutableMap.Builder<String, LockPolicy> builder = ImmutableMap.builder();
+        for (Map.Entry<String, LockPolicy> entry : policies.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().merge(fallback));
+        }
+        snapshot = new Snapshot(builder.build(), fallback);
+    }
+
+    /**
+     * 当前配置的策略
+     *
+     * @return key:业务领域，value:锁策略（已与默认策略合并）
+     */
+    public static Map<String, LockPolicy> getPolicies() {
+        return snapshot.policies;
+    }
+
+    /**
+     * 当前默认策略
+     *
+     * @return 默认策略
+     */
+    public static LockPolicy getDefaultPolicy() {
+        return snapshot.defaultPolicy;
+    }
+
+    private static class Snapshot {
+
+        private final Map<String, LockPolicy> policies;
+
+        private final LockPolicy defaultPolicy;
+
+        private Snapshot(Map<String, LockPolicy> policies, LockPolicy defaultPolicy) {
+            this.policies = policies;
+            this.defaultPolicy = defaultPolicy;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package moon.mlock.policy;
+
+import moon.mlock.common.enums.LockEventLevelEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+
+import java.util.Objects;
+
+/**
+ * 单个业务领域的锁策略
+ * <p>
+ * 不可变对象，各项为null时表示不覆盖，使用注解或调用方传入的值
+ *
+ * @author moon
+ */
+public final class LockPolicy {
+
+    /**
+     * 不覆盖任何值的策略
+     */
+    public static final LockPolicy EMPTY = new LockPolicy(null, null, null, null, null);
+
+    /**
+     * 锁类型
+     */
+    private final LockTypeEnum lockType;
+
+    /**
+     * 等待锁时间，单位ms
+     */
+    private final Long waitMillis;
+
+    /**
+     * redis锁过期时间（租约），单位ms
+     */
+    private final Long leaseMillis;
+
+    /**
+     * 加锁失败后的重试间隔，单位ms
+     */
+    private final Long retryMillis;
+
+    /**
+     * 锁事件日志级别
+     */
+    private final LockEventLevelEnum eventLevel;
+
+    public LockPolicy(LockTypeEnum lockType, Long waitMillis, Long leaseMillis, Long retryMillis, LockEventLevelEnum eventLevel) {
+        this.lockType = lockType;
+        this.waitMillis = waitMillis;
+        this.leaseMillis = leaseMillis;
+        this.retryMillis = retryMillis;
+        this.eventLevel = eventLevel;
+    }
+
+    /**
+     * 锁类型，未配置时返回默认值
+     *
+     * @param defaultValue 默认值
+     * @return 锁类型
+     */
+    public LockTypeEnum lockType(LockTypeEnum defaultValue) {
+        return Objects.isNull(lockType) ? defaultValue : lockType;
+    }
+
+    /**
+     * 等待锁时间，未配置时返回默认值
+     *
+     * @param defaultValue 默认值，单位ms
+     * @return 等待锁时间，单位ms
+     */
+    public long waitMillis(long defaultValue) {
+        return Objects.isNull(waitMillis) ? defaultValue : waitMillis;
+    }
+
+    /**
+     * redis锁过期时间，未配置时返回默认值
+     *
+     * @param defaultValue 默认值，单位ms
+     * @return 过期时间，单位ms
+     */
+    public long leaseMillis(long defaultValue) {
+        return Objects.isNull(leaseMillis) ? defaultValue : leaseMillis;
+    }
+
+    /**
+     * 重试间隔，未配置时返回默认值
+     *
+     * @param defaultValue 默认值，单位ms
+     * @return 重试间隔，单位ms
+     */
+    public long retryMillis(long defaultValue) {
+        return Objects.isNull(retryMillis) ? defaultValue : retryMillis;
+    }
+
+    public LockTypeEnum getLockType() {
+        return lockType;
+    }
+
+    public Long getWaitMillis() {
+        return waitMillis;
+    }
+
+    public Long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    public Long getRetryMillis() {
+        return retryMillis;
+    }
+
+    public LockEventLevelEnum getEventLevel() {
+        return eventLevel;
+    }
+
+    /**
+     * 合并策略，当前策略未配置的项使用fallback的值
+     *
+     * @param fallback 后备策略
+     * @return 合并后的策略
+     */
+    public LockPolicy merge(LockPolicy fallback) {
+        return new LockPolicy(
+                Objects.isNull(lockType) ? fallback.lockType : lockType,
+                Objects.isNull(waitMillis) ? fallback.waitMillis : waitMillis,
+                Objects.isNull(leaseMillis) ? fallback.leaseMillis : leaseMillis,
+                Objects.isNull(retryMillis) ? fallback.retryMillis : retryMillis,
+                Objects.isNull(eventLevel) ? fallback.eventLevel : eventLevel);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LockPolicy)) {
+            return false;
+        }
+        LockPolicy that = (LockPolicy) o;
+        return lockType == that.lockType && Objects.equals(waitMillis, that.waitMillis)
+                && Objects.equals(leaseMillis, that.leaseMillis) && Objects.equals(retryMillis, that.retryMillis)
+                && eventLevel == that.eventLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lockType, waitMillis, leaseMillis, retryMillis, eventLevel);
+    }
+
+    @Override
+    public String toString() {
+        return "LockPolicy(lockType=" + lockType + ", waitMillis=" + waitMillis + ", leaseMillis=" + leaseMillis
+                + ", retryMillis=" + retryMillis + ", eventLevel=" + eventLevel + ")";
+    }
+}
@@ -0,0 +1,209 @@
+package moon.mlock.policy;
+
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.LockEventLevelEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 从Spring Environment加载按domain配置的锁策略
+ * <p>
+ * 注册为bean后生效，策略覆盖注解和调用方传入的值，配置格式：
+ * <pre>
+ * mlock.policy.default.wait-millis=1000
+ * mlock.policy.orderPay.lock-type=redis_force
+ * mlock.policy.orderPay.wait-millis=3000
+ * mlock.policy.orderPay.lease-millis=30000
+ * mlock.policy.orderPay.retry-millis=50
+ * mlock.policy.orderPay.event-level=all
+ * </pre>
+ * default为所有domain的默认策略。容器启动完成、收到Spring Cloud的EnvironmentChangeEvent时重新加载，
+ * 另外每5秒检查一次，配置中心直接修改Environment的场景也能在数秒内生效；策略没有变化时不替换快照
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockPolicyRegistry implements EnvironmentAware, ApplicationListener<ApplicationEvent> {
+
+    /**
+     * 配置前缀
+     */
+    public static final String PREFIX = "mlock.policy.";
+
+    /**
+     * 默认策略的domain名称
+     */
+    public static final String DEFAULT_DOMAIN = "default";
+
+    /**
+     * redis锁最短过期时间，单位ms，续约任务每5秒执行一次，过期时间至少覆盖两次续约
+     */
+    public static final long MIN_LEASE_MILLIS = 10000L;
+
+    /**
+     * 最短重试间隔，单位ms，避免重试间隔为0时空转刷redis
+     */
+    public static final long MIN_RETRY_MILLIS = 10L;
+
+    /**
+     * Spring Cloud配置刷新事件的类名，避免依赖spring-cloud-context
+     */
+    private static final String ENVIRONMENT_CHANGE_EVENT = "EnvironmentChangeEvent";
+
+    private static final String LOCK_TYPE = "lock-type";
+
+    private static final String WAIT_MILLIS = "wait-millis";
+
+    private static final String LEASE_MILLIS = "lease-millis";
+
+    private static final String RETRY_MILLIS = "retry-millis";
+
+    private static final String EVENT_LEVEL = "event-level";
+
+    private ConfigurableEnvironment environment;
+
+    /**
+     * 上次加载的策略，未与默认策略合并
+     */
+    private Map<String, LockPolicy> loaded = Collections.emptyMap();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        if (environment instanceof ConfigurableEnvironment) {
+            this.environment = (ConfigurableEnvironment) environment;
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ContextRefreshedEvent || ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getSimpleName())) {
+            refresh();
+        }
+    }
+
+    /**
+     * 定时检查策略变化
+     */
+    @Scheduled(cron = "*/5 * * * * ?")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("LockPolicyRegistry refresh ex:", e);
+        }
+    }
+
+    /**
+     * 重新加载策略，策略有变化时替换快照
+     */
+    public synchronized void refresh() {
+        if (Objects.isNull(environment)) {
+            return;
+        }
+        Map<String, LockPolicy> policies = new LinkedHashMap<>();
+        List<String> warnings = new ArrayList<>();
+        for (String domain : domains()) {
+            policies.put(domain, load(domain, warnings));
+        }
+        if (policies.equals(loaded)) {
+            return;
+        }
+        loaded = policies;
+        // 只在策略变化时输出非法配置，避免定时检查重复输出
+        for (String warning : warnings) {
+            log.warn("LockPolicyRegistry {}", warning);
+        }
+        Map<String, LockPolicy> domainPolicies = new LinkedHashMap<>(policies);
+        LockPolicy defaultPolicy = domainPolicies.remove(DEFAULT_DOMAIN);
+        LockPolicies.update(domainPolicies, defaultPolicy);
+        log.info("LockPolicyRegistry refreshed, policies={}", policies);
+    }
+
+    /**
+     * 从所有可枚举的配置源中找出配置了策略的domain
+     */
+    private Set<String> domains() {
+        Set<String> domains = new TreeSet<>();
+        for (PropertySource<?> source : environment.getPropertySources()) {
+            if (!(source instanceof EnumerablePropertySource)) {
+                continue;
+            }
+            for (String name : ((EnumerablePropertySource<?>) source).getPropertyNames()) {
+                if (!name.startsWith(PREFIX)) {
+                    continue;
+                }
+                int index = name.lastIndexOf('.');
+                if (index > PREFIX.length()) {
+                    domains.add(name.substring(PREFIX.length(), index));
+                }
+            }
+        }
+        return domains;
+    }
+
+    private LockPolicy load(String domain, List<String> warnings) {
+        String prefix = PREFIX + domain + ".";
+        LockTypeEnum lockType = null;
+        String lockTypeName = environment.getProperty(prefix + LOCK_TYPE);
+        if (StringUtils.isNotBlank(lockTypeName)) {
+            lockType = LockTypeEnum.getEnumByName(lockTypeName);
+            if (Objects.isNull(lockType)) {
+                warnings.add("invalid " + prefix + LOCK_TYPE + "=" + lockTypeName);
+            }
+        }
+        LockEventLevelEnum eventLevel = null;
+        String eventLevelName = environment.getProperty(prefix + EVENT_LEVEL);
+        if (StringUtils.isNotBlank(eventLevelName)) {
+            eventLevel = LockEventLevelEnum.getEnumByName(eventLevelName);
+            if (Objects.isNull(eventLevel)) {
+                warnings.add("invalid " + prefix + EVENT_LEVEL + "=" + eventLevelName);
+            }
+        }
+        Long leaseMillis = getMillis(prefix + LEASE_MILLIS, warnings);
+        if (Objects.nonNull(leaseMillis) && leaseMillis < MIN_LEASE_MILLIS) {
+            warnings.add(prefix + LEASE_MILLIS + "=" + leaseMillis + " less than " + MIN_LEASE_MILLIS + ", use " + MIN_LEASE_MILLIS);
+            leaseMillis = MIN_LEASE_MILLIS;
+        }
+        Long retryMillis = getMillis(prefix + RETRY_MILLIS, warnings);
+        if (Objects.nonNull(retryMillis) && retryMillis < MIN_RETRY_MILLIS) {
+            warnings.add(prefix + RETRY_MILLIS + "=" + retryMillis + " less than " + MIN_RETRY_MILLIS + ", use " + MIN_RETRY_MILLIS);
+            retryMillis = MIN_RETRY_MILLIS;
+        }
+        return new LockPolicy(lockType, getMillis(prefix + WAIT_MILLIS, warnings), leaseMillis, retryMillis, eventLevel);
+    }
+
+    private Long getMillis(String name, List<String> warnings) {
+        String value = environment.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if (millis >= 0) {
+                return millis;
+            }
+        } catch (NumberFormatException ignored) {
+            // 非法配置，忽略
+        }
+        warnings.add("invalid " + name + "=" + value);
+        return null;
+    }
+}
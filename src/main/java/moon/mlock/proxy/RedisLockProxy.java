@@ -1,21 +1,45 @@
 package moon.mlock.proxy;
 
 import lombok.extern.slf4j.Slf4j;
+import moon.mlock.backend.CircuitBreakerLockBackend;
+import moon.mlock.backend.LockBackend;
+import moon.mlock.backend.RedisLockBackend;
+import moon.mlock.backend.ShardedLockBackend;
+import moon.mlock.breaker.LockCircuitBreaker;
 import moon.mlock.common.consts.StringConst;
+import moon.mlock.common.enums.DegradePolicyEnum;
+import moon.mlock.common.enums.LockOutcomeEnum;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.config.LockGlobalConfig;
 import moon.mlock.config.LockProperties;
-import moon.mlock.utils.LocalUtils;
+import moon.mlock.idempotent.CompactIdempotentKey;
+import moon.mlock.jfr.LockJfr;
+import moon.mlock.limit.GradientConcurrencyLimiter;
+import moon.mlock.limit.LockWaitLimiters;
+import moon.mlock.metrics.HotKeyTracker;
+import moon.mlock.metrics.LockMetrics;
+import moon.mlock.policy.LockPolicies;
+import moon.mlock.policy.LockPolicy;
+import moon.mlock.stripe.LockStripes;
+import moon.mlock.utils.OwnerIdUtils;
 import moon.mlock.utils.SpringUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
 
 /**
  * redis锁代理
+ * <p>
+ * 负责加锁重试、指标和幂等value的拼装，读写统一委托给 {@link LockBackend}
  *
  * @author moon
  */
@@ -24,9 +48,24 @@ import java.util.concurrent.locks.LockSupport;
 public class RedisLockProxy {
 
     /**
-     * redisTemplate实例
+     * 锁存储后端
      */
-    private final StringRedisTemplate redisTemplate;
+    private final LockBackend backend;
+
+    /**
+     * 锁存储后端熔断器，未开启熔断时为null
+     */
+    private final LockCircuitBreaker circuitBreaker;
+
+    /**
+     * 熔断时非强制redis锁的默认降级策略
+     */
+    private final DegradePolicyEnum defaultDegradePolicy;
+
+    /**
+     * key:业务领域，value:熔断时的降级策略
+     */
+    private final Map<String, DegradePolicyEnum> degradePolicies;
 
     /**
      * 获取锁默认等待时间，单位毫秒
@@ -43,16 +82,110 @@ public class RedisLockProxy {
      */
     private static final long REDIS_LOCK_KEY_EXPIRE_MILLIS = 60000L;
 
+    @Autowired
     public RedisLockProxy(LockProperties lockProperties) {
+        this(lockProperties, resolveBackend(lockProperties));
+    }
+
+    public RedisLockProxy(LockProperties lockProperties, LockBackend backend) {
+        if (Boolean.TRUE.equals(lockProperties.getBreakerEnabled())) {
+            this.circuitBreaker = new LockCircuitBreaker(
+                    Optional.ofNullable(lockProperties.getBreakerWindowSeconds()).orElse(LockCircuitBreaker.DEFAULT_WINDOW_SECONDS),
+                    Optional.ofNullable(lockProperties.getBreakerMinCalls()).orElse(LockCircuitBreaker.DEFAULT_MIN_CALLS),
+                    Optional.ofNullable(lockProperties.getBreakerErrorRate()).orElse(LockCircuitBreaker.DEFAULT_ERROR_RATE),
+                    Optional.ofNullable(lockProperties.getBreakerSlowCallMillis()).orElse(LockCircuitBreaker.DEFAULT_SLOW_CALL_MILLIS),
+                    Optional.ofNullable(lockProperties.getBreakerSlowCallRate()).orElse(LockCircuitBreaker.DEFAULT_SLOW_CALL_RATE),
+                    Optional.ofNullable(lockProperties.getBreakerOpenMillis()).orElse(LockCircuitBreaker.DEFAULT_OPEN_MILLIS),
+                    Optional.ofNullable(lockProperties.getBreakerProbeCalls()).orElse(LockCircuitBreaker.DEFAULT_PROBE_CALLS));
+            this.backend = new CircuitBreakerLockBackend(backend, circuitBreaker);
+        } else {
+            this.circuitBreaker = null;
+            this.backend = backend;
+        }
+        this.defaultDegradePolicy = Optional.ofNullable(DegradePolicyEnum.getEnumByName(lockProperties.getBreakerDegradePolicy()))
+                .orElse(DegradePolicyEnum.LOCAL);
+        this.degradePolicies = lockProperties.parseBreakerDomainPolicies();
+        // 初始化进程级的全局配置，只有第一个代理生效
+        LockGlobalConfig.configure(lockProperties);
+    }
+
+    /**
+     * 锁存储后端熔断器
+     *
+     * @return 熔断器，未开启熔断时为null
+     */
+    public LockCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 非强制redis锁的降级策略：未开启熔断或熔断器还能访问后端时不降级，探测名额在访问后端时才占用。
+     * 判断不降级后名额被并发请求占满时，加锁抛出 {@link moon.mlock.common.exception.LockBackendUnavailableException}，
+     * 由调用方按 {@link #getConfiguredDegradePolicy(String)} 降级
+     *
+     * @param domain 业务领域
+     * @return 降级策略，不降级时为null
+     */
+    public DegradePolicyEnum getDegradePolicy(String domain) {
+        if (Objects.isNull(circuitBreaker) || circuitBreaker.isAvailable()) {
+            return null;
+        }
+        return degradePolicies.getOrDefault(domain, defaultDegradePolicy);
+    }
+
+    /**
+     * domain配置的降级策略，与熔断器当前状态无关
+     *
+     * @param domain 业务领域
+     * @return 降级策略，未开启熔断时为null
+     */
+    public DegradePolicyEnum getConfiguredDegradePolicy(String domain) {
+        if (Objects.isNull(circuitBreaker)) {
+            return null;
+        }
+        return degradePolicies.getOrDefault(domain, defaultDegradePolicy);
+    }
+
+    /**
+     * 获取锁存储后端：容器中有唯一的LockBackend bean时使用该bean；配置了分片集群时按一致性哈希分片到多个redis集群；否则使用redis
+     *
+     * @param lockProperties 锁配置
+     * @return 锁存储后端
+     */
+    private static LockBackend resolveBackend(LockProperties lockProperties) {
+        Map<String, LockBackend> backends = SpringUtils.getBeansByType(LockBackend.class);
+        if (backends.size() == 1) {
+            LockBackend backend = backends.values().iterator().next();
+            log.info("ILock use backend {}", backend.getClass().getSimpleName());
+            return backend;
+        }
+        List<String> shardGroups = lockProperties.parseShardGroups();
+        if (shardGroups.size() > 1) {
+            Map<String, LockBackend> shards = new LinkedHashMap<>();
+            for (String group : shardGroups) {
+                shards.put(group, createRedisBackend(group));
+            }
+            log.info("ILock use sharded backend {}", shards.keySet());
+            return new ShardedLockBackend(shards,
+                    Optional.ofNullable(lockProperties.getShardVirtualNodes()).orElse(ShardedLockBackend.DEFAULT_VIRTUAL_NODES),
+                    Boolean.TRUE.equals(lockProperties.getShardByDomain()) ? ShardedLockBackend.DOMAIN_ROUTING : ShardedLockBackend.KEY_ROUTING);
+        }
+        return createRedisBackend(shardGroups.isEmpty() ? lockProperties.getRedisGroupName() : shardGroups.get(0));
+    }
+
+    /**
+     * 创建redis存储后端
+     *
+     * @param groupName redis集群名称
+     * @return redis存储后端
+     */
+    private static RedisLockBackend createRedisBackend(String groupName) {
         // 具体如何取redisTemplate实例，需要根据项目具体设置，通常是 集群名称+RedisTemplate，如ShopRedisTemplate
-        redisTemplate = SpringUtils.getBean(lockProperties.getRedisGroupName() + "RedisTemplate");
+        StringRedisTemplate redisTemplate = SpringUtils.getBean(groupName + "RedisTemplate");
+        RedisLockBackend backend = new RedisLockBackend(redisTemplate);
         // 初始化redis连接并测试
-        String key = "ILock-connect-test-" + System.currentTimeMillis();
-        redisTemplate.opsForValue().set(key, key);
-        String val = redisTemplate.opsForValue().get(key);
-        log.info("ILock connect test: set={}, get={}", key, val);
-        redisTemplate.delete(key);
-        log.info("Successfully initialized ILock redis connection");
+        backend.testConnection();
+        return backend;
     }
 
     /**
@@ -61,30 +194,157 @@ public class RedisLockProxy {
      * @param key  锁Key
      * @param time 等待锁最长时间
      * @param unit 等待锁最长时间单位
-     * @return 加锁成功返回redis k-v中的value值（key_系统纳秒数_本地机器ip）；加锁失败返回null
+     * @return 加锁成功返回redis k-v中的value值（持有者id）；加锁失败返回null
      */
     public String tryRedisLock(String key, long time, TimeUnit unit) {
+        return tryRedisLock(LockMetrics.UNKNOWN_DOMAIN, LockTypeEnum.LOCK_REDIS, key, time, unit);
+    }
+
+    /**
+     * 尝试加redis锁，并按业务领域和锁类型记录加锁指标
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param key      锁Key
+     * @param time     等待锁最长时间
+     * @param unit     等待锁最长时间单位
+     * @return 加锁成功返回redis k-v中的value值（持有者id）；加锁失败返回null
+     */
+    public String tryRedisLock(String domain, LockTypeEnum lockType, String key, long time, TimeUnit unit) {
+        return tryRedisLock(domain, lockType, key, OwnerIdUtils.nextId(), time, unit);
+    }
+
+    /**
+     * 尝试加redis锁，并按业务领域和锁类型记录加锁指标
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param key      锁Key
+     * @param value    锁value，通常是锁实例的持有者id，每次重试使用同一个value
+     * @param time     等待锁最长时间
+     * @param unit     等待锁最长时间单位
+     * @return 加锁成功返回value；加锁失败返回null
+     */
+    public String tryRedisLock(String domain, LockTypeEnum lockType, String key, String value, long time, TimeUnit unit) {
+        return tryAcquire(domain, lockType, key, null, value, time, unit);
+    }
+
+    /**
+     * 批量尝试加redis锁，全部加锁成功或全部不加锁
+     * <p>
+     * keys应已排序去重，所有调用方按相同顺序加锁，不会形成死锁；单机redis或所有key在同一个slot时每次尝试只需一次脚本调用
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param keys     锁Key列表，已排序去重
+     * @param value    锁value，所有key使用同一个value
+     * @param time     等待锁最长时间
+     * @param unit     等待锁最长时间单位
+     * @return 加锁成功返回value；加锁失败返回null
+     */
+    public String tryRedisLockAll(String domain, LockTypeEnum lockType, List<String> keys, String value, long time, TimeUnit unit) {
+        return tryAcquire(domain, lockType, String.join(StringConst.COMMA, keys), keys, value, time, unit);
+    }
+
+    /**
+     * 加锁重试，记录加锁指标
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param key      单个锁Key，批量加锁时为拼接后的key，只用于日志和事件
+     * @param keys     批量加锁的锁Key列表，单个加锁时为null
+     * @param value    锁value
+     * @param time     等待锁最长时间
+     * @param unit     等待锁最长时间单位
+     * @return 加锁成功返回value；加锁失败返回null
+     */
+    private String tryAcquire(String domain, LockTypeEnum lockType, String key, List<String> keys, String value,
+                              long time, TimeUnit unit) {
+        final long startNanos = System.nanoTime();
         final long start = System.currentTimeMillis();
         long wait = Optional.ofNullable(unit).map(p -> p.toMillis(time)).orElse(DEFAULT_WAIT_MILLIS);
-        String value = null;
+        LockPolicy policy = LockPolicies.get(domain);
+        long leaseMillis = policy.leaseMillis(REDIS_LOCK_KEY_EXPIRE_MILLIS);
+        long retryMillis = policy.retryMillis(REDIS_LOCK_RETRY_AWAIT_MILLIS);
+        // 需要等待的加锁受并发限制，超过上限直接失败，不再进入等待
+        GradientConcurrencyLimiter limiter = wait > 0 ? LockWaitLimiters.get(domain) : null;
+        if (Objects.nonNull(limiter) && !limiter.tryAcquire()) {
+            log.debug("等待锁的并发数超过上限{}，直接拒绝，lockKey={}", limiter.getLimit(), key);
+            LockMetrics.recordAcquire(domain, lockType, LockOutcomeEnum.SHED, System.nanoTime() - startNanos, 0);
+            return null;
+        }
+        boolean acquired = false;
         int i = 0;
-        while (Objects.isNull(value)) {
-            log.debug("第{}次，开始获取锁，lockKey={}", i, key);
-            long curTime = System.currentTimeMillis();
-            value = createRedisLock(key, REDIS_LOCK_KEY_EXPIRE_MILLIS, TimeUnit.MILLISECONDS);
-            if (Objects.nonNull(value)) {
-                log.debug("第{}次，获取锁成功，耗时：{}ms", i, (System.currentTimeMillis() - curTime));
+        try {
+            while (true) {
+                log.debug("第{}次，开始获取锁，lockKey={}", i, key);
+                long curTime = System.currentTimeMillis();
+                acquired = Objects.isNull(keys)
+                        ? createRedisLock(key, value, leaseMillis, TimeUnit.MILLISECONDS)
+                        : backend.acquireAll(keys, value, leaseMillis, TimeUnit.MILLISECONDS);
+                if (acquired) {
+                    log.debug("第{}次，获取锁成功，耗时：{}ms", i, (System.currentTimeMillis() - curTime));
+                    break;
+                }
+                if (i == 0 && Objects.isNull(keys) && LockStripes.isStriped(domain) && LockStripes.isStripeValue(value)) {
+                    recordStripeContention(domain, key, value);
+                }
+                if ((System.currentTimeMillis() - start + retryMillis) > wait) {
+                    log.debug("第{}次，获取锁失败，超时退出", i);
+                    break;
+                }
+                log.debug("第{}次，获取锁失败，休眠【{}】ms，再次尝试获取锁", i, retryMillis);
+                // todo 这里调用parkNanos，之前考虑的不清楚，有时间查一下，应该可以优化，不能是固定时间
+                LockJfr.park(domain, key, i + 1, TimeUnit.MILLISECONDS.toNanos(retryMillis));
+                i++;
+            }
+        } catch (RuntimeException e) {
+            long elapsed = System.nanoTime() - startNanos;
+            if (Objects.nonNull(limiter)) {
+                limiter.release(elapsed, false);
             }
-            if ((System.currentTimeMillis() - start + REDIS_LOCK_RETRY_AWAIT_MILLIS) > wait) {
-                log.debug("第{}次，获取锁失败，超时退出", i);
-                break;
+            LockMetrics.recordAcquire(domain, lockType, LockOutcomeEnum.ERROR, elapsed, i);
+            LockJfr.acquire(domain, key, lockType, elapsed, i + 1, false);
+            throw e;
+        }
+        LockOutcomeEnum outcome;
+        if (acquired) {
+            outcome = LockOutcomeEnum.SUCCESS;
+        } else {
+            outcome = i == 0 ? LockOutcomeEnum.FAIL : LockOutcomeEnum.TIMEOUT;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        if (Objects.nonNull(limiter)) {
+            limiter.release(elapsed, true);
+        }
+        LockMetrics.recordAcquire(domain, lockType, outcome, elapsed, i);
+        LockJfr.acquire(domain, key, lockType, elapsed, i + 1, acquired);
+        if (outcome != LockOutcomeEnum.SUCCESS || i > 0) {
+            // 首次尝试失败，说明发生了争用
+            if (Objects.isNull(keys)) {
+                HotKeyTracker.recordContention(domain, key, elapsed);
+            } else {
+                for (String k : keys) {
+                    HotKeyTracker.recordContention(domain, k, elapsed);
+                }
             }
-            log.debug("第{}次，获取锁失败，休眠【{}】ms，再次尝试获取锁", i, REDIS_LOCK_RETRY_AWAIT_MILLIS);
-            // todo 这里调用parkNanos，之前考虑的不清楚，有时间查一下，应该可以优化，不能是固定时间
-            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(REDIS_LOCK_RETRY_AWAIT_MILLIS));
-            i++;
         }
-        return value;
+        return acquired ? value : null;
+    }
+
+    /**
+     * 分段锁首次加锁失败时读取持有者的value，区分真实争用和伪共享，读取失败不影响加锁
+     *
+     * @param domain 业务领域
+     * @param key    分段key
+     * @param value  加锁方的value
+     */
+    private void recordStripeContention(String domain, String key, String value) {
+        try {
+            LockStripes.recordContention(domain, value, backend.get(key));
+        } catch (RuntimeException e) {
+            log.debug("读取分段锁持有者失败，lockKey={}", key, e);
+        }
     }
 
     /**
@@ -95,22 +355,103 @@ public class RedisLockProxy {
      * @return 加锁结果
      */
     public boolean tryRedisIdempotent(String key, long timeout) {
-        String value = createRedisLock(key, timeout, TimeUnit.SECONDS);
-        return Objects.nonNull(value);
+        return backend.mark(key, OwnerIdUtils.nextId(), timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 尝试添加分布式幂等锁，并指定value
+     *
+     * @param key     key
+     * @param timeout 超时时间(单位:s)
+     * @param value   value
+     * @return 加锁结果
+     */
+    public boolean tryRedisIdempotent(String key, long timeout, String value) {
+        return backend.mark(key, value, timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 批量尝试添加分布式幂等锁
+     * <p>
+     * redis后端所有key的 SET NX EX 通过一次pipeline发送，N个key只需一次网络往返；批次内重复的key只有第一个会标记成功
+     *
+     * @param keys    key列表
+     * @param timeout 超时时间(单位:s)
+     * @return 与keys一一对应的加锁结果，true：首次标记
+     */
+    public List<Boolean> tryRedisIdempotentBatch(List<String> keys, long timeout) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String value = StringConst.BATCH + StringConst.UNDERLINE + OwnerIdUtils.nextId();
+        return backend.markBatch(keys, value, timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 紧凑存储模式下尝试添加分布式幂等锁
+     *
+     * @param key 紧凑幂等key
+     * @return 加锁结果，true：首次标记
+     */
+    public boolean tryCompactIdempotent(CompactIdempotentKey key) {
+        return backend.markCompact(key);
+    }
+
+    /**
+     * 紧凑存储模式下批量尝试添加分布式幂等锁，redis后端所有key通过一次pipeline发送
+     *
+     * @param keys 紧凑幂等key列表
+     * @return 与keys一一对应的加锁结果，true：首次标记
+     */
+    public List<Boolean> tryCompactIdempotentBatch(List<CompactIdempotentKey> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return backend.markCompactBatch(keys);
+    }
+
+    /**
+     * 紧凑存储模式下释放分布式幂等锁
+     *
+     * @param key 紧凑幂等key
+     */
+    public void releaseCompactIdempotent(CompactIdempotentKey key) {
+        backend.releaseCompact(key);
+    }
+
+    /**
+     * 获取分布式幂等锁的value
+     *
+     * @param key key
+     * @return value，key不存在时返回null
+     */
+    public String getIdempotentValue(String key) {
+        return backend.get(key);
+    }
+
+    /**
+     * 更新分布式幂等锁的value，key已不存在（过期或被释放）时不更新
+     *
+     * @param key     key
+     * @param value   value
+     * @param timeout 超时时间(单位:s)
+     * @return 更新结果
+     */
+    public boolean updateIdempotentValue(String key, String value, long timeout) {
+        return backend.update(key, value, timeout, TimeUnit.SECONDS);
     }
 
     /**
      * 创建redis锁
      *
      * @param key     锁Key
+     * @param value   锁Value
      * @param timeout 超时时间
      * @param unit    超时时间单位
-     * @return 成功返回锁Value，失败返回null
+     * @return true：加锁成功
      */
-    private String createRedisLock(String key, long timeout, TimeUnit unit) {
-        String value = key + StringConst.UNDERLINE + System.nanoTime() + StringConst.UNDERLINE + LocalUtils.getLocalIp();
-        boolean result = redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit);
-        return result ? value : null;
+    private boolean createRedisLock(String key, String value, long timeout, TimeUnit unit) {
+        return backend.acquire(key, value, timeout, unit);
     }
 
     /**
@@ -121,12 +462,21 @@ public class RedisLockProxy {
      * @return 续约结果 true：续约成功，false：续约失败
      */
     public boolean renewLockKey(String key, String value) {
-        String res = redisTemplate.opsForValue().get(key);
-        // 判断值是否是该线程设置的，如果不是则不续约
-        if (!Objects.equals(value, res)) {
-            return false;
-        }
-        return redisTemplate.expire(key, REDIS_LOCK_KEY_EXPIRE_MILLIS, TimeUnit.MILLISECONDS);
+        // 值不是该线程设置的则不续约
+        return backend.renew(key, value, REDIS_LOCK_KEY_EXPIRE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 给对应key的redis锁续约，过期时间使用业务领域的策略
+     *
+     * @param domain 业务领域
+     * @param key    redis锁 key
+     * @param value  redis锁 value
+     * @return 续约结果 true：续约成功，false：续约失败
+     */
+    public boolean renewLockKey(String domain, String key, String value) {
+        long leaseMillis = LockPolicies.get(domain).leaseMillis(REDIS_LOCK_KEY_EXPIRE_MILLIS);
+        return backend.renew(key, value, leaseMillis, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -136,7 +486,7 @@ public class RedisLockProxy {
      * @return true:成功，也就是锁没有被其他占有，false:失败
      */
     public boolean checkRedisLock(String key) {
-        return redisTemplate.hasKey(key);
+        return !backend.exists(key);
     }
 
     /**
@@ -148,10 +498,17 @@ public class RedisLockProxy {
      * @param value redis锁 value
      */
     public void unlock(String key, String value) {
-        String val = redisTemplate.opsForValue().get(key);
-        if (StringUtils.equals(value, val)) {
-            redisTemplate.delete(key);
-        }
+        backend.release(key, value);
+    }
+
+    /**
+     * 批量解锁，只删除value一致的key
+     *
+     * @param keys  redis锁 key集合
+     * @param value redis锁 value
+     */
+    public void unlockAll(Collection<String> keys, String value) {
+        backend.releaseAll(keys, value);
     }
 
     /**
@@ -162,6 +519,15 @@ public class RedisLockProxy {
      * @param key redis锁 key
      */
     public void unlock(String key) {
-        redisTemplate.delete(key);
+        backend.releaseAll(Collections.singletonList(key));
+    }
+
+    /**
+     * 批量解锁
+     *
+     * @param keys redis锁 key集合
+     */
+    public void unlock(Collection<String> keys) {
+        backend.releaseAll(keys);
     }
 }
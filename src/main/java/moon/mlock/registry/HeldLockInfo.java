@@ -0,0 +1,118 @@
+package moon.mlock.registry;
+
+/**
+ * 当前JVM持有的锁
+ *
+ * @author moon
+ */
+public class HeldLockInfo {
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * 锁key
+     */
+    private final String key;
+
+    /**
+     * 锁类型
+     */
+    private final String lockType;
+
+    /**
+     * 持有线程名称
+     */
+    private final String holder;
+
+    /**
+     * 持有线程id
+     */
+    private final long holderThreadId;
+
+    /**
+     * 加锁时间，单位ms
+     */
+    private final long acquiredAt;
+
+    /**
+     * 已持有时长，单位ms
+     */
+    private final long ageMillis;
+
+    /**
+     * 重入次数
+     */
+    private final int reentryCount;
+
+    /**
+     * 续约次数
+     */
+    private final int renewCount;
+
+    /**
+     * 持有线程，不作为MXBean属性暴露
+     */
+    private final transient Thread holderThread;
+
+    public HeldLockInfo(String domain, String key, String lockType, Thread holderThread, long acquiredAt,
+                        long ageMillis, int reentryCount, int renewCount) {
+        this.domain = domain;
+        this.key = key;
+        this.lockType = lockType;
+        this.holder = holderThread.getName();
+        this.holderThreadId = holderThread.getId();
+        this.acquiredAt = acquiredAt;
+        this.ageMillis = ageMillis;
+        this.reentryCount = reentryCount;
+        this.renewCount = renewCount;
+        this.holderThread = holderThread;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getLockType() {
+        return lockType;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public long getHolderThreadId() {
+        return holderThreadId;
+    }
+
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public long getAgeMillis() {
+        return ageMillis;
+    }
+
+    public int getReentryCount() {
+        return reentryCount;
+    }
+
+    public int getRenewCount() {
+        return renewCount;
+    }
+
+    /**
+     * 持有线程
+     *
+     * @return 持有线程
+     */
+    public Thread holderThread() {
+        return holderThread;
+    }
+}
@@ -0,0 +1,169 @@
+package moon.mlock.registry;
+
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import moon.mlock.lock.impl.MultiRedisLock;
+import moon.mlock.lock.impl.ReentrantRedisLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * 锁注册表
+ * <p>
+ * 注册为Spring bean后以MXBean的形式暴露当前JVM持有的锁（持有线程、持有时长、重入次数、续约次数），
+ * 并定时检测持有时长超过阈值的锁，每次持有只捕获一次持有线程的堆栈，记录日志并保留最近 {@link #MAX_SLOW_HOLDERS} 条
+ *
+ * @author moon
+ */
+@Slf4j
+public class LockRegistry implements LockRegistryMXBean {
+
+    /**
+     * MXBean名称
+     */
+    public static final String OBJECT_NAME = "moon.mlock:type=LockRegistry";
+
+    /**
+     * 保留的慢持有者数量
+     */
+    private static final int MAX_SLOW_HOLDERS = 100;
+
+    /**
+     * 慢持有者阈值，单位ms
+     */
+    @Value("${mlock.registry.slow-holder-threshold-millis:30000}")
+    private volatile long slowHolderThresholdMillis = 30000L;
+
+    /**
+     * 最近捕获的慢持有者，队头最新
+     */
+    private final Deque<SlowHolderInfo> slowHolders = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 已捕获过堆栈的持有
+     * <p>
+     * key:持有线程id_锁key，value:加锁时间
+     */
+    private final Map<String, Long> reportedHolds = Maps.newConcurrentMap();
+
+    private ObjectName objectName;
+
+    @PostConstruct
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            log.error("LockRegistry register mbean ex:", e);
+        }
+    }
+
+    @PreDestroy
+    public void unregister() {
+        if (Objects.isNull(objectName)) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            log.error("LockRegistry unregister mbean ex:", e);
+        }
+    }
+
+    @Override
+    public int getHeldLockCount() {
+        return getHeldLocks().size();
+    }
+
+    @Override
+    public List<HeldLockInfo> getHeldLocks() {
+        List<HeldLockInfo> heldLocks = ReentrantRedisLock.getHeldLocks();
+        heldLocks.addAll(MultiRedisLock.getHeldLocks());
+        heldLocks.sort(Comparator.comparingLong(HeldLockInfo::getAgeMillis).reversed());
+        return heldLocks;
+    }
+
+    @Override
+    public List<SlowHolderInfo> getSlowHolders() {
+        return Collections.unmodifiableList(new ArrayList<>(slowHolders));
+    }
+
+    @Override
+    public long getSlowHolderThresholdMillis() {
+        return slowHolderThresholdMillis;
+    }
+
+    @Override
+    public void setSlowHolderThresholdMillis(long slowHolderThresholdMillis) {
+        this.slowHolderThresholdMillis = slowHolderThresholdMillis;
+    }
+
+    /**
+     * 检测慢持有者（定时任务执行）
+     * 暂定5秒钟执行一次
+     */
+    @Scheduled(cron = "*/5 * * * * ?")
+    public void detectSlowHolders() {
+        try {
+            long threshold = slowHolderThresholdMillis;
+            Set<String> held = new HashSet<>();
+            for (HeldLockInfo info : getHeldLocks()) {
+                String holdKey = info.getHolderThreadId() + "_" + info.getKey();
+                held.add(holdKey);
+                if (info.getAgeMillis() < threshold) {
+                    continue;
+                }
+                Long reported = reportedHolds.get(holdKey);
+                if (Objects.nonNull(reported) && reported == info.getAcquiredAt()) {
+                    continue;
+                }
+                reportedHolds.put(holdKey, info.getAcquiredAt());
+                capture(info);
+            }
+            // 已释放的持有不再跟踪
+            reportedHolds.keySet().retainAll(held);
+        } catch (Exception e) {
+            log.error("LockRegistry detectSlowHolders ex:", e);
+        }
+    }
+
+    /**
+     * 捕获持有线程的堆栈
+     *
+     * @param info 持有的锁
+     */
+    private void capture(HeldLockInfo info) {
+        StringBuilder stack = new StringBuilder();
+        for (StackTraceElement element : info.holderThread().getStackTrace()) {
+            stack.append("\tat ").append(element).append('\n');
+        }
+        SlowHolderInfo slowHolder = new SlowHolderInfo(info.getDomain(), info.getKey(), info.getHolder(),
+                info.getAgeMillis(), System.currentTimeMillis(), stack.toString());
+        slowHolders.addFirst(slowHolder);
+        while (slowHolders.size() > MAX_SLOW_HOLDERS) {
+            slowHolders.pollLast();
+        }
+        log.warn("slow lock holder domain={} key={} holder={} ageMillis={} renewCount={}\n{}", info.getDomain(),
+                info.getKey(), info.getHolder(), info.getAgeMillis(), info.getRenewCount(), slowHolder.getStackTrace());
+    }
+}
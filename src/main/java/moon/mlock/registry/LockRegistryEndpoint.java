@@ -0,0 +1,69 @@
+package moon.mlock.registry;
+
+import moon.mlock.limit.GradientConcurrencyLimiter;
+import moon.mlock.limit.LockWaitLimiters;
+import moon.mlock.metrics.HotKeyTracker;
+import moon.mlock.policy.LockPolicies;
+import moon.mlock.stripe.LockStripes;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 锁注册表actuator端点：/actuator/mlock
+ * <p>
+ * 需要引入spring-boot-actuator，与 {@link LockRegistry} 一起注册为bean
+ *
+ * @author moon
+ */
+@Endpoint(id = "mlock")
+public class LockRegistryEndpoint {
+
+    private final LockRegistry lockRegistry;
+
+    public LockRegistryEndpoint(LockRegistry lockRegistry) {
+        this.lockRegistry = lockRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> registry() {
+        Map<String, Object> hotKeys = new LinkedHashMap<>();
+        for (String domain : HotKeyTracker.domains()) {
+            hotKeys.put(domain, HotKeyTracker.topContended(domain));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("heldLocks", lockRegistry.getHeldLocks());
+        result.put("slowHolders", lockRegistry.getSlowHolders());
+        result.put("slowHolderThresholdMillis", lockRegistry.getSlowHolderThresholdMillis());
+        result.put("hotKeys", hotKeys);
+        Map<String, Object> limiters = new LinkedHashMap<>();
+        for (Map.Entry<String, GradientConcurrencyLimiter> entry : LockWaitLimiters.getLimiters().entrySet()) {
+            GradientConcurrencyLimiter limiter = entry.getValue();
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("limit", limiter.getLimit());
+            info.put("inflight", limiter.getInflight());
+            info.put("shed", limiter.getShedCount());
+            info.put("shortRttMicros", limiter.getShortRttMicros());
+            info.put("longRttMicros", limiter.getLongRttMicros());
+            limiters.put(entry.getKey(), info);
+        }
+        result.put("waitLimiters", limiters);
+        Map<String, Object> stripes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : LockStripes.getDomainStripes().entrySet()) {
+            LockStripes.StripeStats stats = LockStripes.getStats().get(entry.getKey());
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("stripes", entry.getValue());
+            info.put("sameKey", Objects.isNull(stats) ? 0L : stats.getSameKey());
+            info.put("falseSharing", Objects.isNull(stats) ? 0L : stats.getFalseSharing());
+            info.put("falseSharingRatio", Objects.isNull(stats) ? 0D : stats.getFalseSharingRatio());
+            stripes.put(entry.getKey(), info);
+        }
+        result.put("stripes", stripes);
+        result.put("defaultPolicy", LockPolicies.getDefaultPolicy());
+        result.put("policies", LockPolicies.getPolicies());
+        return result;
+    }
+}
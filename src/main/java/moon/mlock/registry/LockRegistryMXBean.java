@@ -0,0 +1,48 @@
+package moon.mlock.registry;
+
+import java.util.List;
+
+/**
+ * 锁注册表JMX接口
+ * <p>
+ * ObjectName：moon.mlock:type=LockRegistry
+ *
+ * @author moon
+ */
+public interface LockRegistryMXBean {
+
+    /**
+     * 当前JVM持有的锁数量
+     *
+     * @return 持有的锁数量
+     */
+    int getHeldLockCount();
+
+    /**
+     * 当前JVM持有的锁，按持有时长降序
+     *
+     * @return 持有的锁
+     */
+    List<HeldLockInfo> getHeldLocks();
+
+    /**
+     * 最近捕获的慢持有者，按捕获时间降序
+     *
+     * @return 慢持有者
+     */
+    List<SlowHolderInfo> getSlowHolders();
+
+    /**
+     * 慢持有者阈值，单位ms
+     *
+     * @return 慢持有者阈值
+     */
+    long getSlowHolderThresholdMillis();
+
+    /**
+     * 设置慢持有者阈值，单位ms
+     *
+     * @param slowHolderThresholdMillis 慢持有者阈值
+     */
+    void setSlowHolderThresholdMillis(long slowHolderThresholdMillis);
+}
@@ -0,0 +1,72 @@
+package moon.mlock.registry;
+
+/**
+ * 慢持有者，持有锁超过阈值时捕获的持有线程堆栈
+ *
+ * @author moon
+ */
+public class SlowHolderInfo {
+
+    /**
+     * 业务领域
+     */
+    private final String domain;
+
+    /**
+     * 锁key
+     */
+    private final String key;
+
+    /**
+     * 持有线程名称
+     */
+    private final String holder;
+
+    /**
+     * 捕获堆栈时已持有的时长，单位ms
+     */
+    private final long ageMillis;
+
+    /**
+     * 捕获时间，单位ms
+     */
+    private final long capturedAt;
+
+    /**
+     * 持有线程堆栈
+     */
+    private final String stackTrace;
+
+    public SlowHolderInfo(String domain, String key, String holder, long ageMillis, long capturedAt, String stackTrace) {
+        this.domain = domain;
+        this.key = key;
+        this.holder = holder;
+        this.ageMillis = ageMillis;
+        this.capturedAt = capturedAt;
+        this.stackTrace = stackTrace;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public long getAgeMillis() {
+        return ageMillis;
+    }
+
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    public String getStackTrace() {
+        return stackTrace;
+    }
+}
@@ -0,0 +1,250 @@
+package moon.mlock.stripe;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.metrics.LockMetrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 锁分段入口
+ * <p>
+ * 按超高基数id加锁的domain（如按订单号、用户id）会产生数百万个短生命周期的redis key和同样数量的续约任务条目。
+ * 配置 {@code mlock.stripe.domains} 后，该domain的redis锁key按hash映射到固定数量的分段key上：
+ * <ul>
+ *     <li>redis key数量和续约条目数量不超过分段数，与业务key的数量无关</li>
+ *     <li>不同业务key落在同一分段时互斥，即伪共享：分段数为N、同时持有的锁为M时，一次加锁遇到伪共享的概率约为 M/N</li>
+ *     <li>锁value带有业务key的hash，加锁首次失败时读取持有者的value，区分是同一业务key的真实争用还是不同业务key的伪共享，
+ *     通过 {@link #getStats()} 和 mlock.stripe.contention 指标查看</li>
+ *     <li>多key锁（包括所有key落在同一分段时）的value不带业务key的hash，其争用不区分真实争用和伪共享，不计入统计</li>
+ * </ul>
+ * 注意：
+ * <ul>
+ *     <li>分段映射只作用于redis锁，熔断降级的本地锁仍按业务key加锁</li>
+ *     <li>同一线程嵌套加锁多个业务key时，不同分段之间的加锁顺序无法保证，可能与其他线程互相等待直到超时，分段domain内避免嵌套加锁</li>
+ *     <li>修改分段数会改变分段key，修改期间新旧节点之间的锁互不可见，应在停机或无并发时修改</li>
+ * </ul>
+ *
+ * @author moon
+ */
+public class LockStripes {
+
+    /**
+     * 分段key中分段序号的前缀
+     */
+    private static final String STRIPE_PREFIX = "stripe#";
+
+    /**
+     * 锁value中持有者id与业务key hash之间的分隔符，持有者id中不含该字符
+     */
+    private static final char HASH_SEPARATOR = '#';
+
+    /**
+     * key:业务领域，value:分段数
+     */
+    private static volatile Map<String, Integer> stripes = ImmutableMap.of();
+
+    /**
+     * key:业务领域，value:争用统计
+     */
+    private static final Map<String, StripeStats> STATS = Maps.newConcurrentMap();
+
+    private LockStripes() {
+    }
+
+    /**
+     * 配置分段，已有的统计会被清除
+     *
+     * @param domainStripes key:业务领域，value:分段数，小于等于0的配置忽略
+     */
+    public static void configure(Map<String, Integer> domainStripes) {
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (Map.Entry<String, Integer> entry : domainStripes.entrySet()) {
+            if (Objects.nonNull(entry.getValue()) && entry.getValue() > 0) {
+                builder.put(entry.getKey(), entry.getValue());
+            }
+        }
+        stripes = builder.build();
+        STATS.clear();
+    }
+
+    /**
+     * 业务领域的分段数
+     *
+     * @param domain 业务领域
+     * @return 分段数，未开启分段时为0
+     */
+    public static int getStripes(String domain) {
+        Integer count = Objects.isNull(domain) ? null : stripes.get(domain);
+        return Objects.isNull(count) ? 0 : count;
+    }
+
+    /**
+     * 业务领域是否开启分段
+     *
+     * @param domain 业务领域
+     * @return true：开启
+     */
+    public static boolean isStriped(String domain) {
+        return getStripes(domain) > 0;
+    }
+
+    /**
+     * 当前配置的分段
+     *
+     * @return key:业务领域，value:分段数
+     */
+    public static Map<String, Integer> getDomainStripes() {
+        return stripes;
+    }
+
+    /**
+     * 锁key映射到分段key，未开启分段时原样返回
+     * <p>
+     * 使用 {@link String#hashCode()} 计算，不同节点、不同进程的映射结果一致
+     *
+     * @param domain  业务领域
+     * @param lockKey 锁key
+     * @return 分段key
+     */
+    public static String stripeKey(String domain, String lockKey) {
+        int count = getStripes(domain);
+        if (count <= 0) {
+            return lockKey;
+        }
+        int index = (hash(lockKey) & Integer.MAX_VALUE) % count;
+        return KeyLayout.lockKey(domain, STRIPE_PREFIX + index);
+    }
+
+    /**
+     * 多个锁key映射到分段key，映射到同一分段的key合并
+     *
+     * @param domain   业务领域
+     * @param lockKeys 锁key
+     * @return 分段key列表，已排序去重
+     */
+    public static List<String> stripeKeys(String domain, Collection<String> lockKeys) {
+        TreeSet<String> stripeKeys = new TreeSet<>();
+        for (String lockKey : lockKeys) {
+            stripeKeys.add(stripeKey(domain, lockKey));
+        }
+        return new ArrayList<>(stripeKeys);
+    }
+
+    /**
+     * 分段锁的value：持有者id + 业务key的hash，用于区分伪共享
+     *
+     * @param ownerId 持有者id
+     * @param lockKey 锁key（映射前）
+     * @return 锁value
+     */
+    public static String stripeValue(String ownerId, String lockKey) {
+        return ownerId + HASH_SEPARATOR + Integer.toHexString(hash(lockKey));
+    }
+
+    /**
+     * value是否由 {@link #stripeValue(String, String)} 生成，即带有业务key的hash
+     *
+     * @param value 锁value
+     * @return true：带有业务key的hash
+     */
+    public static boolean isStripeValue(String value) {
+        return Objects.nonNull(keyHash(value));
+    }
+
+    /**
+     * 记录一次分段锁争用：比较持有者和加锁方value中的业务key hash
+     * <p>
+     * 持有者已释放或value中没有业务key的hash（如多key锁）时无法区分，不记录
+     *
+     * @param domain      业务领域
+     * @param value       加锁方的value
+     * @param holderValue 持有者的value
+     */
+    public static void recordContention(String domain, String value, String holderValue) {
+        String hash = keyHash(value);
+        String holderHash = keyHash(holderValue);
+        if (Objects.isNull(hash) || Objects.isNull(holderHash)) {
+            return;
+        }
+        boolean falseSharing = !hash.equals(holderHash);
+        StripeStats stats = STATS.get(domain);
+        if (Objects.isNull(stats)) {
+            stats = STATS.computeIfAbsent(domain, d -> new StripeStats());
+        }
+        (falseSharing ? stats.falseSharing : stats.sameKey).increment();
+        LockMetrics.recordStripeContention(domain, falseSharing);
+    }
+
+    /**
+     * 分段争用统计
+     *
+     * @return key:业务领域，value:统计
+     */
+    public static Map<String, StripeStats> getStats() {
+        return STATS;
+    }
+
+    private static String keyHash(String value) {
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        int index = value.lastIndexOf(HASH_SEPARATOR);
+        return index < 0 ? null : value.substring(index + 1);
+    }
+
+    /**
+     * 在 {@link String#hashCode()} 的基础上打散（murmur3 fmix32），避免相近的id集中在少数分段
+     */
+    private static int hash(String lockKey) {
+        int h = lockKey.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 单个业务领域的分段争用统计
+     */
+    public static class StripeStats {
+
+        /**
+         * 同一业务key的真实争用次数
+         */
+        private final LongAdder sameKey = new LongAdder();
+
+        /**
+         * 不同业务key落在同一分段的伪共享次数
+         */
+        private final LongAdder falseSharing = new LongAdder();
+
+        public long getSameKey() {
+            return sameKey.sum();
+        }
+
+        public long getFalseSharing() {
+            return falseSharing.sum();
+        }
+
+        /**
+         * 争用中伪共享的比例
+         *
+         * @return 伪共享比例，没有争用时为0
+         */
+        public double getFalseSharingRatio() {
+            long collisions = falseSharing.sum();
+            long total = collisions + sameKey.sum();
+            return total == 0 ? 0D : (double) collisions / total;
+        }
+    }
+}
@@ -2,12 +2,17 @@ package moon.mlock.task;
 
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
+import moon.mlock.common.enums.LockTypeEnum;
+import moon.mlock.jfr.LockJfr;
+import moon.mlock.metrics.LockMetrics;
 import moon.mlock.proxy.RedisLockProxy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Redis Key 续约
@@ -20,7 +25,7 @@ public class RedisLockKeyRenewTask {
     /**
      * 所有redis锁的key
      */
-    private static final Map<String, String> REDIS_LOCK_KEY_MAP = Maps.newConcurrentMap();
+    private static final Map<String, RenewLockKey> REDIS_LOCK_KEY_MAP = Maps.newConcurrentMap();
 
     /**
      * redis lock 代理
@@ -37,15 +42,21 @@ public class RedisLockKeyRenewTask {
     private void renew() {
         try {
             log.debug("REDIS_LOCK_KEY_MAP Size={}", REDIS_LOCK_KEY_MAP.size());
-            Iterator<Map.Entry<String, String>> iterator = REDIS_LOCK_KEY_MAP.entrySet().iterator();
+            Iterator<Map.Entry<String, RenewLockKey>> iterator = REDIS_LOCK_KEY_MAP.entrySet().iterator();
             while (iterator.hasNext()) {
-                Map.Entry<String, String> next = iterator.next();
+                Map.Entry<String, RenewLockKey> next = iterator.next();
                 String key = next.getKey();
-                String value = next.getValue();
+                RenewLockKey renewLockKey = next.getValue();
+                String value = renewLockKey.value;
                 log.debug("redis key={}，开始续约，value={}", key, value);
-                boolean result = proxy.renewLockKey(key, value);
+                long start = System.nanoTime();
+                boolean result = proxy.renewLockKey(renewLockKey.domain, key, value);
                 log.debug("redis key={}，结束续约，result={}", key, result);
-                if (!result) {
+                LockMetrics.recordRenew(renewLockKey.domain, renewLockKey.lockType, result);
+                LockJfr.renew(renewLockKey.domain, key, renewLockKey.lockType, System.nanoTime() - start, result);
+                if (result) {
+                    renewLockKey.renewCount.incrementAndGet();
+                } else {
                     iterator.remove();
                 }
             }
@@ -61,10 +72,33 @@ public class RedisLockKeyRenewTask {
      * @param value redis value
      */
     public static void putLockKey(String key, String value) {
-        REDIS_LOCK_KEY_MAP.put(key, value);
+        putLockKey(LockMetrics.UNKNOWN_DOMAIN, LockTypeEnum.LOCK_REDIS, key, value);
+    }
+
+    /**
+     * 将redis锁的k-v放入缓存中，以便续约
+     *
+     * @param domain   业务领域
+     * @param lockType 锁类型
+     * @param key      redis key
+     * @param value    redis value
+     */
+    public static void putLockKey(String domain, LockTypeEnum lockType, String key, String value) {
+        REDIS_LOCK_KEY_MAP.put(key, new RenewLockKey(domain, lockType, value));
     }
 
 
+    /**
+     * 查询redis锁的续约成功次数
+     *
+     * @param key redis key
+     * @return 续约成功次数，不在续约缓存中时返回0
+     */
+    public static int getRenewCount(String key) {
+        RenewLockKey renewLockKey = REDIS_LOCK_KEY_MAP.get(key);
+        return Objects.isNull(renewLockKey) ? 0 : renewLockKey.renewCount.get();
+    }
+
     /**
      * 删除LockKey
      *
@@ -73,4 +107,35 @@ public class RedisLockKeyRenewTask {
     public static void removeLockKey(String key) {
         REDIS_LOCK_KEY_MAP.remove(key);
     }
+
+    /**
+     * 待续约的redis锁
+     */
+    private static class RenewLockKey {
+        /**
+         * 业务领域
+         */
+        private final String domain;
+
+        /**
+         * 锁类型
+         */
+        private final LockTypeEnum lockType;
+
+        /**
+         * redis value
+         */
+        private final String value;
+
+        /**
+         * 续约成功次数
+         */
+        private final AtomicInteger renewCount = new AtomicInteger();
+
+        private RenewLockKey(String domain, LockTypeEnum lockType, String value) {
+            this.domain = domain;
+            this.lockType = lockType;
+            this.value = value;
+        }
+    }
 }
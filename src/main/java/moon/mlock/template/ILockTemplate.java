@@ -3,6 +3,8 @@ package moon.mlock.template;
 import moon.mlock.common.enums.LockTypeEnum;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Lock 模板类
@@ -23,4 +25,46 @@ public interface ILockTemplate<T> {
      */
     T execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, ILockCallback<T> callback);
 
+    /**
+     * 加锁成功后执行action
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @param <R>      返回值类型
+     * @return 执行结果，只记录加锁阶段的失败和异常，action抛出的异常直接抛给调用方
+     */
+    <R> LockResult<R> execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, Supplier<R> action);
+
+    /**
+     * 加锁成功后执行action，未成功时返回fallback的结果
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @param fallback 加锁失败、中断或加锁异常时执行，入参为未成功的结果；action抛出的异常直接抛给调用方，不执行fallback
+     * @param <R>      返回值类型
+     * @return action或fallback的返回值
+     */
+    <R> R execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit,
+                  Supplier<R> action, Function<LockResult<R>, R> fallback);
+
+    /**
+     * 加锁成功后执行action，无返回值
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @return 执行结果，只记录加锁阶段的失败和异常，action抛出的异常直接抛给调用方
+     */
+    LockResult<Void> run(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, Runnable action);
 }
@@ -0,0 +1,154 @@
+package moon.mlock.template;
+
+import moon.mlock.common.enums.LockOutcomeEnum;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 加锁执行结果
+ * <p>
+ * 不可变对象。加锁失败和无返回值的成功使用共享实例，失败路径不分配对象、不抛出异常；只有带返回值的成功和异常会创建新实例
+ *
+ * @param <T> 返回值类型
+ * @author moon
+ */
+public final class LockResult<T> {
+
+    /**
+     * 无返回值的成功
+     */
+    private static final LockResult<?> SUCCESS = new LockResult<>(LockOutcomeEnum.SUCCESS, null, null);
+
+    /**
+     * 加锁失败，锁被占用或等待超时
+     */
+    private static final LockResult<?> FAIL = new LockResult<>(LockOutcomeEnum.FAIL, null, null);
+
+    /**
+     * 结果
+     */
+    private final LockOutcomeEnum outcome;
+
+    /**
+     * 返回值，只有成功时可能不为null
+     */
+    private final T value;
+
+    /**
+     * 异常，只有异常和中断时不为null
+     */
+    private final Exception exception;
+
+    private LockResult(LockOutcomeEnum outcome, T value, Exception exception) {
+        this.outcome = outcome;
+        this.value = value;
+        this.exception = exception;
+    }
+
+    /**
+     * 加锁成功并执行完成
+     *
+     * @param value 返回值
+     * @param <T>   返回值类型
+     * @return 结果
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> LockResult<T> success(T value) {
+        return Objects.isNull(value) ? (LockResult<T>) SUCCESS : new LockResult<>(LockOutcomeEnum.SUCCESS, value, null);
+    }
+
+    /**
+     * 加锁失败
+     *
+     * @param <T> 返回值类型
+     * @return 共享的失败结果
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> LockResult<T> fail() {
+        return (LockResult<T>) FAIL;
+    }
+
+    /**
+     * 获取锁或加锁过程中发生异常，加锁成功后执行逻辑抛出的异常不记录在结果中
+     *
+     * @param e   异常
+     * @param <T> 返回值类型
+     * @return 结果
+     */
+    public static <T> LockResult<T> error(Exception e) {
+        return new LockResult<>(LockOutcomeEnum.ERROR, null, e);
+    }
+
+    /**
+     * 等待锁时线程被中断
+     *
+     * @param e   中断异常
+     * @param <T> 返回值类型
+     * @return 结果
+     */
+    public static <T> LockResult<T> interrupted(InterruptedException e) {
+        return new LockResult<>(LockOutcomeEnum.INTERRUPTED, null, e);
+    }
+
+    /**
+     * 是否加锁成功并执行完成
+     *
+     * @return true：成功
+     */
+    public boolean isSuccess() {
+        return outcome == LockOutcomeEnum.SUCCESS;
+    }
+
+    /**
+     * 成功时返回执行结果，否则返回默认值
+     *
+     * @param other 默认值
+     * @return 执行结果或默认值
+     */
+    public T orElse(T other) {
+        return isSuccess() ? value : other;
+    }
+
+    /**
+     * 成功时返回执行结果，否则返回supplier提供的值
+     *
+     * @param other 默认值提供者
+     * @return 执行结果或默认值
+     */
+    public T orElseGet(Supplier<? extends T> other) {
+        return isSuccess() ? value : other.get();
+    }
+
+    /**
+     * 成功时返回执行结果，否则抛出supplier提供的异常
+     *
+     * @param exceptionSupplier 异常提供者
+     * @param <X>               异常类型
+     * @return 执行结果
+     * @throws X 未成功时抛出
+     */
+    public <X extends Throwable> T orElseThrow(Supplier<? extends X> exceptionSupplier) throws X {
+        if (isSuccess()) {
+            return value;
+        }
+        throw exceptionSupplier.get();
+    }
+
+    public LockOutcomeEnum getOutcome() {
+        return outcome;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "LockResult(outcome=" + outcome.getName() + ", value=" + value + ", exception=" + exception + ")";
+    }
+}
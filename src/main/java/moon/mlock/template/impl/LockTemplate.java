@@ -4,13 +4,21 @@ import lombok.extern.slf4j.Slf4j;
 import moon.mlock.common.enums.LockTypeEnum;
 import moon.mlock.factory.LockFactory;
 import moon.mlock.lock.ILock;
+import moon.mlock.policy.LockPolicies;
+import moon.mlock.policy.LockPolicy;
 import moon.mlock.template.ILockCallback;
 import moon.mlock.template.ILockTemplate;
+import moon.mlock.template.LockResult;
 
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Lock模板类
+ * <p>
+ * 模板本身无状态，可作为单例共用；除 {@link ILockCallback} 回调外，也可传入 Supplier/Runnable，返回 {@link LockResult}
  *
  * @author moon
  */
@@ -29,8 +37,10 @@ public class LockTemplate<T> implements ILockTemplate<T> {
      */
     @Override
     public T execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, ILockCallback<T> callback) {
-        try (ILock lock = LockFactory.getLock(lockType, domain, key)) {
-            if (lock.tryLock(timeout, unit)) {
+        // 运行时策略优先于入参
+        LockPolicy policy = LockPolicies.get(domain);
+        try (ILock lock = LockFactory.getLock(policy.lockType(lockType), domain, key)) {
+            if (tryLock(lock, policy, timeout, unit)) {
                 return callback.success();
             } else {
                 return callback.fail();
@@ -44,4 +54,112 @@ public class LockTemplate<T> implements ILockTemplate<T> {
             return callback.ex(e);
         }
     }
+
+    /**
+     * 加锁成功后执行action，加锁失败返回共享的失败结果，不创建回调对象
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @param <R>      返回值类型
+     * @return 执行结果，只记录加锁阶段的失败和异常，action抛出的异常直接抛给调用方
+     */
+    @Override
+    public <R> LockResult<R> execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, Supplier<R> action) {
+        return doExecute(lockType, domain, key, timeout, unit, action, null);
+    }
+
+    /**
+     * 加锁成功后执行action，未成功时返回fallback的结果
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @param fallback 加锁失败、中断或加锁异常时执行，入参为未成功的结果；action抛出的异常直接抛给调用方，不执行fallback
+     * @param <R>      返回值类型
+     * @return action或fallback的返回值
+     */
+    @Override
+    public <R> R execute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit,
+                         Supplier<R> action, Function<LockResult<R>, R> fallback) {
+        LockResult<R> result = doExecute(lockType, domain, key, timeout, unit, action, null);
+        return result.isSuccess() ? result.getValue() : fallback.apply(result);
+    }
+
+    /**
+     * 加锁成功后执行action，无返回值
+     *
+     * @param lockType 默认锁类型
+     * @param domain   业务类型，自定义
+     * @param key      锁Key
+     * @param timeout  超时时间
+     * @param unit     超时时间单位
+     * @param action   加锁成功后执行的逻辑
+     * @return 执行结果，只记录加锁阶段的失败和异常，action抛出的异常直接抛给调用方
+     */
+    @Override
+    public LockResult<Void> run(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit, Runnable action) {
+        return doExecute(lockType, domain, key, timeout, unit, null, action);
+    }
+
+    /**
+     * 加锁并执行supplier或runnable（二选一），中断时恢复中断标记并返回中断结果
+     * <p>
+     * 只有获取锁、加锁过程中的异常记录在结果中；supplier或runnable的异常在释放锁后原样抛出
+     */
+    private <R> LockResult<R> doExecute(LockTypeEnum lockType, String domain, String key, long timeout, TimeUnit unit,
+                                        Supplier<R> supplier, Runnable runnable) {
+        // 运行时策略优先于入参
+        LockPolicy policy = LockPolicies.get(domain);
+        ILock lock = null;
+        boolean locked = false;
+        try {
+            lock = LockFactory.getLock(policy.lockType(lockType), domain, key);
+            locked = tryLock(lock, policy, timeout, unit);
+        } catch (InterruptedException e) {
+            log.error(e.getMessage(), e);
+            Thread.currentThread().interrupt();
+            return LockResult.interrupted(e);
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return LockResult.error(e);
+        } finally {
+            if (!locked && Objects.nonNull(lock)) {
+                lock.unlock();
+            }
+        }
+        if (!locked) {
+            return LockResult.fail();
+        }
+        try {
+            if (Objects.nonNull(supplier)) {
+                return LockResult.success(supplier.get());
+            }
+            runnable.run();
+            return LockResult.success(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 加锁，等待时间优先使用运行时策略
+     *
+     * @param lock    锁
+     * @param policy  运行时策略
+     * @param timeout 超时时间
+     * @param unit    超时时间单位
+     * @return 加锁结果
+     * @throws InterruptedException 中断异常
+     */
+    private static boolean tryLock(ILock lock, LockPolicy policy, long timeout, TimeUnit unit) throws InterruptedException {
+        return Objects.isNull(policy.getWaitMillis())
+                ? lock.tryLock(timeout, unit) : lock.tryLock(policy.getWaitMillis(), TimeUnit.MILLISECONDS);
+    }
 }
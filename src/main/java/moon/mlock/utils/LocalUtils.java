@@ -67,7 +67,10 @@ public class LocalUtils {
      * 获取下一个id
      *
      * @return 下一个id
+     * @deprecated 全局加锁且每次创建SimpleDateFormat，高并发下串行化所有调用方，
+     * 使用 {@link SnowflakeIdGenerator#nextId()} 或 {@link SnowflakeIdGenerator#nextIdString()} 代替
      */
+    @Deprecated
     public static synchronized String getNextBatchId() {
         assert LOCAL_IP != null;
         return LOCAL_IP.replace(".", "") + getCurrentTimeStr() + getRandNum();
@@ -0,0 +1,73 @@
+package moon.mlock.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 锁持有者id生成工具类
+ * <p>
+ * 持有者id = 节点前缀 + 36进制自增序号，节点前缀由本机ip、进程号和启动时间组成，在类加载时计算一次，
+ * 生成id只需一次无锁自增和一次短字符串拼接，不再使用 {@code UUID.randomUUID()}（共享SecureRandom）和正则替换。
+ * 同一进程内的id不重复，进程重启后启动时间不同，也不会与重启前的id重复
+ * <p>
+ * id只包含ASCII字符，通常不超过30个字符，用作redis锁和幂等锁的value
+ *
+ * @author moon
+ */
+public class OwnerIdUtils {
+
+    /**
+     * 节点前缀与序号之间的分隔符
+     */
+    private static final char SEPARATOR = ':';
+
+    /**
+     * 节点前缀，格式：ip-进程号-启动时间:
+     */
+    private static final String NODE_PREFIX = buildNodePrefix();
+
+    /**
+     * 自增序号
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private OwnerIdUtils() {
+    }
+
+    /**
+     * 获取下一个持有者id
+     *
+     * @return 持有者id
+     */
+    public static String nextId() {
+        return NODE_PREFIX.concat(Long.toString(SEQUENCE.incrementAndGet(), Character.MAX_RADIX));
+    }
+
+    /**
+     * 获取节点前缀
+     *
+     * @return 节点前缀
+     */
+    public static String getNodePrefix() {
+        return NODE_PREFIX;
+    }
+
+    /**
+     * 计算节点前缀，ip和进程号获取失败时使用随机数代替
+     *
+     * @return 节点前缀
+     */
+    private static String buildNodePrefix() {
+        String ip = LocalUtils.getLocalIp();
+        String node = StringUtils.isEmpty(ip)
+                ? Long.toString(ThreadLocalRandom.current().nextInt() & 0xFFFFFFFFL, Character.MAX_RADIX)
+                : ip;
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        String pid = at > 0 ? name.substring(0, at) : Integer.toString(ThreadLocalRandom.current().nextInt(1 << 20));
+        return node + '-' + pid + '-' + Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) + SEPARATOR;
+    }
+}
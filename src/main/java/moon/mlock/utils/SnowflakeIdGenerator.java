@@ -0,0 +1,207 @@
+package moon.mlock.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * <p>
+ * id为63位正整数：41位毫秒时间戳（相对 {@link #EPOCH_MILLIS}）+ 10位节点号 + 12位毫秒内序号。
+ * 时间戳和序号合并保存在一个AtomicLong中，{@link #nextId()} 只做一次CAS，不加锁、不分配对象
+ * （{@link #nextIdString()} 额外分配一个char[]和一个String）：
+ * <ul>
+ *     <li>进入新的毫秒时序号从0开始</li>
+ *     <li>同一毫秒内序号用完（每毫秒4096个）时借用下一毫秒，不自旋等待，持续超发时逻辑时间会短暂超前于系统时间</li>
+ *     <li>系统时间回拨时沿用上次的逻辑时间继续递增，不会生成重复id</li>
+ * </ul>
+ * 节点号通过 {@code mlock.id.node-id} 配置，未配置时取本机ipv4地址的低10位，同一机房内ip低10位重复时必须显式配置。
+ * 重新配置节点号时新生成器与旧生成器共用同一个状态，切换期间仍在使用旧生成器的线程不会与新生成器产生相同的时间戳和序号
+ *
+ * @author moon
+ */
+@Slf4j
+public class SnowflakeIdGenerator {
+
+    /**
+     * 起始时间 2020-01-01 00:00:00 UTC，41位时间戳可使用约69年
+     */
+    public static final long EPOCH_MILLIS = 1577836800000L;
+
+    /**
+     * 节点号位数
+     */
+    public static final int NODE_BITS = 10;
+
+    /**
+     * 毫秒内序号位数
+     */
+    public static final int SEQUENCE_BITS = 12;
+
+    /**
+     * 最大节点号
+     */
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    /**
+     * 定长字符串形式的长度，long最大值为19位十进制数
+     */
+    public static final int STRING_LENGTH = 19;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    /**
+     * 默认生成器
+     */
+    private static volatile SnowflakeIdGenerator defaultGenerator = new SnowflakeIdGenerator(resolveNodeId(-1));
+
+    /**
+     * 节点号左移后的值
+     */
+    private final long nodeBits;
+
+    /**
+     * 高位：相对时间戳，低 {@link #SEQUENCE_BITS} 位：序号
+     */
+    private final AtomicLong state;
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, new AtomicLong());
+    }
+
+    /**
+     * @param nodeId 节点号
+     * @param state  时间戳和序号状态，与其他生成器共用时所有生成器在同一个序列上递增
+     */
+    private SnowflakeIdGenerator(int nodeId, AtomicLong state) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点号取值范围[0, " + MAX_NODE_ID + "]：" + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.state = state;
+    }
+
+    /**
+     * 配置默认生成器的节点号
+     *
+     * @param nodeId 节点号，小于0时取本机ip的低10位
+     */
+    public static void configure(int nodeId) {
+        if (nodeId < 0) {
+            // 默认生成器已按本机ip初始化
+            return;
+        }
+        // 共用旧生成器的状态：逻辑时间不会回退，切换期间旧生成器继续发号也不会与新生成器重复
+        defaultGenerator = new SnowflakeIdGenerator(resolveNodeId(nodeId), defaultGenerator.state);
+    }
+
+    /**
+     * 默认生成器
+     *
+     * @return 默认生成器
+     */
+    public static SnowflakeIdGenerator getDefault() {
+        return defaultGenerator;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return id
+     */
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long timestamp = current >>> SEQUENCE_BITS;
+            long next;
+            if (now > timestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                // 当前逻辑毫秒（含时间回拨后沿用的毫秒）的序号已用完，借用下一毫秒
+                next = (timestamp + 1) << SEQUENCE_BITS;
+            } else {
+                next = current + 1;
+            }
+            if (state.compareAndSet(current, next)) {
+                return (next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 生成下一个id的定长字符串形式
+     *
+     * 每次调用分配一个char[]和一个String
+     *
+     * @return 19位十进制字符串，不足19位时左侧补0，字符串顺序与id大小顺序一致
+     */
+    public String nextIdString() {
+        return toFixedString(nextId());
+    }
+
+    /**
+     * id转换为定长字符串
+     *
+     * @param id id，不能为负数
+     * @return 19位十进制字符串，不足19位时左侧补0
+     */
+    public static String toFixedString(long id) {
+        char[] chars = new char[STRING_LENGTH];
+        long value = id;
+        for (int i = STRING_LENGTH - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 解析id中的时间戳
+     *
+     * @param id id
+     * @return 生成id时的逻辑时间（System.currentTimeMillis）
+     */
+    public static long getTimestampMillis(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    /**
+     * 解析id中的节点号
+     *
+     * @param id id
+     * @return 节点号
+     */
+    public static int getNodeId(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    /**
+     * 计算节点号，未配置时取本机ip的低10位，获取不到ip时随机
+     *
+     * @param nodeId 配置的节点号
+     * @return 节点号
+     */
+    private static int resolveNodeId(int nodeId) {
+        if (nodeId >= 0) {
+            return nodeId;
+        }
+        String ip = LocalUtils.getLocalIp();
+        String[] parts = StringUtils.split(ip, '.');
+        if (Objects.nonNull(parts) && parts.length == 4) {
+            try {
+                return ((Integer.parseInt(parts[2]) << 8) | Integer.parseInt(parts[3])) & MAX_NODE_ID;
+            } catch (NumberFormatException e) {
+                log.warn("SnowflakeIdGenerator parse ip={} ex:", ip, e);
+            }
+        }
+        int random = ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1);
+        log.warn("SnowflakeIdGenerator 未获取到本机ipv4地址，使用随机节点号{}，建议配置 mlock.id.node-id", random);
+        return random;
+    }
+}
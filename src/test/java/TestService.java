@@ -7,6 +7,7 @@ import moon.mlock.template.ILockCallback;
 import moon.mlock.template.impl.LockTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -59,4 +60,9 @@ public class TestService {
     public void IdempotentTest(String token) {
         // todo
     }
+
+    @Idempotent(domain = "IdempotentBatchTest", batch = "#pojos", keys = {"#item.id"})
+    public void IdempotentBatchTest(List<Pojo> pojos) {
+        // pojos 只包含首次出现的元素
+    }
 }
@@ -0,0 +1,223 @@
+package moon.mlock.breaker;
+
+import moon.mlock.backend.CircuitBreakerLockBackend;
+import moon.mlock.backend.InMemoryLockBackend;
+import moon.mlock.backend.LockBackend;
+import moon.mlock.common.enums.CircuitStateEnum;
+import moon.mlock.common.enums.DegradePolicyEnum;
+import moon.mlock.common.exception.LockBackendUnavailableException;
+import moon.mlock.lock.ILock;
+import moon.mlock.lock.impl.DegradableRedisLock;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 熔断器状态机测试：关闭 -> 打开 -> 半开 -> 关闭 / 重新打开
+ *
+ * @author moon
+ */
+public class LockCircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50L;
+
+    private static final int PROBE_CALLS = 2;
+
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static LockCircuitBreaker newBreaker() {
+        return new LockCircuitBreaker(10, 4, 0.5D, 1000L, 1.0D, OPEN_MILLIS, PROBE_CALLS);
+    }
+
+    private static void open(LockCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(FAST_NANOS, true);
+        }
+        assertEquals(CircuitStateEnum.OPEN, breaker.getState());
+    }
+
+    private static void halfOpen(LockCircuitBreaker breaker) throws InterruptedException {
+        open(breaker);
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertEquals(CircuitStateEnum.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void staysClosedBelowMinCalls() {
+        LockCircuitBreaker breaker = newBreaker();
+        breaker.record(FAST_NANOS, true);
+        breaker.record(FAST_NANOS, true);
+        breaker.record(FAST_NANOS, true);
+        assertEquals(CircuitStateEnum.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void opensWhenErrorRateReached() {
+        LockCircuitBreaker breaker = newBreaker();
+        breaker.record(FAST_NANOS, false);
+        breaker.record(FAST_NANOS, false);
+        breaker.record(FAST_NANOS, true);
+        assertEquals(CircuitStateEnum.CLOSED, breaker.getState());
+        breaker.record(FAST_NANOS, true);
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void opensWhenSlowCallRateReached() {
+        LockCircuitBreaker breaker = new LockCircuitBreaker(10, 2, 1.0D, 1L, 0.5D, OPEN_MILLIS, PROBE_CALLS);
+        long slowNanos = TimeUnit.MILLISECONDS.toNanos(5);
+        breaker.record(slowNanos, false);
+        breaker.record(slowNanos, false);
+        assertEquals(CircuitStateEnum.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenLimitsProbes() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        halfOpen(breaker);
+        assertTrue(breaker.isAvailable());
+        for (int i = 0; i < PROBE_CALLS; i++) {
+            assertTrue(breaker.allowRequest());
+        }
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.allowRequest());
+        assertEquals(CircuitStateEnum.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void closesWhenAllProbesSucceed() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        halfOpen(breaker);
+        for (int i = 0; i < PROBE_CALLS; i++) {
+            assertTrue(breaker.allowRequest());
+            breaker.record(FAST_NANOS, false);
+        }
+        assertEquals(CircuitStateEnum.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void reopensWhenProbeFails() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        halfOpen(breaker);
+        assertTrue(breaker.allowRequest());
+        breaker.record(FAST_NANOS, true);
+        assertEquals(CircuitStateEnum.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertEquals(CircuitStateEnum.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void backendRejectsCallsBeyondProbePermits() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        try (InMemoryLockBackend delegate = new InMemoryLockBackend()) {
+            CircuitBreakerLockBackend backend = new CircuitBreakerLockBackend(delegate, breaker);
+            assertTrue(backend.acquire("k", "v", 10, TimeUnit.SECONDS));
+            halfOpen(breaker);
+            // 其他请求占满探测名额
+            for (int i = 0; i < PROBE_CALLS; i++) {
+                assertTrue(breaker.allowRequest());
+            }
+            try {
+                backend.acquire("k2", "v", 10, TimeUnit.SECONDS);
+                fail("half open backend should reject calls beyond probe permits");
+            } catch (LockBackendUnavailableException e) {
+                // expected
+            }
+            assertFalse(delegate.exists("k2"));
+            // 解锁不占用探测名额，也不改变半开状态
+            assertTrue(backend.release("k", "v"));
+            assertEquals(CircuitStateEnum.HALF_OPEN, breaker.getState());
+        }
+    }
+
+    @Test
+    public void cleanupCallsDoNotCloseHalfOpenBreaker() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        try (InMemoryLockBackend delegate = new InMemoryLockBackend()) {
+            CircuitBreakerLockBackend backend = new CircuitBreakerLockBackend(delegate, breaker);
+            assertTrue(backend.acquire("k", "v", 10, TimeUnit.SECONDS));
+            halfOpen(breaker);
+            for (int i = 0; i < PROBE_CALLS * 2; i++) {
+                assertTrue(backend.renew("k", "v", 10, TimeUnit.SECONDS));
+            }
+            assertTrue(backend.release("k", "v"));
+            assertEquals(CircuitStateEnum.HALF_OPEN, breaker.getState());
+            assertTrue(breaker.isAvailable());
+
+            // 只有占用探测名额的调用才能关闭熔断器
+            for (int i = 0; i < PROBE_CALLS; i++) {
+                assertTrue(backend.acquire("p" + i, "v", 10, TimeUnit.SECONDS));
+            }
+            assertEquals(CircuitStateEnum.CLOSED, breaker.getState());
+        }
+    }
+
+    @Test
+    public void degradableLockDegradesWhenProbePermitsExhausted() throws InterruptedException {
+        LockCircuitBreaker breaker = newBreaker();
+        try (InMemoryLockBackend delegate = new InMemoryLockBackend()) {
+            CircuitBreakerLockBackend backend = new CircuitBreakerLockBackend(delegate, breaker);
+            halfOpen(breaker);
+            // 降级判断时还有名额，加锁前被其他请求占满
+            assertTrue(breaker.isAvailable());
+            for (int i = 0; i < PROBE_CALLS; i++) {
+                assertTrue(breaker.allowRequest());
+            }
+            DegradableRedisLock nothing = new DegradableRedisLock(new BackendLock(backend), "test", DegradePolicyEnum.NOTHING);
+            assertTrue(nothing.tryLock(0L, TimeUnit.MILLISECONDS));
+            nothing.unlock();
+            assertFalse(delegate.exists("k"));
+
+            DegradableRedisLock fail = new DegradableRedisLock(new BackendLock(backend), "test", DegradePolicyEnum.FAIL);
+            try {
+                fail.tryLock(0L, TimeUnit.MILLISECONDS);
+                fail("fail policy should not degrade");
+            } catch (LockBackendUnavailableException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * 直接访问存储后端的锁
+     */
+    private static class BackendLock implements ILock {
+
+        private final LockBackend backend;
+
+        private BackendLock(LockBackend backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return backend.acquire("k", "v", 10, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void unlock() {
+            backend.release("k", "v");
+        }
+
+        @Override
+        public boolean checkLock() {
+            return !backend.exists("k");
+        }
+
+        @Override
+        public void close() {
+            unlock();
+        }
+    }
+}
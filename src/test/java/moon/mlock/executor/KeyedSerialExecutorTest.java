@@ -0,0 +1,230 @@
+package moon.mlock.executor;
+
+import com.google.common.collect.Maps;
+import moon.mlock.backend.InMemoryLockBackend;
+import moon.mlock.backend.KeyLayout;
+import moon.mlock.common.exception.GetLockException;
+import moon.mlock.config.LockProperties;
+import moon.mlock.proxy.RedisLockProxy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 按key串行执行器测试：顺序、互斥、租约次数、租约被占用和加锁失败
+ *
+ * @author moon
+ */
+public class KeyedSerialExecutorTest {
+
+    private static final String DOMAIN = "serialTest";
+
+    private static final long TIMEOUT_SECONDS = 5L;
+
+    private CountingLockBackend backend;
+
+    private RedisLockProxy proxy;
+
+    @Before
+    public void setUp() {
+        backend = new CountingLockBackend();
+        proxy = new RedisLockProxy(new LockProperties(), backend);
+    }
+
+    @After
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Test
+    public void runsTasksOfSameKeyInSubmissionOrder() throws Exception {
+        int keys = 4;
+        int tasksPerKey = 200;
+        List<List<Integer>> results = new ArrayList<>(keys);
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 4, proxy, 1000L)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(keys * tasksPerKey);
+            for (int k = 0; k < keys; k++) {
+                results.add(Collections.synchronizedList(new ArrayList<>(tasksPerKey)));
+            }
+            for (int i = 0; i < tasksPerKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    List<Integer> result = results.get(k);
+                    int seq = i;
+                    futures.add(executor.execute("order" + k, () -> result.add(seq)));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        for (List<Integer> result : results) {
+            assertEquals(tasksPerKey, result.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, result.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void neverRunsSameKeyOnTwoWorkers() throws Exception {
+        int keys = 3;
+        AtomicInteger[] running = new AtomicInteger[keys];
+        AtomicBoolean overlapped = new AtomicBoolean();
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 8, proxy, 1000L)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int k = 0; k < keys; k++) {
+                running[k] = new AtomicInteger();
+            }
+            for (int i = 0; i < 300; i++) {
+                AtomicInteger counter = running[i % keys];
+                futures.add(executor.execute("mutex" + (i % keys), () -> {
+                    if (counter.incrementAndGet() != 1) {
+                        overlapped.set(true);
+                    }
+                    Thread.yield();
+                    counter.decrementAndGet();
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void acquiresOneLeasePerDrain() throws Exception {
+        String lockKey = KeyLayout.lockKey(DOMAIN, "batch");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 2, proxy, 1000L)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            futures.add(executor.execute("batch", () -> {
+                started.countDown();
+                await(blocker);
+            }));
+            assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            // 第一个任务执行期间排队的任务在同一个租约内执行
+            AtomicBoolean leaseHeld = new AtomicBoolean(true);
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.execute("batch", () -> leaseHeld.compareAndSet(true, backend.exists(lockKey))));
+            }
+            blocker.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            waitIdle(executor);
+            assertTrue(leaseHeld.get());
+        }
+        assertEquals(1, backend.getAcquires(lockKey));
+        assertFalse(backend.exists(lockKey));
+    }
+
+    @Test
+    public void retriesBusyLeaseWithoutHoldingWorker() throws Exception {
+        String lockKey = KeyLayout.lockKey(DOMAIN, "busy");
+        assertTrue(backend.acquire(lockKey, "other", 30, TimeUnit.SECONDS));
+        // 只有一个工作线程，租约被占用的key不能阻塞其他key
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 1, proxy, 3000L)) {
+            CompletableFuture<Integer> busy = executor.submit("busy", () -> 1);
+            CompletableFuture<Integer> other = executor.submit("other", () -> 2);
+            assertEquals(2, other.get(1, TimeUnit.SECONDS).intValue());
+            assertFalse(busy.isDone());
+            // 除了占用租约的那一次，执行器至少尝试过一次
+            assertTrue(backend.getAcquires(lockKey) >= 2);
+
+            backend.release(lockKey, "other");
+            assertEquals(1, busy.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).intValue());
+            waitIdle(executor);
+        }
+        assertFalse(backend.exists(lockKey));
+    }
+
+    @Test
+    public void failsQueuedTasksWhenLeaseWaitExpires() throws Exception {
+        String lockKey = KeyLayout.lockKey(DOMAIN, "expired");
+        assertTrue(backend.acquire(lockKey, "other", 30, TimeUnit.SECONDS));
+        AtomicBoolean ran = new AtomicBoolean();
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 1, proxy, 200L)) {
+            CompletableFuture<Void> first = executor.execute("expired", () -> ran.set(true));
+            CompletableFuture<Void> second = executor.execute("expired", () -> ran.set(true));
+            assertGetLockException(first);
+            assertGetLockException(second);
+            waitIdle(executor);
+        }
+        assertFalse(ran.get());
+        assertTrue(backend.exists(lockKey));
+    }
+
+    @Test
+    public void failsQueuedTasksWhenLeaseAcquireThrows() throws Exception {
+        backend.failAcquire = true;
+        try (KeyedSerialExecutor executor = new KeyedSerialExecutor(DOMAIN, 1, proxy, 1000L)) {
+            assertGetLockException(executor.submit("error", () -> 1));
+            waitIdle(executor);
+        }
+    }
+
+    private static void assertGetLockException(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            fail("lease acquire should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GetLockException);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待队列清空，租约在最后一个任务结束后才释放
+     */
+    private static void waitIdle(KeyedSerialExecutor executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (executor.getActiveKeyCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    /**
+     * 记录每个key加锁次数的内存后端
+     */
+    private static class CountingLockBackend extends InMemoryLockBackend {
+
+        private final Map<String, AtomicInteger> acquires = Maps.newConcurrentMap();
+
+        private volatile boolean failAcquire;
+
+        @Override
+        public boolean acquire(String key, String value, long timeout, TimeUnit unit) {
+            acquires.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            if (failAcquire) {
+                throw new IllegalStateException("backend unavailable");
+            }
+            return super.acquire(key, value, timeout, unit);
+        }
+
+        private int getAcquires(String key) {
+            AtomicInteger count = acquires.get(key);
+            return Objects.isNull(count) ? 0 : count.get();
+        }
+    }
+}